@@ -0,0 +1,172 @@
+package org.example.lab5;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Persons grouped by age in full years, for sorting and filtering by age.
+ * <p>
+ * Every age is computed once when the buckets are built, then the persons are
+ * placed with a counting sort, which keeps persons of the same age in their
+ * original order. Sorting this way needs no comparator and no clock reads, and
+ * counting or listing an age range afterwards does not allocate per person.
+ *
+ * @param <T> the person type
+ */
+public final class AgeBuckets<T extends Person> {
+    private final Object[] sorted;
+    private final int[] ages;
+    private final int minAge;
+    // bucketStarts[age - minAge] is the first position of that age; one extra entry ends the last bucket
+    private final int[] bucketStarts;
+
+    private AgeBuckets(Object[] sorted, int[] ages, int minAge, int[] bucketStarts) {
+        this.sorted = sorted;
+        this.ages = ages;
+        this.minAge = minAge;
+        this.bucketStarts = bucketStarts;
+    }
+
+    /**
+     * Groups persons by their age today.
+     *
+     * @param persons the persons to group
+     * @param <T> the person type
+     * @return the buckets
+     */
+    public static <T extends Person> AgeBuckets<T> of(Collection<? extends T> persons) {
+        return of(persons, DayClock.system());
+    }
+
+    /**
+     * Groups persons by their age on the date of the given clock.
+     *
+     * @param persons the persons to group
+     * @param clock the clock supplying today's date
+     * @param <T> the person type
+     * @return the buckets
+     */
+    public static <T extends Person> AgeBuckets<T> of(Collection<? extends T> persons, DayClock clock) {
+        Object[] input = persons.toArray();
+        int[] inputAges = new int[input.length];
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < input.length; i++) {
+            int age = clock.yearsSince(((Person) input[i]).getBirthEpochDay());
+            inputAges[i] = age;
+            min = Math.min(min, age);
+            max = Math.max(max, age);
+        }
+        if (input.length == 0) {
+            return new AgeBuckets<>(input, inputAges, 0, new int[1]);
+        }
+
+        int[] starts = new int[max - min + 2];
+        for (int age : inputAges) {
+            starts[age - min + 1]++;
+        }
+        for (int b = 1; b < starts.length; b++) {
+            starts[b] += starts[b - 1];
+        }
+        Object[] output = new Object[input.length];
+        int[] outputAges = new int[input.length];
+        int[] next = starts.clone();
+        for (int i = 0; i < input.length; i++) {
+            int position = next[inputAges[i] - min]++;
+            output[position] = input[i];
+            outputAges[position] = inputAges[i];
+        }
+        return new AgeBuckets<>(output, outputAges, min, starts);
+    }
+
+    /**
+     * Returns the number of persons.
+     *
+     * @return the person count
+     */
+    public int size() {
+        return sorted.length;
+    }
+
+    /**
+     * Returns all persons from youngest to oldest, as an unmodifiable view.
+     *
+     * @return the persons sorted by ascending age
+     */
+    public List<T> sortedByAge() {
+        return new View(0, sorted.length);
+    }
+
+    /**
+     * Returns the persons whose age lies in a range, youngest first, as an unmodifiable view.
+     *
+     * @param minAge the lowest age (inclusive)
+     * @param maxAge the highest age (inclusive)
+     * @return the persons in the age range
+     */
+    public List<T> aged(int minAge, int maxAge) {
+        return new View(positionOf(minAge), positionOf(maxAge + 1L));
+    }
+
+    /**
+     * Counts the persons whose age lies in a range.
+     *
+     * @param minAge the lowest age (inclusive)
+     * @param maxAge the highest age (inclusive)
+     * @return the number of persons in the age range
+     */
+    public int countAged(int minAge, int maxAge) {
+        return Math.max(0, positionOf(maxAge + 1L) - positionOf(minAge));
+    }
+
+    /**
+     * Returns the age of the person at a position of {@link #sortedByAge()}.
+     *
+     * @param position the position (0-based)
+     * @return the age in years
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public int ageAt(int position) {
+        return ages[position];
+    }
+
+    /**
+     * Returns the first sorted position holding a person of at least the given age.
+     */
+    private int positionOf(long age) {
+        if (age <= minAge) {
+            return 0;
+        }
+        long bucket = age - minAge;
+        return bucket >= bucketStarts.length ? sorted.length : bucketStarts[(int) bucket];
+    }
+
+    /**
+     * Read-only window onto the sorted persons.
+     */
+    private final class View extends AbstractList<T> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        View(int from, int to) {
+            this.from = from;
+            this.to = Math.max(from, to);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            }
+            return (T) sorted[from + index];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
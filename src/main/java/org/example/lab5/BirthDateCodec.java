@@ -0,0 +1,176 @@
+package org.example.lab5;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Converts birth dates between the fixed-width {@code dd.MM.yyyy} text form and
+ * epoch days, without going through {@link DateTimeFormatter} or creating a
+ * {@link LocalDate}.
+ * <p>
+ * Only well-formed dates of 10 characters with a year from 1 to 9999 take the fast
+ * path. Anything else, including days past the end of the month that the formatter
+ * clamps, is handed to the formatter, so accepted input, results and exception
+ * messages are exactly those of {@code LocalDate.parse(text, DATE_FORMATTER)}.
+ */
+final class BirthDateCodec {
+    static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    /** Longest text {@link #format(int, char[], int)} can write, for years outside 1 to 9999. */
+    static final int MAX_LENGTH = 16;
+
+    private static final int TEXT_LENGTH = 10;
+    private static final int DAYS_0000_TO_1970 = 719_528;
+    private static final int DAYS_0000_03_01_TO_1970 = 719_468;
+    // Epoch days of 0001-01-01 and 9999-12-31, the range formatted without the formatter
+    private static final int MIN_FAST_DAY = -719_162;
+    private static final int MAX_FAST_DAY = 2_932_896;
+
+    private BirthDateCodec() {
+    }
+
+    /**
+     * Parses a birth date in DD.MM.YYYY format.
+     *
+     * @param text the birth date text
+     * @return the birth date as an epoch day
+     * @throws java.time.format.DateTimeParseException if the text is not a valid date
+     */
+    static int parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses a birth date in DD.MM.YYYY format from a range of characters,
+     * e.g. a field of a CSV line.
+     *
+     * @param text the text holding the date
+     * @param start the start index (inclusive)
+     * @param end the end index (exclusive)
+     * @return the birth date as an epoch day
+     * @throws java.time.format.DateTimeParseException if the text is not a valid date
+     */
+    static int parse(CharSequence text, int start, int end) {
+        if (end - start == TEXT_LENGTH && text.charAt(start + 2) == '.' && text.charAt(start + 5) == '.') {
+            int day = digits(text, start, 2);
+            int month = digits(text, start + 3, 2);
+            int year = digits(text, start + 6, 4);
+            if (day >= 1 && month >= 1 && month <= 12 && year >= 1 && day <= lengthOfMonth(year, month)) {
+                return epochDay(year, month, day);
+            }
+        }
+        LocalDate date = LocalDate.parse(text.subSequence(start, end), DATE_FORMATTER);
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * Formats a birth date as DD.MM.YYYY.
+     *
+     * @param epochDay the birth date as an epoch day
+     * @return the formatted date
+     */
+    static String format(int epochDay) {
+        char[] text = new char[MAX_LENGTH];
+        return new String(text, 0, format(epochDay, text, 0));
+    }
+
+    /**
+     * Formats a birth date as DD.MM.YYYY into a buffer, which needs room for
+     * {@link #MAX_LENGTH} characters.
+     *
+     * @param epochDay the birth date as an epoch day
+     * @param buffer the buffer to write to
+     * @param offset position of the first character in the buffer
+     * @return the position after the last character written
+     */
+    static int format(int epochDay, char[] buffer, int offset) {
+        if (epochDay < MIN_FAST_DAY || epochDay > MAX_FAST_DAY) {
+            String text = LocalDate.ofEpochDay(epochDay).format(DATE_FORMATTER);
+            text.getChars(0, text.length(), buffer, offset);
+            return offset + text.length();
+        }
+        int date = (int) yearMonthDay(epochDay);
+        putDigits(date % 100, buffer, offset, 2);
+        buffer[offset + 2] = '.';
+        putDigits(date / 100 % 100, buffer, offset + 3, 2);
+        buffer[offset + 5] = '.';
+        putDigits(date / 10_000, buffer, offset + 6, 4);
+        return offset + TEXT_LENGTH;
+    }
+
+    /**
+     * Converts an epoch day to a date packed as decimal digits, year * 10000 + month * 100 + day,
+     * e.g. 20030315. Packed dates compare like the dates they stand for.
+     *
+     * @param epochDay the epoch day
+     * @return the packed date
+     */
+    static long yearMonthDay(int epochDay) {
+        if (epochDay < MIN_FAST_DAY || epochDay > MAX_FAST_DAY) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            return date.getYear() * 10_000L + date.getMonthValue() * 100 + date.getDayOfMonth();
+        }
+        // Civil date from days, counting years from March so the leap day comes last
+        int shifted = epochDay + DAYS_0000_03_01_TO_1970;
+        int era = shifted / 146_097;
+        int dayOfEra = shifted - era * 146_097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+        return year * 10_000 + month * 100 + day;
+    }
+
+    /**
+     * Reads a run of ASCII digits, or returns -1 if any character is not one.
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void putDigits(int value, char[] buffer, int offset, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Same arithmetic as {@link LocalDate#toEpochDay()}, for years from 1.
+     */
+    private static int epochDay(int year, int month, int day) {
+        int total = 365 * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+        total += (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total -= isLeapYear(year) ? 1 : 2;
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+}
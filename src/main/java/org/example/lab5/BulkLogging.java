@@ -0,0 +1,205 @@
+package org.example.lab5;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.PropertiesUtil;
+
+/**
+ * Logging mode for bulk operations such as CSV imports and exports.
+ * <p>
+ * Per-entity DEBUG and INFO events are logged through a {@link Sampler} kept by the
+ * call site. Sampling only applies on threads running an {@link Operation}: the thread
+ * that began it and the workers it runs tasks for through {@link Operation#call}. There
+ * each sampler logs the first {@code lab5.log.sampleBurst} events of the operation and
+ * after that only every {@code lab5.log.sampleEvery}-th; the others are counted without
+ * formatting anything. Other threads, e.g. interactive actions during an import, log
+ * exactly as before. WARN and more severe events are never sampled, so every malformed
+ * line is still reported. Closing the operation logs one summary line with the number
+ * of entities processed and skipped, the duration and how many events were sampled out.
+ * <p>
+ * Both settings are read through Log4j's properties, i.e. from system properties
+ * or {@code log4j2.component.properties}.
+ */
+public final class BulkLogging {
+    private static final int SAMPLE_BURST = PropertiesUtil.getProperties()
+        .getIntegerProperty("lab5.log.sampleBurst", 20);
+    private static final long SAMPLE_EVERY = Math.max(1, PropertiesUtil.getProperties()
+        .getLongProperty("lab5.log.sampleEvery", 10_000));
+
+    private static final ThreadLocal<Operation> CURRENT = new ThreadLocal<>();
+
+    private BulkLogging() {
+    }
+
+    /**
+     * Starts a bulk operation on the current thread. Use it in try-with-resources so
+     * that it always ends on the thread that began it. Operations may be nested; the
+     * inner one samples on its own until it is closed.
+     *
+     * @param log the logger receiving the summary
+     * @param description what the operation does, e.g. "Import of students.csv"
+     * @return the running operation
+     */
+    public static Operation begin(Logger log, String description) {
+        Operation operation = new Operation(log, description, CURRENT.get());
+        CURRENT.set(operation);
+        return operation;
+    }
+
+    /**
+     * Checks whether the current thread runs a bulk operation.
+     *
+     * @return true while an operation is running on this thread
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    private static void restore(Operation operation) {
+        if (operation != null) {
+            CURRENT.set(operation);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Decides which events of one call site are logged.
+     */
+    public static final class Sampler {
+
+        /**
+         * Checks whether an event should be logged: the level must be enabled and,
+         * for DEBUG and INFO events on a thread running a bulk operation, the event
+         * must be picked by sampling. Callers only build log arguments when this
+         * returns true.
+         *
+         * @param log the logger the event goes to
+         * @param level the event level
+         * @return true if the event should be logged
+         */
+        public boolean shouldLog(Logger log, Level level) {
+            if (!log.isEnabled(level)) {
+                return false;
+            }
+            Operation operation = CURRENT.get();
+            return operation == null || level.isMoreSpecificThan(Level.WARN) || operation.sample(this);
+        }
+    }
+
+    /**
+     * A running bulk operation, collecting the counts for its summary.
+     */
+    public static final class Operation implements AutoCloseable {
+        private final Logger log;
+        private final String description;
+        private final Operation outer;
+        private final long startNanos = System.nanoTime();
+        private final Map<Sampler, AtomicLong> seen = new ConcurrentHashMap<>();
+        private final LongAdder sampledOut = new LongAdder();
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private boolean closed;
+
+        private Operation(Logger log, String description, Operation outer) {
+            this.log = log;
+            this.description = description;
+            this.outer = outer;
+        }
+
+        /**
+         * Runs a task of this operation on the calling thread, typically a worker of a
+         * parallel import, so that its events are sampled as part of the operation.
+         *
+         * @param task the task to run
+         * @param <T> the result type
+         * @return the task's result
+         * @throws Exception if the task fails
+         */
+        public <T> T call(Callable<T> task) throws Exception {
+            Operation previous = CURRENT.get();
+            CURRENT.set(this);
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        private boolean sample(Sampler sampler) {
+            AtomicLong counter = seen.get(sampler);
+            if (counter == null) {
+                counter = seen.computeIfAbsent(sampler, s -> new AtomicLong());
+            }
+            long count = counter.getAndIncrement();
+            if (count < SAMPLE_BURST || count % SAMPLE_EVERY == 0) {
+                return true;
+            }
+            sampledOut.increment();
+            return false;
+        }
+
+        /**
+         * Counts one processed entity. Safe to call from any thread.
+         */
+        public void processed() {
+            processed.increment();
+        }
+
+        /**
+         * Counts one skipped entity, e.g. a malformed line. Safe to call from any thread.
+         */
+        public void skipped() {
+            skipped.increment();
+        }
+
+        /**
+         * Returns the number of processed entities so far.
+         *
+         * @return the processed count
+         */
+        public long getProcessed() {
+            return processed.sum();
+        }
+
+        /**
+         * Returns the number of skipped entities so far.
+         *
+         * @return the skipped count
+         */
+        public long getSkipped() {
+            return skipped.sum();
+        }
+
+        /**
+         * Returns how many events of this operation were sampled out so far.
+         *
+         * @return the number of sampled-out events
+         */
+        public long getSampledOut() {
+            return sampledOut.sum();
+        }
+
+        /**
+         * Ends the operation and logs its summary. Closing twice has no effect.
+         */
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (CURRENT.get() == this) {
+                restore(outer);
+            }
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            log.info("{} finished in {} ms: {} processed, {} skipped, {} log events sampled out",
+                description, millis, processed.sum(), skipped.sum(), sampledOut.sum());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.lab5;
+
+import java.util.Arrays;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Actions to run after a repository changes.
+ * <p>
+ * Listeners are registered rarely but run after every change, including each row of
+ * a bulk import, so firing walks a plain array without locking or allocating.
+ * Registering copies the array. A listener that throws is logged and does not stop
+ * the others. Listeners run on the thread that made the change, after its locks have
+ * been released, and should only note that something changed.
+ */
+final class ChangeListeners {
+    private static final Logger log = LogManager.getLogger(ChangeListeners.class);
+    private static final Runnable[] NONE = new Runnable[0];
+
+    private volatile Runnable[] listeners = NONE;
+
+    synchronized void add(Runnable listener) {
+        Runnable[] current = listeners;
+        Runnable[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        listeners = updated;
+    }
+
+    synchronized void remove(Runnable listener) {
+        Runnable[] current = listeners;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == listener) {
+                Runnable[] updated = new Runnable[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    void fire() {
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.error("Change listener failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package org.example.lab5;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only, column-oriented copy of a student roster, taken with
+ * {@link StudentRepository#compactSnapshot()}.
+ * <p>
+ * Instead of one {@link Student} object per student (with its strings, date and
+ * grade array), every attribute lives in a primitive column indexed by row:
+ * <ul>
+ *   <li>ID as a long (the numeric value of the base-36 ID)</li>
+ *   <li>first and last name as codes into a shared name dictionary</li>
+ *   <li>index number as UTF-8 bytes in one shared byte array</li>
+ *   <li>birth date as an epoch day, gender as a byte</li>
+ *   <li>grades as half-point codes in one shared byte array</li>
+ * </ul>
+ * A few dozen bytes per student remain, held in a handful of large arrays that the
+ * garbage collector never has to trace. Students are materialized on demand by
+ * {@link #get(int)}; the returned objects are detached copies, so changing them
+ * changes neither the store nor the repository, and later changes to the repository
+ * do not show up here. The column accessors read single attributes without
+ * materializing anything.
+ * <p>
+ * A store is never modified once built, so it can be read from any thread. The
+ * byte columns are Java arrays and hold at most 2 GB each, enough for well over
+ * 100 million students with short index numbers.
+ */
+public final class CompactStudentStore {
+    private static final Gender[] GENDERS = Gender.values();
+    private static final int INITIAL_ROWS = 1024;
+    // Largest array length the JVM reliably allocates
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int MAX_SLOTS = 1 << 30;
+
+    private final int size;
+    private final long[] ids;
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final int[] birthDays;
+    private final byte[] genders;
+
+    // Row r occupies [offsets[r], offsets[r + 1]) in the shared byte arrays
+    private final int[] indexOffsets;
+    private final byte[] indexBytes;
+    private final int[] gradeOffsets;
+    private final byte[] gradeBytes;
+
+    // Open-addressing table of row + 1 (0 = empty), keyed by index number
+    private final int[] indexSlots;
+    private final String[] names;
+
+    private CompactStudentStore(Builder builder) {
+        size = builder.size;
+        ids = builder.ids;
+        firstNames = builder.firstNames;
+        lastNames = builder.lastNames;
+        birthDays = builder.birthDays;
+        genders = builder.genders;
+        indexOffsets = builder.indexOffsets;
+        indexBytes = builder.indexBytes;
+        gradeOffsets = builder.gradeOffsets;
+        gradeBytes = builder.gradeBytes;
+        indexSlots = builder.indexSlots;
+        names = builder.names.toArray(new String[0]);
+    }
+
+    /**
+     * Starts building a store sized for the expected number of students, so that
+     * loading them does not grow (and temporarily double) the columns.
+     *
+     * @param expectedRows the expected number of students
+     * @return the builder
+     */
+    static Builder builder(int expectedRows) {
+        return new Builder(expectedRows);
+    }
+
+    /**
+     * Returns the number of stored students.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Materializes the student at a row. The result is a detached copy that keeps
+     * the student's ID.
+     *
+     * @param row the row (0-based)
+     * @return the student
+     * @throws IndexOutOfBoundsException if the row is out of range
+     */
+    public Student get(int row) {
+        checkRow(row);
+        return Student.fromCodes(ids[row], getFirstName(row), getLastName(row), birthDays[row],
+            getGender(row), getIndexNumber(row), gradeBytes, gradeOffsets[row], getGradeCount(row));
+    }
+
+    /**
+     * Finds the row of a student by index number.
+     *
+     * @param indexNumber the index number
+     * @return the row, or -1 if not found
+     */
+    public int findRow(String indexNumber) {
+        if (indexNumber == null) {
+            return -1;
+        }
+        byte[] index = indexNumber.getBytes(StandardCharsets.UTF_8);
+        return indexSlots[findSlot(indexSlots, indexOffsets, indexBytes, index)] - 1;
+    }
+
+    /**
+     * Materializes a student by index number.
+     *
+     * @param indexNumber the index number
+     * @return a detached copy of the student, or null if not found
+     */
+    public Student getByIndexNumber(String indexNumber) {
+        int row = findRow(indexNumber);
+        return row >= 0 ? get(row) : null;
+    }
+
+    public long getNumericId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    public String getId(int row) {
+        return Person.formatId(getNumericId(row));
+    }
+
+    public String getFirstName(int row) {
+        checkRow(row);
+        return names[firstNames[row]];
+    }
+
+    public String getLastName(int row) {
+        checkRow(row);
+        return names[lastNames[row]];
+    }
+
+    public LocalDate getBirthDate(int row) {
+        checkRow(row);
+        return LocalDate.ofEpochDay(birthDays[row]);
+    }
+
+    public Gender getGender(int row) {
+        checkRow(row);
+        return GENDERS[genders[row]];
+    }
+
+    public String getIndexNumber(int row) {
+        checkRow(row);
+        int start = indexOffsets[row];
+        return new String(indexBytes, start, indexOffsets[row + 1] - start, StandardCharsets.UTF_8);
+    }
+
+    public int getGradeCount(int row) {
+        checkRow(row);
+        return gradeOffsets[row + 1] - gradeOffsets[row];
+    }
+
+    /**
+     * Returns the average grade of a student without materializing them.
+     *
+     * @param row the row
+     * @param defaultValue the value returned when the student has no grades
+     * @return the average, or the default value
+     */
+    public double getAverageOr(int row, double defaultValue) {
+        checkRow(row);
+        int start = gradeOffsets[row];
+        int end = gradeOffsets[row + 1];
+        if (start == end) {
+            return defaultValue;
+        }
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            sum += gradeBytes[i];
+        }
+        return sum / 2.0 / (end - start);
+    }
+
+    /**
+     * Returns the number of distinct first and last names in the name dictionary.
+     *
+     * @return the dictionary size
+     */
+    public int getDistinctNames() {
+        return names.length;
+    }
+
+    /**
+     * Estimates the heap used by the columns and the index, excluding the name
+     * dictionary, whose size depends on how often names repeat.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateColumnBytes() {
+        return 8L * ids.length
+            + 4L * (firstNames.length + lastNames.length + birthDays.length)
+            + genders.length
+            + 4L * (indexOffsets.length + gradeOffsets.length + indexSlots.length)
+            + indexBytes.length
+            + gradeBytes.length;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Size: " + size);
+        }
+    }
+
+    /**
+     * Returns the slot holding the given index number, or the empty slot where it belongs.
+     */
+    private static int findSlot(int[] slots, int[] offsets, byte[] bytes, byte[] index) {
+        int mask = slots.length - 1;
+        int slot = hash(index, 0, index.length) & mask;
+        while (true) {
+            int entry = slots[slot];
+            if (entry == 0) {
+                return slot;
+            }
+            int start = offsets[entry - 1];
+            if (Arrays.equals(bytes, start, offsets[entry], index, 0, index.length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ bytes[i]) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Fills the columns of a new store. Rows are appended and index numbers are
+     * unique. A builder is used by one thread and only until {@link #build()}.
+     */
+    static final class Builder {
+        private int size;
+        private long[] ids;
+        private int[] firstNames;
+        private int[] lastNames;
+        private int[] birthDays;
+        private byte[] genders;
+        private int[] indexOffsets;
+        private byte[] indexBytes;
+        private int[] gradeOffsets;
+        private byte[] gradeBytes;
+        private int[] indexSlots;
+        private final Map<String, Integer> nameCodes = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private boolean built;
+
+        private Builder(int expectedRows) {
+            int rows = Math.min(Math.max(expectedRows, INITIAL_ROWS), MAX_ARRAY_LENGTH - 1);
+            ids = new long[rows];
+            firstNames = new int[rows];
+            lastNames = new int[rows];
+            birthDays = new int[rows];
+            genders = new byte[rows];
+            indexOffsets = new int[rows + 1];
+            indexBytes = new byte[(int) Math.min(rows * 8L, MAX_ARRAY_LENGTH)];
+            gradeOffsets = new int[rows + 1];
+            gradeBytes = new byte[(int) Math.min(rows * 4L, MAX_ARRAY_LENGTH)];
+            int slots = 16;
+            while (slots < MAX_SLOTS && slots * 3L < rows * 4L) {
+                slots <<= 1;
+            }
+            indexSlots = new int[slots];
+        }
+
+        /**
+         * Appends a copy of a student unless their index number is already stored.
+         *
+         * @param student the student to copy
+         * @return true if the student was added, false if the index number is taken
+         * @throws IllegalStateException if the store is full
+         */
+        boolean add(Student student) {
+            byte[] index = student.getIndexNumber().getBytes(StandardCharsets.UTF_8);
+            int slot = findSlot(indexSlots, indexOffsets, indexBytes, index);
+            if (indexSlots[slot] != 0) {
+                return false;
+            }
+            int gradeCount = student.gradeCount();
+            int row = appendRow(student.getNumericId(), student.getFirstName(), student.getLastName(),
+                student.getBirthEpochDay(), student.getGender(), index, gradeCount);
+            int start = gradeOffsets[row];
+            // The grades may have shrunk since they were counted
+            gradeOffsets[row + 1] = start + student.copyGradeCodes(gradeBytes, start, gradeCount);
+            link(slot, row);
+            return true;
+        }
+
+        /**
+         * Appends a student from raw fields unless the index number is already stored.
+         * This avoids creating a {@link Student} at all when loading in bulk.
+         *
+         * @param id the numeric student ID
+         * @param firstName the first name
+         * @param lastName the last name
+         * @param birthDate the birth date
+         * @param gender the gender
+         * @param indexNumber the index number
+         * @param grades the grades
+         * @return true if the student was added, false if the index number is taken
+         * @throws IllegalArgumentException if any grade is not valid
+         * @throws IllegalStateException if the store is full
+         */
+        boolean add(long id, String firstName, String lastName, LocalDate birthDate, Gender gender,
+                    String indexNumber, double... grades) {
+            for (double grade : grades) {
+                if (Student.gradeCode(grade) < 0) {
+                    throw new IllegalArgumentException("Invalid grade: " + grade);
+                }
+            }
+            byte[] index = indexNumber.getBytes(StandardCharsets.UTF_8);
+            int slot = findSlot(indexSlots, indexOffsets, indexBytes, index);
+            if (indexSlots[slot] != 0) {
+                return false;
+            }
+            int row = appendRow(id, firstName, lastName, Math.toIntExact(birthDate.toEpochDay()), gender,
+                index, grades.length);
+            int offset = gradeOffsets[row];
+            for (int i = 0; i < grades.length; i++) {
+                gradeBytes[offset + i] = (byte) Student.gradeCode(grades[i]);
+            }
+            link(slot, row);
+            return true;
+        }
+
+        /**
+         * Finishes the store. The builder cannot be used afterwards.
+         *
+         * @return the store
+         */
+        CompactStudentStore build() {
+            checkOpen();
+            built = true;
+            return new CompactStudentStore(this);
+        }
+
+        private int appendRow(long id, String firstName, String lastName, int birthDay, Gender gender,
+                              byte[] index, int gradeCount) {
+            checkOpen();
+            if (size == ids.length) {
+                growRows();
+            }
+            int row = size;
+            int indexStart = indexOffsets[row];
+            int gradeStart = gradeOffsets[row];
+            indexBytes = ensureBytes(indexBytes, (long) indexStart + index.length, "index numbers");
+            gradeBytes = ensureBytes(gradeBytes, (long) gradeStart + gradeCount, "grades");
+
+            ids[row] = id;
+            firstNames[row] = nameCode(firstName);
+            lastNames[row] = nameCode(lastName);
+            birthDays[row] = birthDay;
+            genders[row] = (byte) gender.ordinal();
+            System.arraycopy(index, 0, indexBytes, indexStart, index.length);
+            indexOffsets[row + 1] = indexStart + index.length;
+            gradeOffsets[row + 1] = gradeStart + gradeCount;
+
+            size++;
+            return row;
+        }
+
+        private void link(int slot, int row) {
+            indexSlots[slot] = row + 1;
+            // Keep the table at most three quarters full so that probe sequences stay short
+            if (size * 4L > indexSlots.length * 3L) {
+                if (indexSlots.length == MAX_SLOTS) {
+                    throw new IllegalStateException("Compact store is full: " + size + " students");
+                }
+                rehash(indexSlots.length * 2);
+            }
+        }
+
+        private int nameCode(String name) {
+            Integer code = nameCodes.get(name);
+            if (code == null) {
+                code = names.size();
+                names.add(name);
+                nameCodes.put(name, code);
+            }
+            return code;
+        }
+
+        private void rehash(int capacity) {
+            int[] slots = new int[capacity];
+            int mask = capacity - 1;
+            for (int row = 0; row < size; row++) {
+                int start = indexOffsets[row];
+                int slot = hash(indexBytes, start, indexOffsets[row + 1]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = row + 1;
+            }
+            indexSlots = slots;
+        }
+
+        private void growRows() {
+            if (ids.length >= MAX_ARRAY_LENGTH - 1) {
+                throw new IllegalStateException("Compact store is full: " + size + " students");
+            }
+            int capacity = (int) Math.min(ids.length + (ids.length >> 1), MAX_ARRAY_LENGTH - 1L);
+            ids = Arrays.copyOf(ids, capacity);
+            firstNames = Arrays.copyOf(firstNames, capacity);
+            lastNames = Arrays.copyOf(lastNames, capacity);
+            birthDays = Arrays.copyOf(birthDays, capacity);
+            genders = Arrays.copyOf(genders, capacity);
+            indexOffsets = Arrays.copyOf(indexOffsets, capacity + 1);
+            gradeOffsets = Arrays.copyOf(gradeOffsets, capacity + 1);
+        }
+
+        private static byte[] ensureBytes(byte[] bytes, long required, String column) {
+            if (required <= bytes.length) {
+                return bytes;
+            }
+            if (required > MAX_ARRAY_LENGTH) {
+                throw new IllegalStateException("Compact store is full: more than 2 GB of " + column);
+            }
+            long grown = Math.min(bytes.length + (long) (bytes.length >> 1), MAX_ARRAY_LENGTH);
+            return Arrays.copyOf(bytes, (int) Math.max(required, grown));
+        }
+
+        private void checkOpen() {
+            if (built) {
+                throw new IllegalStateException("Compact store already built");
+            }
+        }
+    }
+}
@@ -49,12 +49,36 @@ public class ConfigManager {
         if (!properties.containsKey("groups")) {
             properties.setProperty("groups", "groups.csv");
         }
+        if (!properties.containsKey("import.parallelism")) {
+            properties.setProperty("import.parallelism", "1");
+        }
+        if (!properties.containsKey("snapshot")) {
+            properties.setProperty("snapshot", "repository.snapshot");
+        }
+        if (!properties.containsKey("journal")) {
+            properties.setProperty("journal", "repository.journal");
+        }
+        if (!properties.containsKey("journal.compact.bytes")) {
+            properties.setProperty("journal.compact.bytes", "4194304");
+        }
+        if (!properties.containsKey("repository.shards")) {
+            properties.setProperty("repository.shards", "16");
+        }
+        if (!properties.containsKey("ids")) {
+            properties.setProperty("ids", "repository.ids");
+        }
     }
 
     private void setDefaults() {
         properties.setProperty("delimiter", ";");
         properties.setProperty("students", "students.csv");
         properties.setProperty("groups", "groups.csv");
+        properties.setProperty("import.parallelism", "1");
+        properties.setProperty("snapshot", "repository.snapshot");
+        properties.setProperty("journal", "repository.journal");
+        properties.setProperty("journal.compact.bytes", "4194304");
+        properties.setProperty("repository.shards", "16");
+        properties.setProperty("ids", "repository.ids");
     }
 
     private void saveConfig() {
@@ -79,6 +103,88 @@ public class ConfigManager {
         return properties.getProperty("groups", "groups.csv");
     }
 
+    /**
+     * Returns the binary snapshot file used for fast startup.
+     *
+     * @return the snapshot file name
+     */
+    public String getSnapshotFile() {
+        return properties.getProperty("snapshot", "repository.snapshot");
+    }
+
+    /**
+     * Returns the journal file that records changes made since the last snapshot.
+     *
+     * @return the journal file name
+     */
+    public String getJournalFile() {
+        return properties.getProperty("journal", "repository.journal");
+    }
+
+    /**
+     * Returns the file holding the high-water mark of person IDs.
+     *
+     * @return the ID file name
+     */
+    public String getIdFile() {
+        return properties.getProperty("ids", "repository.ids");
+    }
+
+    /**
+     * Returns the journal size at which it is folded into a new snapshot.
+     *
+     * @return the compaction threshold in bytes, at least 1
+     */
+    public long getJournalCompactBytes() {
+        String value = properties.getProperty("journal.compact.bytes", "4194304");
+        try {
+            return Math.max(1, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Invalid journal.compact.bytes '{}', using 4194304", value);
+            return 4194304;
+        }
+    }
+
+    /**
+     * Returns the number of shards the student repository is partitioned into.
+     * A value of 0 uses one shard per available core.
+     *
+     * @return the shard count, at least 1
+     */
+    public int getRepositoryShards() {
+        String value = properties.getProperty("repository.shards", "16");
+        try {
+            int shards = Integer.parseInt(value.trim());
+            if (shards == 0) {
+                return Runtime.getRuntime().availableProcessors();
+            }
+            return Math.max(1, shards);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid repository.shards '{}', using 16", value);
+            return StudentRepository.DEFAULT_SHARDS;
+        }
+    }
+
+    /**
+     * Returns the number of worker threads used to parse student CSV files.
+     * A value of 1 imports sequentially; 0 uses one thread per available core.
+     *
+     * @return the import parallelism, at least 1
+     */
+    public int getImportParallelism() {
+        String value = properties.getProperty("import.parallelism", "1");
+        try {
+            int parallelism = Integer.parseInt(value.trim());
+            if (parallelism == 0) {
+                return Runtime.getRuntime().availableProcessors();
+            }
+            return Math.max(1, parallelism);
+        } catch (NumberFormatException e) {
+            log.warn("Invalid import.parallelism '{}', importing sequentially", value);
+            return 1;
+        }
+    }
+
     public void setDelimiter(String delimiter) {
         properties.setProperty("delimiter", delimiter);
         saveConfig();
@@ -94,10 +200,20 @@ public class ConfigManager {
         saveConfig();
     }
 
+    public void setImportParallelism(int parallelism) {
+        properties.setProperty("import.parallelism", Integer.toString(parallelism));
+        saveConfig();
+    }
+
     public void showConfig() {
         System.out.println("\n=== Current Configuration ===");
         System.out.println("Delimiter: " + getDelimiter());
         System.out.println("Students file: " + getStudentsFile());
         System.out.println("Groups file: " + getGroupsFile());
+        System.out.println("Import parallelism: " + getImportParallelism());
+        System.out.println("Snapshot file: " + getSnapshotFile());
+        System.out.println("Journal file: " + getJournalFile());
+        System.out.println("ID file: " + getIdFile());
+        System.out.println("Repository shards: " + getRepositoryShards());
     }
 }
@@ -21,9 +21,15 @@ public class ConsoleApp {
     
     public ConsoleApp() {
         scanner = new Scanner(System.in);
-        studentRepo = new StudentRepository();
-        groupRepo = new GroupRepository();
         config = new ConfigManager();
+        studentRepo = new StudentRepository(config.getRepositoryShards());
+        groupRepo = new GroupRepository();
+        
+        SnapshotStore.restore(config, studentRepo, groupRepo);
+        if (studentRepo.size() > 0 || !groupRepo.getAll().isEmpty()) {
+            System.out.println("Restored " + studentRepo.size() + " students and "
+                + groupRepo.getAll().size() + " groups");
+        }
     }
     
     public static void main(String[] args) {
@@ -59,6 +65,7 @@ public class ConsoleApp {
         }
         
         scanner.close();
+        saveSnapshot();
         log.info("User exited application");
         System.out.println("Goodbye!");
     }
@@ -78,6 +85,7 @@ public class ConsoleApp {
         System.out.println("11) Show group details");
         System.out.println("12) Show current configuration");
         System.out.println("13) Edit configuration");
+        System.out.println("14) Save snapshot");
         System.out.println("0) Exit");
     }
     
@@ -96,6 +104,7 @@ public class ConsoleApp {
             case 11: showGroupDetails(); break;
             case 12: config.showConfig(); break;
             case 13: editConfiguration(); break;
+            case 14: saveSnapshot(); break;
             case 0: return false;
             default: System.out.println("Invalid option. Try again.");
         }
@@ -113,13 +122,11 @@ public class ConsoleApp {
         }
         
         log.info("Loading students from file: {}", filename);
-        List<Student> students = CsvStudentHandler.loadStudents(file, config.getDelimiter());
-        for (Student student : students) {
-            studentRepo.add(student);
-        }
+        int count = CsvStudentHandler.forEachStudent(file, config.getDelimiter(),
+            config.getImportParallelism(), studentRepo::add);
         
-        log.info("Successfully imported {} students", students.size());
-        System.out.println("Imported " + students.size() + " students from " + filename);
+        log.info("Successfully imported {} students", count);
+        System.out.println("Imported " + count + " students from " + filename);
     }
     
     private void loadGroups() throws IOException {
@@ -133,13 +140,16 @@ public class ConsoleApp {
         }
         
         log.info("Loading groups from file: {}", filename);
-        List<Group> groups = CsvGroupHandler.loadGroups(file, config.getDelimiter(), studentRepo);
-        for (Group group : groups) {
-            groupRepo.add(group);
-        }
+        int count = CsvGroupHandler.forEachGroup(file, config.getDelimiter(), studentRepo,
+            groupRepo.getRegistry(), group -> {
+                if (!groupRepo.addIfAbsent(group)) {
+                    log.warn("Skipping duplicate group: {}", group.getName());
+                    CsvGroupHandler.discard(group);
+                }
+            });
         
-        log.info("Successfully imported {} groups", groups.size());
-        System.out.println("Imported " + groups.size() + " groups from " + filename);
+        log.info("Successfully imported {} groups", count);
+        System.out.println("Imported " + count + " groups from " + filename);
     }
     
     private void saveStudents() throws IOException {
@@ -162,6 +172,17 @@ public class ConsoleApp {
         System.out.println("Exported " + groupRepo.getAll().size() + " groups to " + filename);
     }
     
+    private void saveSnapshot() {
+        Path file = Paths.get(config.getSnapshotFile());
+        try {
+            SnapshotStore.save(file, studentRepo, groupRepo);
+            System.out.println("Snapshot saved to " + file);
+        } catch (IOException e) {
+            log.error("Error saving snapshot to {}", file, e);
+            System.err.println("Could not save snapshot: " + e.getMessage());
+        }
+    }
+    
     private void addNewStudent() {
         System.out.println("\n--- Add New Student ---");
         String firstName = readString("First name: ");
@@ -177,7 +198,10 @@ public class ConsoleApp {
         String indexNumber = readString("Index number: ");
         
         Student student = new Student(firstName, lastName, birthDate, gender, indexNumber);
-        studentRepo.add(student);
+        if (!studentRepo.add(student)) {
+            System.out.println("Index number already exists: " + indexNumber);
+            return;
+        }
         
         log.info("New student added via console: {} {} (ID: {})", firstName, lastName, student.getId());
         System.out.println("Student added with ID: " + student.getId());
@@ -211,7 +235,7 @@ public class ConsoleApp {
         
         String description = readString("Description: ");
         
-        Group group = new Group(name, description);
+        Group group = new Group(name, description, groupRepo.getRegistry());
         groupRepo.add(group);
         
         log.info("New group created via console: {}", name);
@@ -263,7 +287,7 @@ public class ConsoleApp {
             System.out.println("Student assigned to group.");
         } else {
             System.out.println("Failed: Student already in group " + 
-                GroupRegistry.getGroupName(student.getId()));
+                groupRepo.getRegistry().getGroupName(student.getId()));
         }
     }
     
@@ -322,12 +346,14 @@ public class ConsoleApp {
         }
         
         System.out.println("\n=== All Students ===");
-        for (Student s : studentRepo.getAll()) {
-            String avg = s.average().isPresent() 
-                ? String.format("%.2f", s.average().getAsDouble()) 
+        // Format the lines shard by shard in parallel, then print them in one go
+        StringBuilder listing = studentRepo.aggregate(StringBuilder::new, (out, s) -> {
+            String avg = s.hasGrades() 
+                ? String.format("%.2f", s.averageOr(0)) 
                 : "N/A";
-            System.out.printf("%s: %s avg=%s%n", s.getId(), s, avg);
-        }
+            out.append(String.format("%s: %s avg=%s%n", s.getId(), s, avg));
+        }, StringBuilder::append);
+        System.out.print(listing);
     }
     
     private void showAllGroups() {
@@ -369,8 +395,8 @@ public class ConsoleApp {
             System.out.println("  (empty)");
         } else {
             for (Student s : group.getMembers()) {
-                String avg = s.average().isPresent() 
-                    ? String.format("%.2f", s.average().getAsDouble()) 
+                String avg = s.hasGrades() 
+                    ? String.format("%.2f", s.averageOr(0)) 
                     : "N/A";
                 System.out.printf("  - %s %s (%s) avg=%s%n",
                     s.getFirstName(), s.getLastName(), s.getIndexNumber(), avg);
@@ -383,6 +409,7 @@ public class ConsoleApp {
         System.out.println("1) Change delimiter");
         System.out.println("2) Change students filename");
         System.out.println("3) Change groups filename");
+        System.out.println("4) Change import parallelism");
         System.out.println("0) Cancel");
         
         int choice = readInt("Select: ");
@@ -403,6 +430,11 @@ public class ConsoleApp {
                 config.setGroupsFile(groupsFile);
                 System.out.println("Groups filename updated.");
                 break;
+            case 4:
+                int parallelism = readInt("Worker threads (0 = all cores): ");
+                config.setImportParallelism(parallelism);
+                System.out.println("Import parallelism updated.");
+                break;
         }
     }
     
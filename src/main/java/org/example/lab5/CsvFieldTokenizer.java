@@ -0,0 +1,336 @@
+package org.example.lab5;
+
+import java.util.Arrays;
+
+/**
+ * Splits CSV lines into fields on a literal delimiter without creating
+ * intermediate String arrays. Fields are kept as character ranges of the
+ * current line and only turned into Strings when a caller asks for one.
+ * The delimiter is matched literally, so characters such as '|' or '.'
+ * need no escaping.
+ * <p>
+ * A tokenizer is reusable but not thread-safe: each thread should use its own.
+ */
+public class CsvFieldTokenizer {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    private final String delimiter;
+    private CharSequence line;
+    private int lineStart;
+    private int lineEnd;
+    private int[] fieldStarts = new int[8];
+    private int[] fieldEnds = new int[8];
+    private int fieldCount;
+    private char[] scratch = new char[64];
+
+    /**
+     * Callback receiving the character range of one item in a bracketed list.
+     */
+    @FunctionalInterface
+    public interface RangeConsumer {
+        /**
+         * Accepts one range of the current line.
+         *
+         * @param start the start index (inclusive)
+         * @param end the end index (exclusive)
+         */
+        void accept(int start, int end);
+    }
+
+    /**
+     * Creates a tokenizer for the given delimiter.
+     *
+     * @param delimiter the literal field delimiter
+     * @throws IllegalArgumentException if the delimiter is null or empty
+     */
+    public CsvFieldTokenizer(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Tokenizes a whole line.
+     *
+     * @param line the line to split
+     * @return the number of fields
+     */
+    public int reset(CharSequence line) {
+        return reset(line, 0, line.length());
+    }
+
+    /**
+     * Tokenizes the range {@code [start, end)} of a character sequence as one line.
+     * Like {@code String.split(delimiter, -1)}, empty trailing fields are kept.
+     *
+     * @param source the text containing the line
+     * @param start the start of the line (inclusive)
+     * @param end the end of the line (exclusive)
+     * @return the number of fields
+     */
+    public int reset(CharSequence source, int start, int end) {
+        this.line = source;
+        this.lineStart = start;
+        this.lineEnd = end;
+        this.fieldCount = 0;
+
+        int delimiterLength = delimiter.length();
+        char first = delimiter.charAt(0);
+        int fieldStart = start;
+        int i = start;
+        while (i <= end - delimiterLength) {
+            if (source.charAt(i) == first && matchesDelimiter(i)) {
+                addField(fieldStart, i);
+                i += delimiterLength;
+                fieldStart = i;
+            } else {
+                i++;
+            }
+        }
+        addField(fieldStart, end);
+        return fieldCount;
+    }
+
+    private boolean matchesDelimiter(int position) {
+        for (int k = 1; k < delimiter.length(); k++) {
+            if (line.charAt(position + k) != delimiter.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == fieldStarts.length) {
+            fieldStarts = Arrays.copyOf(fieldStarts, fieldCount * 2);
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldCount * 2);
+        }
+        fieldStarts[fieldCount] = start;
+        fieldEnds[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * Returns the number of fields in the current line.
+     *
+     * @return the field count
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Checks whether the current line contains only whitespace,
+     * matching {@code line.trim().isEmpty()}.
+     *
+     * @return true if the line is blank
+     */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (line.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the current line as a String. Intended for error messages.
+     *
+     * @return the current line
+     */
+    public String line() {
+        return text(lineStart, lineEnd);
+    }
+
+    /**
+     * Returns a field as a String.
+     *
+     * @param index the field index (0-based)
+     * @return the field text
+     */
+    public String field(int index) {
+        return text(fieldStarts[index], fieldEnds[index]);
+    }
+
+    /**
+     * Returns the start of a field within the current line's source.
+     *
+     * @param index the field index (0-based)
+     * @return the start index (inclusive)
+     */
+    public int fieldStart(int index) {
+        return fieldStarts[index];
+    }
+
+    /**
+     * Returns the end of a field within the current line's source.
+     *
+     * @param index the field index (0-based)
+     * @return the end index (exclusive)
+     */
+    public int fieldEnd(int index) {
+        return fieldEnds[index];
+    }
+
+    /**
+     * Returns the character at a position of the current line's source.
+     *
+     * @param position the position
+     * @return the character
+     */
+    public char charAt(int position) {
+        return line.charAt(position);
+    }
+
+    /**
+     * Returns a range of the current line's source as a String.
+     *
+     * @param start the start index (inclusive)
+     * @param end the end index (exclusive)
+     * @return the text
+     */
+    public String text(int start, int end) {
+        if (line instanceof String) {
+            return ((String) line).substring(start, end);
+        }
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new char[Math.max(length, scratch.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            scratch[i] = line.charAt(start + i);
+        }
+        return new String(scratch, 0, length);
+    }
+
+    /**
+     * Resolves a field to an enum constant by exact name, without creating a String
+     * unless the name is unknown.
+     *
+     * @param index the field index (0-based)
+     * @param type the enum type
+     * @param constants the constants to match against, usually a cached {@code values()} array
+     * @param <E> the enum type
+     * @return the matching constant
+     * @throws IllegalArgumentException if no constant has that name, as {@code Enum.valueOf} does
+     */
+    public <E extends Enum<E>> E enumField(int index, Class<E> type, E[] constants) {
+        int start = fieldStarts[index];
+        int length = fieldEnds[index] - start;
+        for (E constant : constants) {
+            String name = constant.name();
+            if (name.length() == length && regionEquals(start, name)) {
+                return constant;
+            }
+        }
+        throw new IllegalArgumentException(
+            "No enum constant " + type.getCanonicalName() + "." + field(index));
+    }
+
+    /**
+     * Parses a field holding a date in DD.MM.YYYY format, without creating a String
+     * unless the date is not in the plain fixed-width form.
+     *
+     * @param index the field index (0-based)
+     * @return the date as an epoch day
+     * @throws java.time.format.DateTimeParseException if the field is not a valid date,
+     *         as {@code LocalDate.parse} with the same pattern throws it
+     */
+    public int epochDayField(int index) {
+        return BirthDateCodec.parse(line, fieldStarts[index], fieldEnds[index]);
+    }
+
+    private boolean regionEquals(int start, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits the items of a bracketed, comma-separated list such as {@code [5.0,4.5]}.
+     * Items are passed as ranges; nothing is copied. As with {@code String.split(",")},
+     * trailing empty items are dropped.
+     *
+     * @param index the field index (0-based)
+     * @param consumer receives the range of each item
+     * @return false if the field is not enclosed in brackets, true otherwise
+     */
+    public boolean forEachListItem(int index, RangeConsumer consumer) {
+        int start = fieldStarts[index];
+        int end = fieldEnds[index];
+        if (end - start < 2 || line.charAt(start) != '[' || line.charAt(end - 1) != ']') {
+            return false;
+        }
+
+        int contentEnd = end - 1;
+        // Drop trailing empty items, like String.split without a limit
+        while (contentEnd > start + 1 && line.charAt(contentEnd - 1) == ',') {
+            contentEnd--;
+        }
+
+        int itemStart = start + 1;
+        if (itemStart == contentEnd) {
+            return true;
+        }
+        for (int i = itemStart; i < contentEnd; i++) {
+            if (line.charAt(i) == ',') {
+                consumer.accept(itemStart, i);
+                itemStart = i + 1;
+            }
+        }
+        consumer.accept(itemStart, contentEnd);
+        return true;
+    }
+
+    /**
+     * Parses a decimal number from a range of the current line, ignoring surrounding
+     * whitespace. Plain decimals such as {@code 4.5} are parsed in place; anything else
+     * is delegated to {@link Double#parseDouble}, so results and errors are identical.
+     *
+     * @param start the start index (inclusive)
+     * @param end the end index (exclusive)
+     * @return the parsed value
+     * @throws NumberFormatException if the text is not a valid number
+     */
+    public double parseDouble(int start, int end) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        for (int i = start; i < end; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                digits = -1;
+                break;
+            }
+        }
+
+        // Exact when both the mantissa and the power of ten are exactly representable
+        if (digits > 0 && digits < POWERS_OF_TEN.length) {
+            return mantissa / POWERS_OF_TEN[fractionDigits];
+        }
+        return Double.parseDouble(text(start, end));
+    }
+}
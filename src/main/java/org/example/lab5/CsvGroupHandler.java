@@ -1,12 +1,16 @@
 package org.example.lab5;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -16,70 +20,179 @@ import org.apache.logging.log4j.Logger;
 public class CsvGroupHandler {
     private static final Logger log = LogManager.getLogger(CsvGroupHandler.class);
 
+    /**
+     * Saves groups to a CSV file, streaming each row through a {@link CsvWriter}.
+     *
+     * @param groups the groups to save
+     * @param file the output file
+     * @param delimiter the field delimiter
+     * @throws IOException if the file cannot be written
+     */
     public static void saveGroups(Collection<Group> groups, Path file, String delimiter) throws IOException {
-        List<String> lines = new ArrayList<>();
+        saveGroups(groups, file, delimiter, CsvProgress.NONE);
+    }
+
+    /**
+     * Saves groups to a CSV file, reporting progress after each group.
+     *
+     * @param groups the groups to save
+     * @param file the output file
+     * @param delimiter the field delimiter
+     * @param progress receives the rows and bytes written; throwing from it stops the export
+     * @throws IOException if the file cannot be written
+     */
+    public static void saveGroups(Collection<Group> groups, Path file, String delimiter,
+                                  CsvProgress progress) throws IOException {
+        try (CsvWriter writer = new CsvWriter(file, delimiter)) {
+            for (Group group : groups) {
+                writer.field(group.getName())
+                    .field(group.getDescription())
+                    .ids(group.getMembers())
+                    .endRow();
+                progress.update(writer.getRowCount(), writer.getBytesWritten());
+            }
+        }
+    }
+
+    /**
+     * Loads all groups from a CSV file into a list.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param studentRepo repository used to resolve member IDs
+     * @param registry the registry the groups' members are assigned in
+     * @return the parsed groups, in file order
+     * @throws IOException if the file cannot be read
+     */
+    public static List<Group> loadGroups(Path file, String delimiter, StudentRepository studentRepo,
+                                         GroupRegistry registry) throws IOException {
+        List<Group> groups = new ArrayList<>();
+        forEachGroup(file, delimiter, studentRepo, registry, groups::add);
+        return groups;
+    }
 
-        for (Group group : groups) {
-            String memberIds = group.getMembers().stream()
-                .map(Student::getId)
-                .collect(Collectors.joining(",", "[", "]"));
+    /**
+     * Streams groups from a CSV file, handing each parsed group to the consumer.
+     * The file is read line by line, so only the current line is held in memory.
+     * Malformed lines are logged and skipped.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param studentRepo repository used to resolve member IDs
+     * @param registry the registry the groups' members are assigned in
+     * @param consumer receives each parsed group, in file order
+     * @return the number of groups passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachGroup(Path file, String delimiter, StudentRepository studentRepo,
+                                   GroupRegistry registry, Consumer<? super Group> consumer) throws IOException {
+        return forEachGroup(file, delimiter, studentRepo, registry, consumer, CsvProgress.NONE);
+    }
 
-            String line = String.join(delimiter,
-                group.getName(),
-                group.getDescription(),
-                memberIds
-            );
+    /**
+     * Streams groups from a CSV file, like
+     * {@link #forEachGroup(Path, String, StudentRepository, GroupRegistry, Consumer)},
+     * reporting progress after each line.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param studentRepo repository used to resolve member IDs
+     * @param registry the registry the groups' members are assigned in
+     * @param consumer receives each parsed group, in file order; its members are already
+     *                 assigned in the registry, so a group that is not kept must be passed to
+     *                 {@link #discard(Group)}
+     * @param progress receives the lines and bytes read; throwing from it stops the import
+     * @return the number of groups passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachGroup(Path file, String delimiter, StudentRepository studentRepo,
+                                   GroupRegistry registry, Consumer<? super Group> consumer,
+                                   CsvProgress progress) throws IOException {
+        int count = 0;
+        long lines = 0;
 
-            lines.add(line);
+        CsvFieldTokenizer fields = new CsvFieldTokenizer(delimiter);
+        try (BulkLogging.Operation load = BulkLogging.begin(log, "Group import from " + file);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                 Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fields.reset(line);
+                Group group = parseGroup(fields, studentRepo, registry);
+                if (group != null) {
+                    consumer.accept(group);
+                    count++;
+                    load.processed();
+                } else if (!fields.isBlank()) {
+                    load.skipped();
+                }
+                // Group lines list all members and can be long, so every line is reported
+                progress.update(++lines, channel.position());
+            }
         }
 
-        Files.write(file, lines);
+        return count;
     }
 
-    public static List<Group> loadGroups(Path file, String delimiter, StudentRepository studentRepo) throws IOException {
-        List<Group> groups = new ArrayList<>();
-        List<String> lines = Files.readAllLines(file);
+    /**
+     * Parses the line currently held by the tokenizer into a group and adds the referenced members.
+     *
+     * @param fields a tokenizer positioned on the line to parse
+     * @param studentRepo repository used to resolve member IDs
+     * @param registry the registry the group's members are assigned in
+     * @return the parsed group, or null if the line is blank or malformed
+     */
+    static Group parseGroup(CsvFieldTokenizer fields, StudentRepository studentRepo, GroupRegistry registry) {
+        if (fields.isBlank()) {
+            return null;
+        }
 
-        for (String line : lines) {
-            if (line.trim().isEmpty()) {
-                continue;
-            }
+        if (fields.fieldCount() < 3) {
+            log.warn("Skipping malformed group line (expected 3 fields): {}", fields.line());
+            return null;
+        }
 
-            String[] parts = line.split(delimiter, -1);
-            if (parts.length < 3) {
-                log.warn("Skipping malformed group line (expected 3 fields): {}", line);
-                continue;
-            }
+        try {
+            String name = fields.field(0);
+            String description = StringPool.shared().intern(fields.field(1));
+
+            Group group = new Group(name, description, registry);
 
+            // Parse member IDs, e.g. [0000001,0000002]
             try {
-                String name = parts[0];
-                String description = parts[1];
-                String memberIds = parts[2];
-
-                Group group = new Group(name, description);
-
-                // Parse member IDs
-                if (memberIds.startsWith("[") && memberIds.endsWith("]")) {
-                    String idsContent = memberIds.substring(1, memberIds.length() - 1);
-                    if (!idsContent.isEmpty()) {
-                        String[] ids = idsContent.split(",");
-                        for (String id : ids) {
-                            Student student = studentRepo.getById(id.trim());
-                            if (student != null) {
-                                group.addStudent(student);
-                            } else {
-                                log.warn("Student with ID {} not found", id.trim());
-                            }
-                        }
+                fields.forEachListItem(2, (start, end) -> {
+                    String id = fields.text(start, end).trim();
+                    Student student = studentRepo.getById(id);
+                    if (student != null) {
+                        group.addStudent(student);
+                    } else {
+                        log.warn("Student with ID {} not found", id);
                     }
-                }
-
-                groups.add(group);
-            } catch (Exception e) {
-                log.error("Error parsing group line: {} - {}", line, e.getMessage(), e);
+                });
+            } catch (RuntimeException e) {
+                // Members added before the failure must not stay assigned
+                discard(group);
+                throw e;
             }
+
+            return group;
+        } catch (Exception e) {
+            log.error("Error parsing group line: {} - {}", fields.line(), e.getMessage(), e);
+            return null;
         }
+    }
 
-        return groups;
+    /**
+     * Unassigns every member of a parsed group that is not kept, for example
+     * because a group with the same name already exists. Members the group
+     * shares with a stored group of that name are left alone.
+     *
+     * @param group the group to discard
+     */
+    public static void discard(Group group) {
+        for (Student member : group.getMembers().toArray(new Student[0])) {
+            group.removeStudent(member);
+        }
     }
 }
@@ -0,0 +1,24 @@
+package org.example.lab5;
+
+/**
+ * Callback receiving the progress of a streamed CSV import or export.
+ * <p>
+ * Handlers report every few thousand rows and once at the end, on the thread
+ * running the operation. An exception thrown by the callback ends the operation,
+ * which is how callers cancel it.
+ */
+@FunctionalInterface
+public interface CsvProgress {
+    /**
+     * A callback that ignores all progress.
+     */
+    CsvProgress NONE = (rows, bytes) -> { };
+
+    /**
+     * Reports the progress so far.
+     *
+     * @param rows the number of rows read or written
+     * @param bytes the number of file bytes read or written
+     */
+    void update(long rows, long bytes);
+}
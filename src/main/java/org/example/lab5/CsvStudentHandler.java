@@ -1,13 +1,27 @@
 package org.example.lab5;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
-import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -16,78 +30,409 @@ import org.apache.logging.log4j.Logger;
  */
 public class CsvStudentHandler {
     private static final Logger log = LogManager.getLogger(CsvStudentHandler.class);
+    private static final long MIN_CHUNK_BYTES = 1 << 20;
+    private static final long MAX_CHUNK_BYTES = 64 << 20;
+    private static final int CHUNKS_PER_WORKER = 4;
+    // Rows between progress reports of the sequential reader and the writer
+    private static final int PROGRESS_INTERVAL = 4096;
+    private static final Gender[] GENDERS = Gender.values();
+    // Parsing runs on several workers at once, so each thread gets its own buffer
+    private static final ThreadLocal<GradeBuffer> GRADE_BUFFER = ThreadLocal.withInitial(GradeBuffer::new);
 
+    /**
+     * Saves students to a CSV file, streaming each row through a {@link CsvWriter}.
+     *
+     * @param students the students to save
+     * @param file the output file
+     * @param delimiter the field delimiter
+     * @throws IOException if the file cannot be written
+     */
     public static void saveStudents(Collection<Student> students, Path file, String delimiter) throws IOException {
-        List<String> lines = new ArrayList<>();
-
-        for (Student student : students) {
-            String gradesString = student.getGrades().stream()
-                .map(g -> String.format(Locale.US, "%.1f", g))
-                .collect(Collectors.joining(",", "[", "]"));
-
-            String line = String.join(delimiter,
-                student.getId(),
-                student.getIndexNumber(),
-                student.getFirstName(),
-                student.getLastName(),
-                student.getBirthDateString(),
-                student.getGender().toString(),
-                gradesString
-            );
-
-            lines.add(line);
-        }
+        saveStudents(students, file, delimiter, CsvProgress.NONE);
+    }
 
-        Files.write(file, lines);
+    /**
+     * Saves students to a CSV file, reporting progress every few thousand rows and at the end.
+     *
+     * @param students the students to save
+     * @param file the output file
+     * @param delimiter the field delimiter
+     * @param progress receives the rows and bytes written; throwing from it stops the export
+     * @throws IOException if the file cannot be written
+     */
+    public static void saveStudents(Collection<Student> students, Path file, String delimiter,
+                                    CsvProgress progress) throws IOException {
+        try (BulkLogging.Operation export = BulkLogging.begin(log, "Student export to " + file);
+             CsvWriter writer = new CsvWriter(file, delimiter)) {
+            for (Student student : students) {
+                writer.field(student.getId())
+                    .field(student.getIndexNumber())
+                    .field(student.getFirstName())
+                    .field(student.getLastName())
+                    .birthDate(student)
+                    .field(student.getGender().name())
+                    .grades(student)
+                    .endRow();
+                export.processed();
+                if (writer.getRowCount() % PROGRESS_INTERVAL == 0) {
+                    progress.update(writer.getRowCount(), writer.getBytesWritten());
+                }
+            }
+            progress.update(writer.getRowCount(), writer.getBytesWritten());
+        }
     }
 
+    /**
+     * Loads all students from a CSV file into a list.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @return the parsed students, in file order
+     * @throws IOException if the file cannot be read
+     */
     public static List<Student> loadStudents(Path file, String delimiter) throws IOException {
         List<Student> students = new ArrayList<>();
-        List<String> lines = Files.readAllLines(file);
+        forEachStudent(file, delimiter, students::add);
+        return students;
+    }
 
-        for (String line : lines) {
-            if (line.trim().isEmpty()) {
-                continue;
-            }
+    /**
+     * Streams students from a CSV file, handing each parsed student to the consumer.
+     * The file is read line by line, so only the current line is held in memory
+     * regardless of the file size. Malformed lines are logged and skipped.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param consumer receives each parsed student, in file order
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudent(Path file, String delimiter, Consumer<? super Student> consumer)
+            throws IOException {
+        return forEachStudent(file, delimiter, consumer, CsvProgress.NONE);
+    }
 
-            String[] parts = line.split(delimiter, -1);
-            if (parts.length < 7) {
-                log.warn("Skipping malformed line (expected 7 fields): {}", line);
-                continue;
+    /**
+     * Streams students from a CSV file line by line, like {@link #forEachStudent(Path, String, Consumer)},
+     * reporting progress every few thousand lines and at the end.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param consumer receives each parsed student, in file order
+     * @param progress receives the non-empty lines and bytes read; throwing from it stops the import
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudent(Path file, String delimiter, Consumer<? super Student> consumer,
+                                     CsvProgress progress) throws IOException {
+        int count = 0;
+        long lines = 0;
+
+        CsvFieldTokenizer fields = new CsvFieldTokenizer(delimiter);
+        try (BulkLogging.Operation load = BulkLogging.begin(log, "Student import from " + file);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedReader reader = new BufferedReader(
+                 Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), -1))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                fields.reset(line);
+                Student student = parseStudent(fields);
+                if (student != null) {
+                    consumer.accept(student);
+                    count++;
+                    load.processed();
+                } else if (!fields.isBlank()) {
+                    load.skipped();
+                }
+                // Empty lines are not counted, as in the parallel reader
+                if (!line.isEmpty() && ++lines % PROGRESS_INTERVAL == 0) {
+                    // The channel position runs ahead of the reader by at most its buffers
+                    progress.update(lines, channel.position());
+                }
             }
+            progress.update(lines, channel.position());
+        }
+
+        return count;
+    }
+
+    /**
+     * Streams students from a CSV file using the given degree of parallelism.
+     * A parallelism of 1 or less reads the file sequentially; anything higher
+     * uses {@link #forEachStudentParallel}.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param parallelism number of worker threads used for parsing
+     * @param consumer receives each parsed student, in file order
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudent(Path file, String delimiter, int parallelism,
+                                     Consumer<? super Student> consumer) throws IOException {
+        return forEachStudent(file, delimiter, parallelism, consumer, CsvProgress.NONE);
+    }
 
+    /**
+     * Streams students from a CSV file using the given degree of parallelism,
+     * reporting progress as the file is read.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param parallelism number of worker threads used for parsing
+     * @param consumer receives each parsed student, in file order
+     * @param progress receives the non-empty lines and bytes read; throwing from it stops the import
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudent(Path file, String delimiter, int parallelism,
+                                     Consumer<? super Student> consumer, CsvProgress progress) throws IOException {
+        if (parallelism <= 1) {
+            return forEachStudent(file, delimiter, consumer, progress);
+        }
+        return forEachStudentParallel(file, delimiter, parallelism, consumer, progress);
+    }
+
+    /**
+     * Streams students from a CSV file, parsing chunks of the file in parallel.
+     * The file is memory-mapped and split into byte ranges that end on a line
+     * break; each range is decoded and parsed by a worker in a ForkJoin pool.
+     * Results are handed to the consumer on the calling thread, in file order,
+     * and only a bounded number of chunks is in flight at any time.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param parallelism number of worker threads used for parsing
+     * @param consumer receives each parsed student, in file order
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudentParallel(Path file, String delimiter, int parallelism,
+                                             Consumer<? super Student> consumer) throws IOException {
+        return forEachStudentParallel(file, delimiter, parallelism, consumer, CsvProgress.NONE);
+    }
+
+    /**
+     * Streams students from a CSV file in parallel, like
+     * {@link #forEachStudentParallel(Path, String, int, Consumer)}, reporting
+     * progress after each chunk has been handed to the consumer.
+     *
+     * @param file the CSV file
+     * @param delimiter the field delimiter
+     * @param parallelism number of worker threads used for parsing
+     * @param consumer receives each parsed student, in file order
+     * @param progress receives the non-empty lines and bytes read; throwing from it stops the import
+     * @return the number of students passed to the consumer
+     * @throws IOException if the file cannot be read
+     */
+    public static int forEachStudentParallel(Path file, String delimiter, int parallelism,
+                                             Consumer<? super Student> consumer, CsvProgress progress)
+            throws IOException {
+        int count = 0;
+        long lines = 0;
+
+        try (BulkLogging.Operation load = BulkLogging.begin(log, "Parallel student import from " + file);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.max(MIN_CHUNK_BYTES,
+                Math.min(MAX_CHUNK_BYTES, size / ((long) parallelism * CHUNKS_PER_WORKER) + 1));
+            log.info("Parallel import of {} ({} bytes) with parallelism={} chunkSize={}",
+                file, size, parallelism, chunkSize);
+
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
             try {
-                String indexNumber = parts[1];
-                String firstName = parts[2];
-                String lastName = parts[3];
-                String birthDate = parts[4];
-                Gender gender = Gender.valueOf(parts[5]);
-                String gradesString = parts.length > 6 ? parts[6] : "[]";
-
-                Student student = new Student(firstName, lastName, birthDate, gender, indexNumber);
-
-                // Parse grades
-                if (gradesString.startsWith("[") && gradesString.endsWith("]")) {
-                    String gradesContent = gradesString.substring(1, gradesString.length() - 1);
-                    if (!gradesContent.isEmpty()) {
-                        String[] gradeStrings = gradesContent.split(",");
-                        for (String gradeStr : gradeStrings) {
-                            try {
-                                double grade = Double.parseDouble(gradeStr.trim());
-                                student.addGrade(grade);
-                            } catch (IllegalArgumentException e) {
-                                log.warn("Invalid grade '{}' in line: {}", gradeStr, line);
-                            }
-                        }
+                Deque<ForkJoinTask<ParsedChunk>> inFlight = new ArrayDeque<>();
+                int maxInFlight = parallelism * CHUNKS_PER_WORKER;
+                long start = 0;
+
+                while (start < size || !inFlight.isEmpty()) {
+                    // Keep the pool busy while bounding memory held by parsed chunks
+                    while (start < size && inFlight.size() < maxInFlight) {
+                        long end = findChunkEnd(channel, start + chunkSize, size);
+                        MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                        long chunkEnd = end;
+                        inFlight.addLast(pool.submit(() -> load.call(() -> parseChunk(chunk, chunkEnd, delimiter, load))));
+                        start = end;
+                    }
+
+                    ParsedChunk parsed = join(inFlight.removeFirst());
+                    for (Student student : parsed.students) {
+                        consumer.accept(student);
+                        count++;
+                        load.processed();
                     }
+                    lines += parsed.lines;
+                    progress.update(lines, parsed.end);
                 }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        return count;
+    }
 
-                students.add(student);
-            } catch (Exception e) {
-                log.error("Error parsing line: {} - {}", line, e.getMessage(), e);
+    /**
+     * Finds the end of a chunk: the position just after the first line break
+     * at or after {@code from}, or the end of the file.
+     */
+    private static long findChunkEnd(FileChannel channel, long from, long size) throws IOException {
+        if (from >= size) {
+            return size;
+        }
+
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
             }
+            position += read;
         }
+        return size;
+    }
 
-        return students;
+    /**
+     * Decodes one chunk and parses every line in it, counting skipped lines in the operation.
+     */
+    private static ParsedChunk parseChunk(ByteBuffer chunk, long end, String delimiter,
+                                          BulkLogging.Operation load) throws CharacterCodingException {
+        CharBuffer text = StandardCharsets.UTF_8.newDecoder().decode(chunk);
+        CsvFieldTokenizer fields = new CsvFieldTokenizer(delimiter);
+        List<Student> students = new ArrayList<>();
+        int lines = 0;
+
+        int length = text.length();
+        int lineStart = 0;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.get(i) : '\n';
+            if (c != '\n' && c != '\r') {
+                continue;
+            }
+            if (i > lineStart) {
+                lines++;
+                // Lines are tokenized in place in the decoded buffer
+                fields.reset(text, lineStart, i);
+                Student student = parseStudent(fields);
+                if (student != null) {
+                    students.add(student);
+                } else if (!fields.isBlank()) {
+                    load.skipped();
+                }
+            }
+            if (c == '\r' && i + 1 < length && text.get(i + 1) == '\n') {
+                i++;
+            }
+            lineStart = i + 1;
+        }
+
+        return new ParsedChunk(students, lines, end);
+    }
+
+    /**
+     * Waits for a chunk task, unwrapping I/O failures from the worker.
+     */
+    private static ParsedChunk join(ForkJoinTask<ParsedChunk> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Parallel import interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Parallel import failed", cause);
+        }
+    }
+
+    /**
+     * Parses the line currently held by the tokenizer into a student.
+     *
+     * @param fields a tokenizer positioned on the line to parse
+     * @return the parsed student, or null if the line is blank or malformed
+     */
+    static Student parseStudent(CsvFieldTokenizer fields) {
+        if (fields.isBlank()) {
+            return null;
+        }
+
+        if (fields.fieldCount() < 7) {
+            log.warn("Skipping malformed line (expected 7 fields): {}", fields.line());
+            return null;
+        }
+
+        try {
+            String indexNumber = fields.field(1);
+            String firstName = StringPool.shared().intern(fields.field(2));
+            String lastName = StringPool.shared().intern(fields.field(3));
+            int birthDay = fields.epochDayField(4);
+            Gender gender = fields.enumField(5, Gender.class, GENDERS);
+            long storedId = Person.parseId(fields.field(0).trim());
+
+            // Parse grades in place, e.g. [5.0,4.5], into a reused buffer of half-point codes
+            GradeBuffer grades = GRADE_BUFFER.get();
+            grades.count = 0;
+            fields.forEachListItem(6, (start, end) -> {
+                int code = -1;
+                try {
+                    code = Student.gradeCode(fields.parseDouble(start, end));
+                } catch (NumberFormatException e) {
+                    // reported below like any other invalid grade
+                }
+                if (code < 0) {
+                    log.warn("Invalid grade '{}' in line: {}", fields.text(start, end), fields.line());
+                } else {
+                    grades.add(code);
+                }
+            });
+
+            return Student.bulkLoad(storedId, firstName, lastName, birthDay, gender, indexNumber,
+                grades.codes, grades.count);
+        } catch (Exception e) {
+            log.error("Error parsing line: {} - {}", fields.line(), e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Students parsed from one chunk, with the number of non-empty lines and the file offset where the chunk ends.
+     */
+    private static final class ParsedChunk {
+        final List<Student> students;
+        final int lines;
+        final long end;
+
+        ParsedChunk(List<Student> students, int lines, long end) {
+            this.students = students;
+            this.lines = lines;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Growable buffer of grade codes for the line being parsed.
+     */
+    private static final class GradeBuffer {
+        byte[] codes = new byte[16];
+        int count;
+
+        void add(int code) {
+            if (count == codes.length) {
+                codes = Arrays.copyOf(codes, count * 2);
+            }
+            codes[count++] = (byte) code;
+        }
     }
 }
@@ -0,0 +1,261 @@
+package org.example.lab5;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Streaming CSV writer that formats rows straight into one reusable character
+ * buffer and encodes it to the file in large blocks. Writing a row allocates
+ * nothing beyond what the caller passes in; grades use precomputed text and
+ * birth dates are formatted in place.
+ * <p>
+ * The output matches {@code Files.write(file, lines)}: UTF-8, each row
+ * terminated by the platform line separator, existing files truncated.
+ */
+public class CsvWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final char[] LINE_SEPARATOR = System.lineSeparator().toCharArray();
+    private static final char[][] GRADE_TEXT = new char[11][];
+
+    static {
+        // Indexed by grade * 2, which is exact for every legal grade
+        for (double grade : new double[] {2.0, 3.0, 3.5, 4.0, 4.5, 5.0}) {
+            GRADE_TEXT[(int) (grade * 2)] = String.format(Locale.US, "%.1f", grade).toCharArray();
+        }
+    }
+
+    private final FileChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final char[] chars = new char[BUFFER_SIZE];
+    private final CharBuffer charView = CharBuffer.wrap(chars);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE * 3);
+    private final char[] delimiter;
+    private int length;
+    private boolean rowStarted;
+    private long rows;
+    private long bytesWritten;
+
+    /**
+     * Opens a writer, creating the file or truncating an existing one.
+     *
+     * @param file the output file
+     * @param delimiter the field delimiter
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvWriter(Path file, String delimiter) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.delimiter = delimiter.toCharArray();
+    }
+
+    /**
+     * Writes a text field, preceded by the delimiter unless it is the first field of the row.
+     *
+     * @param value the field text
+     * @return this writer
+     * @throws IOException if flushing the buffer fails
+     */
+    public CsvWriter field(String value) throws IOException {
+        startField();
+        append(value);
+        return this;
+    }
+
+    /**
+     * Writes the birth date of a person in DD.MM.YYYY format.
+     *
+     * @param person the person whose birth date is written
+     * @return this writer
+     * @throws IOException if flushing the buffer fails
+     */
+    public CsvWriter birthDate(Person person) throws IOException {
+        startField();
+        if (chars.length - length < BirthDateCodec.MAX_LENGTH) {
+            drainChars(false);
+        }
+        length = BirthDateCodec.format(person.getBirthEpochDay(), chars, length);
+        return this;
+    }
+
+    /**
+     * Writes the grades of a student as a bracketed list, e.g. {@code [5.0,4.5]}.
+     *
+     * @param student the student whose grades are written
+     * @return this writer
+     * @throws IOException if flushing the buffer fails
+     */
+    public CsvWriter grades(Student student) throws IOException {
+        startField();
+        append('[');
+        int count = student.gradeCount();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                append(',');
+            }
+            append(gradeText(student.gradeAt(i)));
+        }
+        append(']');
+        return this;
+    }
+
+    /**
+     * Writes the IDs of the given students as a bracketed list, e.g. {@code [0000001,0000002]}.
+     *
+     * @param students the students whose IDs are written
+     * @return this writer
+     * @throws IOException if flushing the buffer fails
+     */
+    public CsvWriter ids(Iterable<Student> students) throws IOException {
+        startField();
+        append('[');
+        boolean first = true;
+        for (Student student : students) {
+            if (!first) {
+                append(',');
+            }
+            append(student.getId());
+            first = false;
+        }
+        append(']');
+        return this;
+    }
+
+    /**
+     * Terminates the current row.
+     *
+     * @throws IOException if flushing the buffer fails
+     */
+    public void endRow() throws IOException {
+        append(LINE_SEPARATOR);
+        rowStarted = false;
+        rows++;
+    }
+
+    /**
+     * Returns the number of rows written so far.
+     *
+     * @return the row count
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of bytes written to the file so far. Rows still in the
+     * buffer are not counted until it is flushed.
+     *
+     * @return the byte count
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes all buffered rows to the file and closes it. Closing twice has no effect.
+     *
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            drainChars(true);
+            bytes.clear();
+            encoder.flush(bytes);
+            writeBytes();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private static char[] gradeText(double grade) {
+        int slot = (int) (grade * 2);
+        if (slot == grade * 2 && slot >= 0 && slot < GRADE_TEXT.length && GRADE_TEXT[slot] != null) {
+            return GRADE_TEXT[slot];
+        }
+        return String.format(Locale.US, "%.1f", grade).toCharArray();
+    }
+
+    private void startField() throws IOException {
+        if (rowStarted) {
+            append(delimiter);
+        }
+        rowStarted = true;
+    }
+
+    private void append(char c) throws IOException {
+        if (length == chars.length) {
+            drainChars(false);
+        }
+        chars[length++] = c;
+    }
+
+    private void append(char[] text) throws IOException {
+        if (chars.length - length < text.length) {
+            drainChars(false);
+        }
+        if (text.length > chars.length - length) {
+            for (char c : text) {
+                append(c);
+            }
+            return;
+        }
+        System.arraycopy(text, 0, chars, length, text.length);
+        length += text.length;
+    }
+
+    private void append(String text) throws IOException {
+        int offset = 0;
+        int remaining = text.length();
+        while (remaining > 0) {
+            if (length == chars.length) {
+                drainChars(false);
+            }
+            int count = Math.min(remaining, chars.length - length);
+            text.getChars(offset, offset + count, chars, length);
+            length += count;
+            offset += count;
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Encodes the buffered characters and writes them to the channel. A trailing
+     * unpaired high surrogate is kept in the buffer until its pair arrives.
+     */
+    private void drainChars(boolean endOfInput) throws IOException {
+        charView.limit(length).position(0);
+        while (true) {
+            bytes.clear();
+            CoderResult result = encoder.encode(charView, bytes, endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            writeBytes();
+            if (result.isUnderflow()) {
+                break;
+            }
+        }
+        int leftover = charView.remaining();
+        System.arraycopy(chars, charView.position(), chars, 0, leftover);
+        length = leftover;
+    }
+
+    private void writeBytes() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            bytesWritten += channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.lab5;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Supplies today's date as an epoch day and computes ages from it with integer
+ * arithmetic only.
+ * <p>
+ * The current day is cached together with the instants where it starts and ends.
+ * Asking for it costs one clock read and a volatile read; the date is only
+ * worked out again once the clock leaves the cached day, at midnight or when the
+ * clock is set back or forward.
+ */
+public final class DayClock {
+    private static final DayClock SYSTEM = new DayClock(Clock.systemDefaultZone());
+
+    /**
+     * One calendar day and the range of clock millis it covers, swapped as a whole.
+     */
+    private static final class Day {
+        final int epochDay;
+        final long yearMonthDay;
+        final long startMillis;
+        final long endMillis;
+
+        Day(int epochDay, long startMillis, long endMillis) {
+            this.epochDay = epochDay;
+            this.yearMonthDay = BirthDateCodec.yearMonthDay(epochDay);
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+    }
+
+    private final Clock clock;
+    private volatile Day day;
+
+    /**
+     * Creates a day clock reading the given clock, in that clock's time zone.
+     *
+     * @param clock the underlying clock
+     */
+    public DayClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the day clock for the system clock in the default time zone,
+     * used by {@link Person#getAgeYears()}.
+     *
+     * @return the system day clock
+     */
+    public static DayClock system() {
+        return SYSTEM;
+    }
+
+    /**
+     * Returns today's date.
+     *
+     * @return today as an epoch day
+     */
+    public int today() {
+        return currentDay().epochDay;
+    }
+
+    /**
+     * Returns the number of full years from a date until today, as
+     * {@code Period.between(date, today).getYears()} does. It is negative
+     * for dates after today.
+     *
+     * @param epochDay the start date as an epoch day, e.g. a birth date
+     * @return the full years elapsed
+     */
+    public int yearsSince(int epochDay) {
+        return yearsBetween(BirthDateCodec.yearMonthDay(epochDay), currentDay().yearMonthDay);
+    }
+
+    /**
+     * Returns the number of full years between two dates, as
+     * {@code Period.between(start, end).getYears()} does.
+     *
+     * @param startDay the start date as an epoch day
+     * @param endDay the end date as an epoch day
+     * @return the full years between the dates, negative if the end comes first
+     */
+    public static int yearsBetween(int startDay, int endDay) {
+        return yearsBetween(BirthDateCodec.yearMonthDay(startDay), BirthDateCodec.yearMonthDay(endDay));
+    }
+
+    private static int yearsBetween(long startYearMonthDay, long endYearMonthDay) {
+        // Month and day make up the last four digits, so a year only counts once they are reached
+        return (int) ((endYearMonthDay - startYearMonthDay) / 10_000);
+    }
+
+    private Day currentDay() {
+        long now = clock.millis();
+        Day current = day;
+        if (current == null || now < current.startMillis || now >= current.endMillis) {
+            current = dayAt(now);
+            day = current;
+        }
+        return current;
+    }
+
+    private Day dayAt(long millis) {
+        ZoneId zone = clock.getZone();
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+        long start = date.atStartOfDay(zone).toInstant().toEpochMilli();
+        long end = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        return new Day(Math.toIntExact(date.toEpochDay()), start, end);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.lab5;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Demo program for {@link CompactStudentStore}. It checks a snapshot of a small
+ * {@link StudentRepository}, then loads a large roster straight into the columns and
+ * prints the heap used per student and the garbage collections that happen while
+ * scanning all rows. The number of students can be passed as the first argument
+ * (default 2,000,000; 10,000,000 students take about 500 MB of heap).
+ */
+public class DemoCompactStore {
+    private static final String[] FIRST_NAMES = {
+        "Anna", "Piotr", "Maria", "Jan", "Katarzyna", "Tomasz", "Agnieszka", "Paweł", "Magdalena", "Michał"
+    };
+    private static final double[] GRADES = {2.0, 3.0, 3.5, 4.0, 4.5, 5.0};
+
+    public static void main(String[] args) {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.WARN);
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+
+        // A real student first, to check that materialized copies keep ID, fields and grades
+        StudentRepository repo = new StudentRepository();
+        Student original = new Student("Ewa", "Nowak", "14.03.2002", Gender.FEMALE, "S-check");
+        original.addGrade(4.5);
+        original.addGrade(3.0);
+        repo.add(original);
+        Student copy = repo.compactSnapshot().getByIndexNumber("S-check");
+        if (!copy.getId().equals(original.getId()) || !copy.toString().equals(original.toString())
+                || !copy.getGrades().equals(original.getGrades())) {
+            throw new IllegalStateException("Materialized copy differs: " + copy + " vs " + original);
+        }
+
+        long heapBefore = usedHeap();
+        CompactStudentStore.Builder builder = CompactStudentStore.builder(count);
+        long start = System.nanoTime();
+        LocalDate firstBirthDay = LocalDate.of(1995, 1, 1);
+        for (int i = 0; i < count; i++) {
+            builder.add(1_000_000L + i, FIRST_NAMES[i % FIRST_NAMES.length], "Last" + (i % 5_000),
+                firstBirthDay.plusDays(i % 3_650), Gender.values()[i % 3], "S" + i,
+                GRADES[i % GRADES.length], GRADES[(i / 7) % GRADES.length]);
+        }
+        CompactStudentStore store = builder.build();
+        long loadMs = (System.nanoTime() - start) / 1_000_000;
+        long heapAfter = usedHeap();
+
+        long collectionsBefore = collectionCount();
+        start = System.nanoTime();
+        double sum = 0;
+        for (int row = 0; row < store.size(); row++) {
+            sum += store.getAverageOr(row, 0);
+        }
+        long scanMs = (System.nanoTime() - start) / 1_000_000;
+        long collections = collectionCount() - collectionsBefore;
+
+        System.out.printf("Loaded %,d students in %d ms (%d distinct names)%n",
+            store.size(), loadMs, store.getDistinctNames());
+        System.out.printf("Heap: %,d MB total, %.1f bytes per student (columns: %,d MB)%n",
+            (heapAfter - heapBefore) >> 20, (double) (heapAfter - heapBefore) / count,
+            store.estimateColumnBytes() >> 20);
+        System.out.printf("Scanned all averages in %d ms with %d garbage collections (mean %.3f)%n",
+            scanMs, collections, sum / store.size());
+
+        int row = store.findRow("S" + (count / 2));
+        System.out.println("Row " + row + ": " + store.get(row) + " grades=" + store.get(row).getGrades());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long collectionCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+}
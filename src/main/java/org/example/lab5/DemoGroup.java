@@ -5,7 +5,8 @@ package org.example.lab5;
  */
 public class DemoGroup {
     public static void main(String[] args) {
-        Group g1 = new Group("G1", "Java Monday");
+        GroupRegistry registry = new GroupRegistry();
+        Group g1 = new Group("G1", "Java Monday", registry);
         
         Student anna = new Student("Anna", "Kowalska", "15.03.2003", Gender.FEMALE, "S1");
         Student piotr = new Student("Piotr", "Nowak", "02.09.2002", Gender.MALE, "S2");
@@ -19,9 +20,9 @@ public class DemoGroup {
         }
         
         // Try to move Piotr to another group
-        Group g2 = new Group("G2", "Java Friday");
+        Group g2 = new Group("G2", "Java Friday", registry);
         if (!g2.addStudent(piotr)) {
-            System.out.println("Move failed: Piotr already in group " + GroupRegistry.getGroupName(piotr.getId()));
+            System.out.println("Move failed: Piotr already in group " + registry.getGroupName(piotr.getId()));
         }
         
         System.out.println(g1);
@@ -0,0 +1,69 @@
+package org.example.lab5;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Demo program timing CSV re-imports with the index-number duplicate check.
+ * Each file is imported into an empty repository and then imported again, so every
+ * row of the second pass is checked against a repository of the same size.
+ * The time per row should stay roughly constant as the file grows.
+ */
+public class DemoImportScaling {
+    public static void main(String[] args) throws IOException {
+        // Per-student logging would dominate the timings
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.WARN);
+
+        // Warm up the JIT so the first row of the table is comparable
+        Path warmup = Files.createTempFile("students", ".csv");
+        try {
+            writeStudents(warmup, 50_000);
+            StudentRepository repo = new StudentRepository();
+            timeImport(warmup, repo);
+            timeImport(warmup, repo);
+        } finally {
+            Files.delete(warmup);
+        }
+
+        System.out.println("    rows   first pass   re-import   ns/row (re-import)");
+        for (int rows = 25_000; rows <= 200_000; rows *= 2) {
+            Path file = Files.createTempFile("students", ".csv");
+            try {
+                writeStudents(file, rows);
+                StudentRepository repo = new StudentRepository();
+
+                long firstPass = timeImport(file, repo);
+                long reImport = timeImport(file, repo);
+
+                System.out.printf("%8d %9d ms %9d ms %12d%n",
+                    rows, firstPass / 1_000_000, reImport / 1_000_000, reImport / rows);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static long timeImport(Path file, StudentRepository repo) throws IOException {
+        long start = System.nanoTime();
+        CsvStudentHandler.forEachStudent(file, ";", student -> {
+            if (!repo.containsIndexNumber(student.getIndexNumber())) {
+                repo.add(student);
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    private static void writeStudents(Path file, int rows) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            for (int i = 0; i < rows; i++) {
+                out.printf("%07d;S%d;First%d;Last%d;01.01.2001;%s;[4.5,5.0]%n",
+                    i, i, i, i, i % 2 == 0 ? "FEMALE" : "MALE");
+            }
+        }
+    }
+}
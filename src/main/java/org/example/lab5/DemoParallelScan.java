@@ -0,0 +1,66 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+
+/**
+ * Demo program timing full-repository scans. The same students are loaded into
+ * repositories with different shard counts, and a sequential pass over
+ * {@link StudentRepository#getAll()} is compared with the parallel aggregate.
+ * With enough shards the parallel scan should get faster with the number of cores.
+ */
+public class DemoParallelScan {
+    private static final int STUDENTS = 1_000_000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        // Per-student logging would dominate the load time
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.WARN);
+
+        Student[] students = new Student[STUDENTS];
+        for (int i = 0; i < STUDENTS; i++) {
+            students[i] = new Student("First" + i, "Last" + i, "01.01.2001",
+                i % 2 == 0 ? Gender.FEMALE : Gender.MALE, "S" + i);
+            students[i].addGrade(3.0 + (i % 5) * 0.5);
+        }
+
+        System.out.printf("%d students, %d cores%n", STUDENTS, Runtime.getRuntime().availableProcessors());
+        System.out.println("  shards   sequential     parallel   matches");
+        for (int shards = 1; shards <= 64; shards *= 4) {
+            StudentRepository repo = new StudentRepository(shards);
+            for (Student student : students) {
+                repo.add(student);
+            }
+
+            long sequential = Long.MAX_VALUE;
+            long parallel = Long.MAX_VALUE;
+            long matches = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                long count = 0;
+                for (Student student : repo.getAll()) {
+                    if (isTopStudent(student)) {
+                        count++;
+                    }
+                }
+                sequential = Math.min(sequential, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                matches = repo.parallelCount(DemoParallelScan::isTopStudent);
+                parallel = Math.min(parallel, System.nanoTime() - start);
+
+                if (count != matches) {
+                    throw new IllegalStateException("Parallel count " + matches + " != " + count);
+                }
+            }
+
+            System.out.printf("%8d %9d ms %9d ms %9d%n",
+                repo.getShardCount(), sequential / 1_000_000, parallel / 1_000_000, matches);
+        }
+    }
+
+    private static boolean isTopStudent(Student student) {
+        return student.getFirstName().endsWith("7") && student.averageOr(0) >= 4.0;
+    }
+}
@@ -9,7 +9,8 @@ import java.util.stream.Collectors;
  */
 public class DemoSortStats {
     public static void main(String[] args) {
-        Group group = new Group("G1", "Java Monday");
+        GroupRegistry registry = new GroupRegistry();
+        Group group = new Group("G1", "Java Monday", registry);
         
         // Create sample students with grades
         Student anna = new Student("Anna", "Kowalska", "15.03.2003", Gender.FEMALE, "S1");
@@ -47,26 +48,27 @@ public class DemoSortStats {
         // Sort by average (descending)
         System.out.println("\n=== Sorted by average (descending) ===");
         List<Student> byAverage = group.getMembers().stream()
-            .sorted(Comparator.comparingDouble((Student s) -> s.average().orElse(0))
+            .sorted(Comparator.comparingDouble((Student s) -> s.averageOr(0))
                 .reversed())
             .collect(Collectors.toList());
         
         byAverage.forEach(s -> System.out.printf("%s %s avg=%.2f%n",
-            s.getLastName(), s.getFirstName(), s.average().orElse(0)));
+            s.getLastName(), s.getFirstName(), s.averageOr(0)));
         
-        // Sort by age (ascending)
+        // Sort by age (ascending); each age is computed once instead of in every comparison
         System.out.println("\n=== Sorted by age (ascending) ===");
-        List<Student> byAge = group.getMembers().stream()
-            .sorted(Comparator.comparingInt(Student::getAgeYears))
-            .collect(Collectors.toList());
-        
-        byAge.forEach(s -> System.out.printf("%s %s age=%d%n",
-            s.getLastName(), s.getFirstName(), s.getAgeYears()));
+        AgeBuckets<Student> byAge = AgeBuckets.of(group.getMembers());
+        List<Student> sortedByAge = byAge.sortedByAge();
+        for (int i = 0; i < sortedByAge.size(); i++) {
+            Student s = sortedByAge.get(i);
+            System.out.printf("%s %s age=%d%n", s.getLastName(), s.getFirstName(), byAge.ageAt(i));
+        }
+        System.out.printf("Aged 20 to 22: %d%n", byAge.countAged(20, 22));
         
         // TOP-3 by average
         System.out.println("\n=== TOP-3 by average ===");
         List<Student> top3 = group.getMembers().stream()
-            .sorted(Comparator.comparingDouble((Student s) -> s.average().orElse(0))
+            .sorted(Comparator.comparingDouble((Student s) -> s.averageOr(0))
                 .reversed())
             .limit(3)
             .collect(Collectors.toList());
@@ -74,20 +76,20 @@ public class DemoSortStats {
         for (int i = 0; i < top3.size(); i++) {
             Student s = top3.get(i);
             System.out.printf("%d) %-20s avg = %.2f%n",
-                i + 1, s.getFirstName() + " " + s.getLastName(), s.average().orElse(0));
+                i + 1, s.getFirstName() + " " + s.getLastName(), s.averageOr(0));
         }
         
         // Group average
         double groupAverage = group.getMembers().stream()
-            .filter(s -> s.average().isPresent())
-            .mapToDouble(s -> s.average().getAsDouble())
+            .filter(Student::hasGrades)
+            .mapToDouble(s -> s.averageOr(0))
             .average()
             .orElse(0);
         
         // Median
         List<Double> averages = group.getMembers().stream()
-            .filter(s -> s.average().isPresent())
-            .map(s -> s.average().getAsDouble())
+            .filter(Student::hasGrades)
+            .map(s -> s.averageOr(0))
             .sorted()
             .collect(Collectors.toList());
         
@@ -15,9 +15,9 @@ public class DemoStudent {
         s2.addGrade(3.5);
         
         System.out.println(s1.getId() + ": " + s1 + 
-            (s1.average().isPresent() ? String.format(" avg=%.2f", s1.average().getAsDouble()) : " avg=N/A"));
+            (s1.hasGrades() ? String.format(" avg=%.2f", s1.averageOr(0)) : " avg=N/A"));
         
         System.out.println(s2.getId() + ": " + s2 + 
-            (s2.average().isPresent() ? String.format(" avg=%.2f", s2.average().getAsDouble()) : " avg=N/A"));
+            (s2.hasGrades() ? String.format(" avg=%.2f", s2.averageOr(0)) : " avg=N/A"));
     }
 }
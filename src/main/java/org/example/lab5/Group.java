@@ -4,30 +4,38 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Represents a group of students.
+ * Membership changes go through the group's {@link GroupRegistry}, which makes them
+ * safe to perform from several threads.
  */
 public class Group {
     private static final Logger log = LogManager.getLogger(Group.class);
+    private static final BulkLogging.Sampler MEMBER_LOG = new BulkLogging.Sampler();
+    private static final BulkLogging.Sampler ROW_LOG = new BulkLogging.Sampler();
     private final String name;
     private String description;  // Changed from final to allow editing
     private final Set<Student> members;
+    private final GroupRegistry registry;
     
     /**
-     * Creates a new Group.
+     * Creates a new Group whose members are tracked in the given registry.
      * 
      * @param name the group name (e.g., "G1")
      * @param description a short description (e.g., "Java Monday")
+     * @param registry the registry shared with the other groups a student may belong to
+     * @throws NullPointerException if the registry is null
      */
-    public Group(String name, String description) {
+    public Group(String name, String description, GroupRegistry registry) {
         this.name = name;
         this.description = description;
-        this.members = new HashSet<>();
+        this.members = ConcurrentHashMap.newKeySet();
+        this.registry = Objects.requireNonNull(registry, "registry");
         log.info("Group created: name='{}', description='{}'", name, description);
     }
     
@@ -49,6 +57,15 @@ public class Group {
         return description;
     }
     
+    /**
+     * Returns the registry that tracks this group's members.
+     * 
+     * @return the registry
+     */
+    public GroupRegistry getRegistry() {
+        return registry;
+    }
+    
     /**
      * Sets a new description for the group.
      *
@@ -67,26 +84,64 @@ public class Group {
      * @return true if the student was added, false if they are already in another group
      */
     public boolean addStudent(Student student) {
-        String studentId = student.getId();
-        
-        if (GroupRegistry.isAssigned(studentId)) {
-            String assignedGroup = GroupRegistry.getGroupName(studentId);
+        String assignedGroup = registry.assignIfAbsent(student, name, () -> members.add(student));
+        if (assignedGroup != null) {
             if (!assignedGroup.equals(this.name)) {
                 log.warn("Cannot add student id={} to group='{}' — already in group='{}'",
-                    studentId, name, assignedGroup);
+                    student.getId(), name, assignedGroup);
                 return false; // Student is in a different group
             }
             // Student is already in this group, no need to add again
-            log.debug("Student index={} already in group='{}'", student.getIndexNumber(), name);
+            if (MEMBER_LOG.shouldLog(log, Level.DEBUG)) {
+                log.debug("Student index={} already in group='{}'", student.getIndexNumber(), name);
+            }
             return true;
         }
         
-        boolean added = members.add(student);
-        if (added) {
-            GroupRegistry.assign(studentId, this.name);
+        if (MEMBER_LOG.shouldLog(log, Level.INFO)) {
             log.info("Student index={} added to group='{}'", student.getIndexNumber(), name);
         }
-        return added;
+        return true;
+    }
+    
+    /**
+     * Moves a student from this group to another group sharing the same registry.
+     * The registry entry and both member sets change together, so the student is
+     * never assigned to two groups.
+     * 
+     * @param student the student to move
+     * @param target the group to move the student to
+     * @return true if the student was moved, false if they are not in this group
+     * @throws IllegalArgumentException if the target group uses a different registry
+     */
+    public boolean transferStudent(Student student, Group target) {
+        if (target.registry != registry) {
+            throw new IllegalArgumentException("Group '" + target.name + "' belongs to a different registry");
+        }
+        boolean moved = registry.transfer(student, name, target.name, () -> {
+            members.remove(student);
+            target.members.add(student);
+        });
+        if (moved) {
+            log.info("Student index={} moved from group='{}' to group='{}'",
+                student.getIndexNumber(), name, target.name);
+        } else {
+            log.warn("Attempt to move not-member index={} from group='{}'",
+                student.getIndexNumber(), name);
+        }
+        return moved;
+    }
+    
+    /**
+     * Adds a restored member without logging. The caller guarantees that the
+     * student is not assigned to any other group.
+     *
+     * @param student the student to add
+     */
+    void restoreMember(Student student) {
+        if (members.add(student)) {
+            registry.restore(student, name);
+        }
     }
     
     /**
@@ -96,10 +151,11 @@ public class Group {
      * @return true if the student was removed, false if they were not in the group
      */
     public boolean removeStudent(Student student) {
-        boolean removed = members.remove(student);
+        boolean removed = registry.unassign(student, name, () -> members.remove(student));
         if (removed) {
-            GroupRegistry.unassign(student.getId());
-            log.info("Student index={} removed from group='{}'", student.getIndexNumber(), name);
+            if (MEMBER_LOG.shouldLog(log, Level.INFO)) {
+                log.info("Student index={} removed from group='{}'", student.getIndexNumber(), name);
+            }
         } else {
             log.warn("Attempt to remove not-member index={} from group='{}'",
                 student.getIndexNumber(), name);
@@ -116,6 +172,15 @@ public class Group {
         return Collections.unmodifiableSet(members);
     }
     
+    /**
+     * Returns the number of members without copying or walking them.
+     * 
+     * @return the member count
+     */
+    public int size() {
+        return members.size();
+    }
+    
     /**
      * Exports all students in the group to a CSV file using the default delimiter (;).
      * 
@@ -140,29 +205,21 @@ public class Group {
         log.info("Exporting {} students from group='{}' to file={}",
             members.size(), name, file);
         
-        List<String> lines = new ArrayList<>();
-        
-        for (Student student : members) {
-            String gradesString = student.getGrades().stream()
-                .map(g -> String.format(Locale.US, "%.1f", g))
-                .collect(Collectors.joining(",", "[", "]"));
-            
-            String line = String.join(delimiter,
-                student.getId(),
-                student.getIndexNumber(),
-                student.getFirstName(),
-                student.getLastName(),
-                student.getBirthDateString(),
-                gradesString
-            );
-            
-            log.debug("CSV line: {}", line);
-            lines.add(line);
-        }
-        
-        try {
-            Files.write(file, lines);
-            log.info("Export successful: {} lines written to {}", lines.size(), file);
+        try (BulkLogging.Operation export = BulkLogging.begin(log, "Export of group '" + name + "' to " + file);
+             CsvWriter writer = new CsvWriter(file, delimiter)) {
+            for (Student student : members) {
+                writer.field(student.getId())
+                    .field(student.getIndexNumber())
+                    .field(student.getFirstName())
+                    .field(student.getLastName())
+                    .birthDate(student)
+                    .grades(student)
+                    .endRow();
+                export.processed();
+                if (ROW_LOG.shouldLog(log, Level.DEBUG)) {
+                    log.debug("CSV row written for student index={}", student.getIndexNumber());
+                }
+            }
         } catch (IOException e) {
             log.error("Export failed for file={}: {}", file, e.getMessage());
             throw e;
@@ -194,52 +251,59 @@ public class Group {
         log.info("Importing students into group='{}' from file={}", name, file);
         
         List<String> lines = Files.readAllLines(file);
-        int imported = 0;
+        CsvFieldTokenizer fields = new CsvFieldTokenizer(delimiter);
         
+        try (BulkLogging.Operation importing = BulkLogging.begin(log,
+                "Import into group '" + name + "' from " + file)) {
+            importLines(lines, fields, importing);
+        }
+    }
+    
+    /**
+     * Parses the lines and adds the students to the group, counting them in the operation.
+     */
+    private void importLines(List<String> lines, CsvFieldTokenizer fields, BulkLogging.Operation importing)
+            throws CsvFormatException {
         for (String line : lines) {
-            if (line.trim().isEmpty()) {
+            fields.reset(line);
+            if (fields.isBlank()) {
                 continue;
             }
             
-            log.debug("Raw CSV line: {}", line);
+            if (ROW_LOG.shouldLog(log, Level.DEBUG)) {
+                log.debug("Raw CSV line: {}", line);
+            }
             
-            String[] parts = line.split(Pattern.quote(delimiter), -1);
-            if (parts.length != 6) {
+            if (fields.fieldCount() != 6) {
                 String msg = "Malformed CSV line (expected 6 fields): " + line;
                 log.error(msg);
                 throw new CsvFormatException(msg);
             }
             
             try {
-                String indexNumber = parts[1];
-                String firstName = parts[2];
-                String lastName = parts[3];
-                String birthDate = parts[4];
-                String gradesString = parts[5];
+                String indexNumber = fields.field(1);
+                String firstName = fields.field(2);
+                String lastName = fields.field(3);
+                String birthDate = fields.field(4);
                 
                 // Parse gender - default to OTHER if not specified
                 Gender gender = Gender.OTHER;
                 
                 Student student = new Student(firstName, lastName, birthDate, gender, indexNumber);
                 
-                // Parse grades
-                if (gradesString.startsWith("[") && gradesString.endsWith("]")) {
-                    String gradesContent = gradesString.substring(1, gradesString.length() - 1);
-                    if (!gradesContent.isEmpty()) {
-                        String[] gradeStrings = gradesContent.split(",");
-                        for (String gradeStr : gradeStrings) {
-                            try {
-                                double grade = Double.parseDouble(gradeStr.trim());
-                                student.addGrade(grade);
-                            } catch (IllegalArgumentException e) {
-                                log.warn("Invalid grade: {} in line: {}", gradeStr, line);
-                            }
-                        }
+                // Parse grades in place, e.g. [5.0,4.5]
+                fields.forEachListItem(5, (start, end) -> {
+                    try {
+                        student.addGrade(fields.parseDouble(start, end));
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Invalid grade: {} in line: {}", fields.text(start, end), line);
                     }
-                }
+                });
                 
                 if (addStudent(student)) {
-                    imported++;
+                    importing.processed();
+                } else {
+                    importing.skipped();
                 }
             } catch (Exception e) {
                 String msg = "Error parsing CSV line: " + line;
@@ -247,8 +311,6 @@ public class Group {
                 throw new CsvFormatException(msg, e);
             }
         }
-        
-        log.info("Import finished: {} students imported into group='{}'", imported, name);
     }
     
     /**
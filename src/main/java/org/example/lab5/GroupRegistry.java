@@ -1,66 +1,259 @@
 package org.example.lab5;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Registry that tracks which group each student belongs to.
  * Ensures that each student can only belong to one group at a time.
+ * <p>
+ * The registry is thread-safe without a global lock. Assignments are keyed by the
+ * students' numeric IDs and split into stripes, each a primitive-keyed map guarded by
+ * its own lock. Each assignment change runs atomically for one student: the optional
+ * action passed in (typically updating a group's member set) is executed while the
+ * student's stripe is locked, so no other thread can move the same student in
+ * between. Lookups read optimistically and only wait when they overlap a write.
+ * Groups that share a registry share the one-group-per-student rule; a
+ * {@link GroupRepository} owns one registry for all of its groups.
+ * <p>
+ * The number of assigned students is kept in a counter, and
+ * {@linkplain #addChangeListener change listeners} are told about every assignment
+ * change, which is also when the member counts of groups change.
  */
 public class GroupRegistry {
     private static final Logger log = LogManager.getLogger(GroupRegistry.class);
-    private static final Map<String, String> studentToGroup = new HashMap<>();
-    
+    private static final BulkLogging.Sampler ASSIGN_LOG = new BulkLogging.Sampler();
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    // Updated while the stripe of the assigned or unassigned student is locked
+    private final AtomicInteger assigned = new AtomicInteger();
+    private final ChangeListeners changeListeners = new ChangeListeners();
+
+    public GroupRegistry() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
     /**
      * Checks if a student is already assigned to a group.
-     * 
+     *
      * @param studentId the student's ID
      * @return true if the student is assigned to a group, false otherwise
      */
-    public static boolean isAssigned(String studentId) {
-        return studentToGroup.containsKey(studentId);
+    public boolean isAssigned(String studentId) {
+        return getGroupName(studentId) != null;
     }
-    
+
+    /**
+     * Checks if a student is already assigned to a group.
+     *
+     * @param studentId the student's numeric ID
+     * @return true if the student is assigned to a group, false otherwise
+     */
+    public boolean isAssigned(long studentId) {
+        return getGroupName(studentId) != null;
+    }
+
     /**
      * Gets the name of the group a student is assigned to.
-     * 
+     *
      * @param studentId the student's ID
      * @return the group name, or null if not assigned
      */
-    public static String getGroupName(String studentId) {
-        return studentToGroup.get(studentId);
+    public String getGroupName(String studentId) {
+        long id = Person.parseId(studentId);
+        return id >= 0 ? getGroupName(id) : null;
     }
-    
+
     /**
-     * Assigns a student to a group.
-     * 
-     * @param studentId the student's ID
+     * Gets the name of the group a student is assigned to.
+     *
+     * @param studentId the student's numeric ID
+     * @return the group name, or null if not assigned
+     */
+    public String getGroupName(long studentId) {
+        Stripe stripe = stripeFor(studentId);
+        long stamp = stripe.lock.tryOptimisticRead();
+        String groupName = stripe.groups.get(studentId);
+        if (stripe.lock.validate(stamp)) {
+            return groupName;
+        }
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.groups.get(studentId);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Returns the number of assigned students, read from a counter without visiting the stripes.
+     *
+     * @return the number of assignments
+     */
+    public int size() {
+        return assigned.get();
+    }
+
+    /**
+     * Registers an action to run after every assignment change: a student joining,
+     * leaving or moving between groups. It runs on the thread that made the change,
+     * once per student, so it should only note the change.
+     *
+     * @param listener the action to run
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters an action added with {@link #addChangeListener}.
+     *
+     * @param listener the action to remove
+     */
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    /**
+     * Assigns a student to a group unless they are already assigned.
+     *
+     * @param student the student
      * @param groupName the group name
+     * @param onAssigned run atomically with the assignment, only if it happens
+     * @return null if the student was assigned, otherwise the group they already belong to
      */
-    static void assign(String studentId, String groupName) {
-        studentToGroup.put(studentId, groupName);
-        log.info("Assigned personId={} to group={}", studentId, groupName);
+    String assignIfAbsent(Student student, String groupName, Runnable onAssigned) {
+        long id = student.getNumericId();
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            String current = stripe.groups.get(id);
+            if (current != null) {
+                return current;
+            }
+            onAssigned.run();
+            stripe.groups.put(id, groupName);
+            assigned.incrementAndGet();
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        changeListeners.fire();
+        if (ASSIGN_LOG.shouldLog(log, Level.INFO)) {
+            log.info("Assigned personId={} to group={}", student.getId(), groupName);
+        }
+        return null;
     }
-    
+
     /**
-     * Removes a student's group assignment.
-     * 
-     * @param studentId the student's ID
+     * Moves a student from one group to another in a single step.
+     *
+     * @param student the student
+     * @param fromGroup the group the student must currently belong to
+     * @param toGroup the new group
+     * @param onTransferred run atomically with the transfer, only if it happens
+     * @return true if the student was transferred, false if they were not in {@code fromGroup}
      */
-    static void unassign(String studentId) {
-        if (studentToGroup.remove(studentId) != null) {
-            log.debug("Unassigned personId={} from registry", studentId);
-        } else {
-            log.warn("Attempt to unassign non-registered personId={}", studentId);
+    boolean transfer(Student student, String fromGroup, String toGroup, Runnable onTransferred) {
+        long id = student.getNumericId();
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (!fromGroup.equals(stripe.groups.get(id))) {
+                return false;
+            }
+            onTransferred.run();
+            stripe.groups.put(id, toGroup);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
         }
+        changeListeners.fire();
+        if (ASSIGN_LOG.shouldLog(log, Level.INFO)) {
+            log.info("Transferred personId={} from group={} to group={}", student.getId(), fromGroup, toGroup);
+        }
+        return true;
     }
-    
+
+    /**
+     * Assigns a student to a group without logging, used when restoring persisted state.
+     *
+     * @param student the student
+     * @param groupName the group name
+     */
+    void restore(Student student, String groupName) {
+        long id = student.getNumericId();
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.groups.put(id, groupName) == null) {
+                assigned.incrementAndGet();
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        changeListeners.fire();
+    }
+
+    /**
+     * Removes a student's assignment to the given group.
+     *
+     * @param student the student
+     * @param groupName the group the student must currently belong to
+     * @param onUnassigned run atomically with the removal, only if it happens
+     * @return true if the assignment was removed, false otherwise
+     */
+    boolean unassign(Student student, String groupName, Runnable onUnassigned) {
+        long id = student.getNumericId();
+        Stripe stripe = stripeFor(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (!groupName.equals(stripe.groups.get(id))) {
+                return false;
+            }
+            onUnassigned.run();
+            stripe.groups.remove(id);
+            assigned.decrementAndGet();
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        changeListeners.fire();
+        if (ASSIGN_LOG.shouldLog(log, Level.DEBUG)) {
+            log.debug("Unassigned personId={} from registry", student.getId());
+        }
+        return true;
+    }
+
     /**
      * Clears all assignments (useful for testing).
      */
-    public static void clear() {
-        studentToGroup.clear();
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                assigned.addAndGet(-stripe.groups.size());
+                stripe.groups.clear();
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+        changeListeners.fire();
+    }
+
+    private Stripe stripeFor(long studentId) {
+        long hash = studentId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash >>> 32) & (STRIPES - 1)];
+    }
+
+    /**
+     * One lock-guarded part of the registry.
+     */
+    private static final class Stripe {
+        final LongHashMap<String> groups = new LongHashMap<>();
+        final StampedLock lock = new StampedLock();
     }
 }
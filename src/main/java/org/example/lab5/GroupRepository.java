@@ -1,32 +1,134 @@
 package org.example.lab5;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Repository for managing groups in memory.
+ * The repository owns the {@link GroupRegistry} shared by all of its groups.
+ * It is safe to share between threads; {@link #getAll()} iterates weakly consistently.
+ * {@linkplain #addSizeListener Size listeners} are told when groups are added or removed.
  */
 public class GroupRepository {
-    private final Map<String, Group> groups = new HashMap<>();
+    private final ConcurrentMap<String, Group> groups = new ConcurrentHashMap<>();
+    private final GroupRegistry registry = new GroupRegistry();
+    private final ChangeListeners sizeListeners = new ChangeListeners();
 
+    /**
+     * Adds a group to the repository.
+     *
+     * @param group the group to add; it must have been created with this repository's registry
+     * @throws IllegalArgumentException if the group uses a different registry
+     */
     public void add(Group group) {
-        groups.put(group.getName(), group);
+        checkRegistry(group);
+        if (groups.put(group.getName(), group) == null) {
+            sizeListeners.fire();
+        }
+    }
+
+    /**
+     * Adds a group unless a group with the same name exists. The check and the
+     * insert are a single atomic step.
+     *
+     * @param group the group to add; it must have been created with this repository's registry
+     * @return true if the group was added, false if the name is taken
+     * @throws IllegalArgumentException if the group uses a different registry
+     */
+    public boolean addIfAbsent(Group group) {
+        checkRegistry(group);
+        if (groups.putIfAbsent(group.getName(), group) != null) {
+            return false;
+        }
+        sizeListeners.fire();
+        return true;
+    }
+
+    /**
+     * Removes a group by name. Its members keep their registry assignments;
+     * remove them from the group afterwards.
+     *
+     * @param name the group name
+     * @return the removed group, or null if not found
+     */
+    public Group remove(String name) {
+        Group removed = name != null ? groups.remove(name) : null;
+        if (removed != null) {
+            sizeListeners.fire();
+        }
+        return removed;
     }
 
     public Group getByName(String name) {
-        return groups.get(name);
+        return name != null ? groups.get(name) : null;
     }
 
+    /**
+     * Returns a read-only, weakly consistent view of all groups.
+     *
+     * @return all groups
+     */
     public Collection<Group> getAll() {
-        return groups.values();
+        return Collections.unmodifiableCollection(groups.values());
     }
 
+    /**
+     * Returns the registry that tracks which group each student belongs to.
+     *
+     * @return the registry shared by the groups of this repository
+     */
+    public GroupRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Removes all groups and their member assignments.
+     */
     public void clear() {
         groups.clear();
+        registry.clear();
+        sizeListeners.fire();
+    }
+
+    /**
+     * Returns the number of groups.
+     *
+     * @return the number of groups
+     */
+    public int size() {
+        return groups.size();
+    }
+
+    /**
+     * Registers an action to run whenever a group is added or removed. It runs on the
+     * thread that made the change and should only note it. Changes to the members of
+     * a group are reported by {@link GroupRegistry#addChangeListener} instead.
+     *
+     * @param listener the action to run
+     */
+    public void addSizeListener(Runnable listener) {
+        sizeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters an action added with {@link #addSizeListener}.
+     *
+     * @param listener the action to remove
+     */
+    public void removeSizeListener(Runnable listener) {
+        sizeListeners.remove(listener);
     }
 
     public boolean exists(String name) {
-        return groups.containsKey(name);
+        return name != null && groups.containsKey(name);
+    }
+
+    private void checkRegistry(Group group) {
+        if (group.getRegistry() != registry) {
+            throw new IllegalArgumentException(
+                "Group '" + group.getName() + "' was not created with this repository's registry");
+        }
     }
 }
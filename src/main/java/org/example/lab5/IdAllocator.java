@@ -0,0 +1,211 @@
+package org.example.lab5;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Hands out unique numeric person IDs, also across restarts.
+ * <p>
+ * Threads take IDs from private blocks of {@value #BLOCK_SIZE}, so creating persons
+ * in parallel only touches the shared counter once per block. Every ID in use is
+ * recorded in a paged bitset: IDs handed out here as well as IDs adopted from files
+ * and snapshots through {@link #adopt(long)}. An adopted ID is therefore never handed
+ * out again, and an ID that is already taken is replaced by a fresh one.
+ * <p>
+ * The high-water mark (the first ID no block has reached yet) is written to a file
+ * ahead of use: whenever blocks pass the persisted mark, a new mark
+ * {@value #RESERVE} IDs further is saved first. After a restart, even after a crash,
+ * new blocks start above every ID handed out before.
+ */
+public final class IdAllocator {
+    private static final Logger log = LogManager.getLogger(IdAllocator.class);
+    private static final IdAllocator GLOBAL = new IdAllocator();
+
+    private static final int BLOCK_SIZE = 1024;
+    private static final long RESERVE = 1 << 16;
+    private static final int PAGE_BITS = 20; // IDs per page, 128 KB of bits
+    private static final int PAGE_COUNT = 1 << 16; // pages cover IDs below 2^36
+
+    private final AtomicLong highWater = new AtomicLong(1);
+    // Per thread: next ID, end of block, epoch the block was taken in
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[] {0, 0, -1});
+    private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(PAGE_COUNT);
+    private final Set<Long> largeIds = ConcurrentHashMap.newKeySet();
+
+    private Path markFile;
+    private volatile long persistedMark = Long.MAX_VALUE; // nothing to persist until opened
+    private volatile long epoch;
+
+    /**
+     * Creates an allocator of its own, separate from {@link #global()}; used by tests.
+     */
+    IdAllocator() {
+    }
+
+    /**
+     * Returns the allocator used for all persons.
+     *
+     * @return the global allocator
+     */
+    public static IdAllocator global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Reads the persisted high-water mark and keeps it up to date from now on.
+     * A missing or unreadable file starts from the current mark.
+     *
+     * @param file the file holding the high-water mark
+     */
+    public synchronized void open(Path file) {
+        long mark = 0;
+        if (Files.exists(file)) {
+            try {
+                mark = Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+            } catch (IOException | NumberFormatException e) {
+                log.warn("Could not read ID high-water mark from {}: {}", file, e.getMessage());
+            }
+        }
+        highWater.accumulateAndGet(mark, Math::max);
+        // Blocks taken before may overlap IDs of the previous run
+        epoch++;
+        markFile = file;
+        persistedMark = 0;
+        persistMark(highWater.get());
+        log.debug("ID allocator opened at {} (mark {})", file, persistedMark);
+    }
+
+    /**
+     * Returns a new ID that has never been handed out or adopted.
+     *
+     * @return the ID
+     */
+    public long next() {
+        long[] range = block.get();
+        while (true) {
+            if (range[0] >= range[1] || range[2] != epoch) {
+                long start = highWater.getAndAdd(BLOCK_SIZE);
+                range[0] = start;
+                range[1] = start + BLOCK_SIZE;
+                range[2] = epoch;
+                if (range[1] > persistedMark) {
+                    persistMark(range[1]);
+                }
+            }
+            long id = range[0]++;
+            // Skip IDs adopted from a file after this block was taken
+            if (tryClaim(id)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Takes over an ID read from a file or snapshot, so that it is never handed out.
+     * If the ID is invalid or already taken, a fresh ID is returned instead.
+     *
+     * @param id the stored ID
+     * @return {@code id} if it could be adopted, otherwise a new ID
+     */
+    public long adopt(long id) {
+        if (id <= 0) {
+            return next();
+        }
+        // New blocks start above every adopted ID
+        long mark = highWater.accumulateAndGet(id + 1, Math::max);
+        if (mark > persistedMark) {
+            persistMark(mark);
+        }
+        if (tryClaim(id)) {
+            return id;
+        }
+        long replacement = next();
+        log.warn("ID {} is already in use, assigned {} instead",
+            Person.formatId(id), Person.formatId(replacement));
+        return replacement;
+    }
+
+    /**
+     * Gives back an ID whose person was discarded before it was ever saved, e.g.
+     * by a rolled-back import, so that loading the same file again can adopt it.
+     *
+     * @param id the ID to release
+     */
+    public void release(long id) {
+        long page = id >>> PAGE_BITS;
+        if (page >= PAGE_COUNT) {
+            largeIds.remove(id);
+            return;
+        }
+        AtomicLongArray bits = id > 0 ? pages.get((int) page) : null;
+        if (bits == null) {
+            return;
+        }
+        int word = (int) (id >>> 6) & ((1 << (PAGE_BITS - 6)) - 1);
+        long mask = 1L << id;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) == 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, current, current & ~mask));
+    }
+
+    /**
+     * Returns the first ID above every ID handed out or adopted so far.
+     *
+     * @return the high-water mark
+     */
+    public long getHighWater() {
+        return highWater.get();
+    }
+
+    private boolean tryClaim(long id) {
+        long page = id >>> PAGE_BITS;
+        if (page >= PAGE_COUNT) {
+            return largeIds.add(id);
+        }
+        AtomicLongArray bits = pages.get((int) page);
+        if (bits == null) {
+            pages.compareAndSet((int) page, null, new AtomicLongArray(1 << (PAGE_BITS - 6)));
+            bits = pages.get((int) page);
+        }
+        int word = (int) (id >>> 6) & ((1 << (PAGE_BITS - 6)) - 1);
+        long mask = 1L << id;
+        long current;
+        do {
+            current = bits.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, current, current | mask));
+        return true;
+    }
+
+    private synchronized void persistMark(long needed) {
+        if (markFile == null || needed <= persistedMark) {
+            return;
+        }
+        long mark = needed + RESERVE;
+        try {
+            Path temp = markFile.resolveSibling(markFile.getFileName() + ".tmp");
+            Files.write(temp, Long.toString(mark).getBytes(StandardCharsets.US_ASCII));
+            Files.move(temp, markFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            persistedMark = mark;
+        } catch (IOException e) {
+            // Keep allocating; only uniqueness across restarts is at risk
+            log.error("Could not persist ID high-water mark to {}: {}", markFile, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.example.lab5;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hash map from primitive long keys to values, without boxing the keys.
+ * <p>
+ * Keys and values live in two parallel arrays with linear probing; removal shifts
+ * later entries back, so no tombstones build up. The arrays are replaced, never
+ * resized in place, which lets callers read a map optimistically under a
+ * {@link java.util.concurrent.locks.StampedLock} and validate afterwards.
+ * The map itself is not thread-safe.
+ *
+ * @param <V> the value type
+ */
+final class LongHashMap<V> {
+    private static final long EMPTY = 0L;
+
+    /**
+     * Keys and values, swapped together so that a reader never sees mismatched arrays.
+     */
+    private static final class Table {
+        final long[] keys;
+        final Object[] values;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            values = new Object[capacity];
+        }
+    }
+
+    private Table table;
+    private int size;
+    // Key 0 marks empty slots, so its value is kept aside
+    private boolean hasZeroKey;
+    private Object zeroValue;
+
+    LongHashMap() {
+        this(16);
+    }
+
+    LongHashMap(int expectedSize) {
+        int capacity = 16;
+        while (capacity * 3L < expectedSize * 4L) {
+            capacity <<= 1;
+        }
+        table = new Table(capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey ? (V) zeroValue : null;
+        }
+        Table t = table;
+        long[] keys = t.keys;
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        // Bounded, so that a racy optimistic read cannot spin forever
+        for (int probes = 0; probes < keys.length; probes++) {
+            long current = keys[slot];
+            if (current == key) {
+                return (V) t.values[slot];
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    boolean containsKey(long key) {
+        return key == EMPTY ? hasZeroKey : get(key) != null;
+    }
+
+    /**
+     * Associates a value with a key.
+     *
+     * @return the previous value, or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key == EMPTY) {
+            V previous = hasZeroKey ? (V) zeroValue : null;
+            if (!hasZeroKey) {
+                size++;
+            }
+            hasZeroKey = true;
+            zeroValue = value;
+            return previous;
+        }
+        long[] keys = table.keys;
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                V previous = (V) table.values[slot];
+                table.values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table.values[slot] = value;
+        keys[slot] = key;
+        size++;
+        if (size * 4L > keys.length * 3L) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @return the removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                return null;
+            }
+            V previous = (V) zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            size--;
+            return previous;
+        }
+        long[] keys = table.keys;
+        Object[] values = table.values;
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        V previous = (V) values[slot];
+        // Shift back later entries of the same probe run into the freed slot
+        int free = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = slotOf(keys[next], mask);
+            boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+            if (movable) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[free] = EMPTY;
+        values[free] = null;
+        size--;
+        return previous;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        table = new Table(16);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = null;
+    }
+
+    /**
+     * Runs an action for every value.
+     */
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept((V) zeroValue);
+        }
+        Table t = table;
+        for (int i = 0; i < t.keys.length; i++) {
+            if (t.keys[i] != EMPTY) {
+                action.accept((V) t.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies all values into a new array.
+     */
+    Object[] valuesToArray() {
+        Object[] result = new Object[size];
+        int[] position = new int[1];
+        forEachValue(value -> result[position[0]++] = value);
+        return position[0] == result.length ? result : Arrays.copyOf(result, position[0]);
+    }
+
+    private void rehash(int capacity) {
+        Table old = table;
+        Table resized = new Table(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < old.keys.length; i++) {
+            long key = old.keys[i];
+            if (key != EMPTY) {
+                int slot = slotOf(key, mask);
+                while (resized.keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                resized.keys[slot] = key;
+                resized.values[slot] = old.values[i];
+            }
+        }
+        table = resized;
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -1,9 +1,7 @@
 package org.example.lab5;
 
 import java.time.LocalDate;
-import java.time.Period;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,13 +10,14 @@ import org.apache.logging.log4j.Logger;
  */
 public class Person {
     private static final Logger log = LogManager.getLogger(Person.class);
-    private static final AtomicLong ID_COUNTER = new AtomicLong(0);
-    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+    private static final BulkLogging.Sampler CREATED_LOG = new BulkLogging.Sampler();
+    private static final char[] BASE36_DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
     
-    private final String id;
+    private final long id;
+    private String idText; // rendered on first use
     private final String firstName;
     private final String lastName;
-    private final LocalDate birthDate;
+    private final int birthDay; // epoch day
     private final Gender gender;
     
     /**
@@ -32,33 +31,124 @@ public class Person {
     public Person(String firstName, String lastName, String birthDate, Gender gender) {
         this.firstName = firstName;
         this.lastName = lastName;
-        this.birthDate = LocalDate.parse(birthDate, DATE_FORMATTER);
+        this.birthDay = BirthDateCodec.parse(birthDate);
         this.gender = gender;
         this.id = generateId();
         
-        log.debug("Created Person id={} name={} {} birth={} gender={}",
-            id, firstName, lastName, birthDate, gender);
+        if (CREATED_LOG.shouldLog(log, Level.DEBUG)) {
+            log.debug("Created Person id={} name={} {} birth={} gender={}",
+                getId(), firstName, lastName, birthDate, gender);
+        }
     }
     
     /**
-     * Generates a unique 7-character ID using base-36 encoding.
+     * Creates a Person with an existing ID and an already parsed birth date, without logging.
+     * Used when restoring persisted state in bulk and to materialize persons kept in
+     * compact form; the caller has already reserved the ID.
+     *
+     * @param id the person's numeric ID
+     * @param firstName the person's first name
+     * @param lastName the person's last name
+     * @param birthDay the birth date as an epoch day
+     * @param gender the person's gender
+     */
+    Person(long id, String firstName, String lastName, int birthDay, Gender gender) {
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.birthDay = birthDay;
+        this.gender = gender;
+        this.id = id;
+    }
+    
+    /**
+     * Generates a unique numeric ID. Its 7-character base-36 form is only rendered
+     * when {@link #getId()} is called.
      * 
-     * @return a unique ID string
+     * @return a unique ID
+     */
+    private long generateId() {
+        long value = IdAllocator.global().next();
+        if (log.isTraceEnabled()) {
+            log.trace("Generated id n={}", value);
+        }
+        return value;
+    }
+    
+    /**
+     * Renders a numeric ID in the 7-character, zero-padded, upper-case base-36 form.
+     *
+     * @param value the numeric ID, not negative
+     * @return the ID string
+     */
+    public static String formatId(long value) {
+        char[] digits = new char[13]; // enough for Long.MAX_VALUE in base 36
+        int position = digits.length;
+        do {
+            digits[--position] = BASE36_DIGITS[(int) (value % 36)];
+            value /= 36;
+        } while (value > 0);
+        while (digits.length - position < 7) {
+            digits[--position] = '0';
+        }
+        return new String(digits, position, digits.length - position);
+    }
+    
+    /**
+     * Parses an ID string produced by {@link #formatId(long)} back into its numeric value.
+     *
+     * @param id the ID string
+     * @return the numeric ID, or -1 if the string is not a valid ID
      */
-    private String generateId() {
-        long value = ID_COUNTER.incrementAndGet();
-        String base36 = Long.toString(value, 36).toUpperCase();
-        String result = String.format("%7s", base36).replace(' ', '0');
-        log.trace("Generated base36 id={} from n={}", result, value);
-        return result;
+    public static long parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 13) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            int digit = idDigit(id.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            if (value > (Long.MAX_VALUE - digit) / 36) {
+                return -1;
+            }
+            value = value * 36 + digit;
+        }
+        return value;
+    }
+
+    // Only the digits formatId writes: ASCII 0-9 and upper-case A-Z
+    private static int idDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        return -1;
     }
     
     /**
-     * Returns the person's unique ID.
+     * Returns the person's unique ID in its 7-character base-36 form.
      * 
      * @return the ID string
      */
     public String getId() {
+        String text = idText;
+        if (text == null) {
+            // Racing threads render equal strings; either one may be kept
+            text = formatId(id);
+            idText = text;
+        }
+        return text;
+    }
+    
+    /**
+     * Returns the person's unique ID as a number, which is what repositories key on.
+     *
+     * @return the numeric ID
+     */
+    public long getNumericId() {
         return id;
     }
     
@@ -81,12 +171,21 @@ public class Person {
     }
     
     /**
-     * Returns the person's birth date.
+     * Returns the person's birth date, created on each call from the stored epoch day.
      * 
      * @return the birth date
      */
     public LocalDate getBirthDate() {
-        return birthDate;
+        return LocalDate.ofEpochDay(birthDay);
+    }
+    
+    /**
+     * Returns the birth date as an epoch day, the form it is stored in.
+     *
+     * @return the birth date as an epoch day
+     */
+    int getBirthEpochDay() {
+        return birthDay;
     }
     
     /**
@@ -95,7 +194,7 @@ public class Person {
      * @return the birth date in DD.MM.YYYY format
      */
     public String getBirthDateString() {
-        return birthDate.format(DATE_FORMATTER);
+        return BirthDateCodec.format(birthDay);
     }
     
     /**
@@ -108,13 +207,25 @@ public class Person {
     }
     
     /**
-     * Computes the person's full age in years.
+     * Computes the person's full age in years from the cached system date.
      * 
      * @return the age in years
      */
     public int getAgeYears() {
-        int age = Period.between(birthDate, LocalDate.now()).getYears();
-        log.trace("Computed age for {} {}: {} years", firstName, lastName, age);
+        return getAgeYears(DayClock.system());
+    }
+    
+    /**
+     * Computes the person's full age in years on the date of the given clock.
+     *
+     * @param clock the clock supplying today's date
+     * @return the age in years
+     */
+    public int getAgeYears(DayClock clock) {
+        int age = clock.yearsSince(birthDay);
+        if (log.isTraceEnabled()) {
+            log.trace("Computed age for {} {}: {} years", firstName, lastName, age);
+        }
         return age;
     }
     
@@ -125,6 +236,9 @@ public class Person {
      */
     @Override
     public String toString() {
-        return String.format("%s %s (%s, %s)", firstName, lastName, getBirthDateString(), gender);
+        char[] date = new char[BirthDateCodec.MAX_LENGTH];
+        int dateLength = BirthDateCodec.format(birthDay, date, 0);
+        return new StringBuilder(64).append(firstName).append(' ').append(lastName)
+            .append(" (").append(date, 0, dateLength).append(", ").append(gender).append(')').toString();
     }
 }
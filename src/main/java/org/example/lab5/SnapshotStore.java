@@ -0,0 +1,549 @@
+package org.example.lab5;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Saves and restores the complete repository state in a compact binary snapshot.
+ * <p>
+ * Layout: a 56-byte header (magic, version, student count, group count,
+ * payload length, CRC32 of the payload, generation, previous generation and
+ * journal sequence) followed by the student records and
+ * the group records. Birth dates are stored as epoch days and grades as
+ * half-points, so loading needs no text parsing. Group members are stored as
+ * positions in the student section; the group registry mapping is rebuilt from
+ * them. Files are written through NIO channels to a temporary file that
+ * replaces the snapshot only once it is complete.
+ * <p>
+ * Every snapshot carries a random, non-zero generation number so that a
+ * mutation journal can tell whether it was written on top of this snapshot,
+ * and the sequence number of the last journal record it already contains.
+ * Saving is split into {@link #capture}, which freezes the state, and
+ * {@link Image#write}, which encodes and writes it, so a journal only has to
+ * stop changes while the state is frozen.
+ */
+public class SnapshotStore {
+    private static final Logger log = LogManager.getLogger(SnapshotStore.class);
+    private static final int MAGIC = 0x53474D53; // "SGMS"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 56;
+    // Version 2 ended the header after the generation and had no journal sequence
+    private static final int VERSION_2_HEADER_SIZE = 40;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Gender[] GENDERS = Gender.values();
+
+    /**
+     * Identifies a snapshot for the mutation journal.
+     */
+    public static final class Info {
+        /** Describes a state that was not loaded from a snapshot. */
+        public static final Info NONE = new Info(0, 0, 0);
+
+        private final long generation;
+        private final long previousGeneration;
+        private final long sequence;
+
+        private Info(long generation, long previousGeneration, long sequence) {
+            this.generation = generation;
+            this.previousGeneration = previousGeneration;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Returns the generation of the snapshot.
+         *
+         * @return the generation, or 0 if the state was not loaded from a snapshot
+         */
+        public long getGeneration() {
+            return generation;
+        }
+
+        /**
+         * Returns the generation of the snapshot this one was compacted from. A journal
+         * started on top of that snapshot may still hold records this one lacks.
+         *
+         * @return the previous generation; equal to the generation if there was none
+         */
+        public long getPreviousGeneration() {
+            return previousGeneration;
+        }
+
+        /**
+         * Returns the sequence number of the last journal record contained in the snapshot.
+         *
+         * @return the sequence number, or 0 if the snapshot was not written by a journal
+         */
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * Repository state frozen by {@link #capture}, ready to be written. Only what
+     * can change in place is copied: grades, group descriptions and memberships.
+     * Names, index numbers and the other student fields never change, so the
+     * students themselves are kept by reference.
+     */
+    public static final class Image {
+        private final Student[] students;
+        private final int[] gradeCounts;
+        private final byte[] gradeCodes;
+        private final Group[] groups;
+        private final String[] descriptions;
+        private final Student[][] members;
+
+        private Image(Student[] students, int[] gradeCounts, byte[] gradeCodes, Group[] groups,
+                      String[] descriptions, Student[][] members) {
+            this.students = students;
+            this.gradeCounts = gradeCounts;
+            this.gradeCodes = gradeCodes;
+            this.groups = groups;
+            this.descriptions = descriptions;
+            this.members = members;
+        }
+
+        /**
+         * Writes the captured state to a snapshot file. The repositories may change meanwhile.
+         *
+         * @param file the snapshot file
+         * @param generation the generation of the new snapshot, from {@link #newGeneration()}
+         * @param previousGeneration the generation of the snapshot being replaced
+         * @param sequence the sequence number of the last journal record contained in the state
+         * @throws IOException if the snapshot cannot be written
+         */
+        public void write(Path file, long generation, long previousGeneration, long sequence) throws IOException {
+            long startNanos = System.nanoTime();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                BlockWriter out = new BlockWriter(channel);
+
+                Map<Student, Integer> positions = new HashMap<>();
+                int codeOffset = 0;
+                for (int i = 0; i < students.length; i++) {
+                    Student student = students[i];
+                    positions.put(student, i);
+                    out.putString(student.getId());
+                    out.putString(student.getIndexNumber());
+                    out.putString(student.getFirstName());
+                    out.putString(student.getLastName());
+                    out.putInt(student.getBirthEpochDay());
+                    out.putByte(student.getGender().ordinal());
+                    out.putInt(gradeCounts[i]);
+                    for (int g = 0; g < gradeCounts[i]; g++) {
+                        out.putByte(gradeCodes[codeOffset++]);
+                    }
+                }
+
+                for (int i = 0; i < groups.length; i++) {
+                    out.putString(groups[i].getName());
+                    out.putString(descriptions[i]);
+                    out.putInt(members[i].length);
+                    for (Student member : members[i]) {
+                        Integer position = positions.get(member);
+                        out.putInt(position != null ? position : -1);
+                    }
+                }
+
+                long payloadLength = out.finish();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(students.length)
+                    .putInt(groups.length)
+                    .putLong(payloadLength)
+                    .putLong(out.checksum())
+                    .putLong(generation)
+                    .putLong(previousGeneration)
+                    .putLong(sequence);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+
+                log.info("Snapshot written to {}: {} students, {} groups, {} bytes in {} ms",
+                    file, students.length, groups.length, HEADER_SIZE + payloadLength,
+                    (System.nanoTime() - startNanos) / 1_000_000);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    /**
+     * Writes all students and groups to a snapshot file.
+     *
+     * @param file the snapshot file
+     * @param studentRepo the students to save
+     * @param groupRepo the groups to save
+     * @return the generation of the new snapshot
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static long save(Path file, StudentRepository studentRepo, GroupRepository groupRepo) throws IOException {
+        long generation = newGeneration();
+        // Not compacted from a journal, so no earlier journal extends it
+        capture(studentRepo, groupRepo).write(file, generation, generation, 0);
+        return generation;
+    }
+
+    /**
+     * Freezes the state of all students and groups so it can be written later.
+     * The repositories must not change meanwhile; this only copies references,
+     * grades and memberships, so it takes a fraction of the time of writing.
+     *
+     * @param studentRepo the students to save
+     * @param groupRepo the groups to save
+     * @return the captured state
+     */
+    public static Image capture(StudentRepository studentRepo, GroupRepository groupRepo) {
+        long startNanos = System.nanoTime();
+        Student[] students = studentRepo.getAll().toArray(new Student[0]);
+        int[] gradeCounts = new int[students.length];
+        byte[] gradeCodes = new byte[Math.max(16, students.length)];
+        int codeCount = 0;
+        for (int i = 0; i < students.length; i++) {
+            Student student = students[i];
+            int gradeCount = student.gradeCount();
+            if (codeCount + gradeCount > gradeCodes.length) {
+                gradeCodes = Arrays.copyOf(gradeCodes, Math.max(gradeCodes.length * 2, codeCount + gradeCount));
+            }
+            for (int g = 0; g < gradeCount; g++) {
+                gradeCodes[codeCount++] = (byte) (student.gradeAt(g) * 2);
+            }
+            gradeCounts[i] = gradeCount;
+        }
+
+        Group[] groups = groupRepo.getAll().toArray(new Group[0]);
+        String[] descriptions = new String[groups.length];
+        Student[][] members = new Student[groups.length][];
+        for (int i = 0; i < groups.length; i++) {
+            descriptions[i] = groups[i].getDescription();
+            members[i] = groups[i].getMembers().toArray(new Student[0]);
+        }
+
+        log.debug("Snapshot captured: {} students, {} groups in {} ms",
+            students.length, groups.length, (System.nanoTime() - startNanos) / 1_000_000);
+        return new Image(students, gradeCounts, gradeCodes, groups, descriptions, members);
+    }
+
+    /**
+     * Creates a random, non-zero generation number for a new snapshot.
+     *
+     * @return the generation
+     */
+    public static long newGeneration() {
+        long generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while (generation == 0);
+        return generation;
+    }
+
+    /**
+     * Replaces the contents of the repositories with the state stored in a snapshot.
+     * The snapshot is fully read and verified before anything is changed, so the
+     * repositories are left untouched if it is missing, corrupt or of another version.
+     *
+     * @param file the snapshot file
+     * @param studentRepo the repository to fill with students
+     * @param groupRepo the repository to fill with groups
+     * @return the generation, previous generation and journal sequence of the loaded snapshot
+     * @throws IOException if the snapshot cannot be read or fails verification
+     */
+    public static Info load(Path file, StudentRepository studentRepo, GroupRepository groupRepo) throws IOException {
+        long startNanos = System.nanoTime();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.limit(VERSION_2_HEADER_SIZE);
+            readFully(channel, header);
+
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot file: " + file);
+            }
+            int version = header.getInt(4);
+            int headerSize;
+            if (version == VERSION) {
+                headerSize = HEADER_SIZE;
+                header.limit(HEADER_SIZE);
+                readFully(channel, header);
+            } else if (version == 2) {
+                headerSize = VERSION_2_HEADER_SIZE;
+            } else {
+                throw new IOException("Unsupported snapshot version " + version + " (expected " + VERSION + ")");
+            }
+            header.position(8);
+            int studentCount = header.getInt();
+            int groupCount = header.getInt();
+            long payloadLength = header.getLong();
+            long expectedChecksum = header.getLong();
+            long generation = header.getLong();
+            Info info = version == VERSION
+                ? new Info(generation, header.getLong(), header.getLong())
+                : new Info(generation, generation, 0);
+
+            if (payloadLength != channel.size() - headerSize) {
+                throw new IOException("Snapshot truncated: expected " + payloadLength + " payload bytes");
+            }
+            if (payloadLength > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + payloadLength + " bytes");
+            }
+
+            MappedByteBuffer payload = channel.map(FileChannel.MapMode.READ_ONLY, headerSize, payloadLength);
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != expectedChecksum) {
+                throw new IOException("Snapshot checksum mismatch");
+            }
+
+            try {
+                BlockReader in = new BlockReader(payload);
+
+                // Decode into columns first: IDs are only adopted once the whole snapshot is known to be good
+                long[] storedIds = new long[studentCount];
+                String[] indexNumbers = new String[studentCount];
+                String[] firstNames = new String[studentCount];
+                String[] lastNames = new String[studentCount];
+                int[] birthDays = new int[studentCount];
+                Gender[] genders = new Gender[studentCount];
+                int[] gradeOffsets = new int[studentCount + 1];
+                Set<String> seenIndexNumbers = new HashSet<>();
+                byte[] codes = new byte[(int) Math.min(Math.max(16L, studentCount * 4L), payloadLength)];
+                for (int i = 0; i < studentCount; i++) {
+                    storedIds[i] = Person.parseId(in.getString());
+                    indexNumbers[i] = in.getString();
+                    if (!seenIndexNumbers.add(indexNumbers[i])) {
+                        throw new IllegalArgumentException("Duplicate index number: " + indexNumbers[i]);
+                    }
+                    firstNames[i] = StringPool.shared().intern(in.getString());
+                    lastNames[i] = StringPool.shared().intern(in.getString());
+                    birthDays[i] = payload.getInt();
+                    genders[i] = GENDERS[payload.get()];
+                    int gradeCount = payload.getInt();
+                    int start = gradeOffsets[i];
+                    if (gradeCount < 0 || gradeCount > payload.remaining()) {
+                        throw new IllegalArgumentException("Invalid grade count: " + gradeCount);
+                    }
+                    if (start + gradeCount > codes.length) {
+                        codes = Arrays.copyOf(codes, Math.max(start + gradeCount, codes.length + (codes.length >> 1)));
+                    }
+                    payload.get(codes, start, gradeCount);
+                    for (int g = start; g < start + gradeCount; g++) {
+                        if (!Student.isValidCode(codes[g])) {
+                            throw new IllegalArgumentException("Invalid grade: " + codes[g] / 2.0);
+                        }
+                    }
+                    gradeOffsets[i + 1] = start + gradeCount;
+                }
+
+                List<Group> groups = new ArrayList<>(groupCount);
+                List<int[]> memberPositions = new ArrayList<>(groupCount);
+                for (int i = 0; i < groupCount; i++) {
+                    String name = in.getString();
+                    String description = StringPool.shared().intern(in.getString());
+                    groups.add(new Group(name, description, groupRepo.getRegistry()));
+                    int[] positions = new int[payload.getInt()];
+                    for (int m = 0; m < positions.length; m++) {
+                        positions[m] = payload.getInt();
+                        if (positions[m] >= studentCount) {
+                            throw new IllegalArgumentException("Invalid member position: " + positions[m]);
+                        }
+                    }
+                    memberPositions.add(positions);
+                }
+
+                // Verified and decoded: now replace the current state
+                List<Student> replaced = new ArrayList<>(studentRepo.getAll());
+                studentRepo.clear();
+                groupRepo.clear();
+                // The replaced students are gone, so the snapshot may bring their IDs back
+                for (Student student : replaced) {
+                    IdAllocator.global().release(student.getNumericId());
+                }
+                Student[] students = new Student[studentCount];
+                for (int i = 0; i < studentCount; i++) {
+                    students[i] = Student.fromCodes(IdAllocator.global().adopt(storedIds[i]), firstNames[i],
+                        lastNames[i], birthDays[i], genders[i], indexNumbers[i], codes, gradeOffsets[i],
+                        gradeOffsets[i + 1] - gradeOffsets[i]);
+                    studentRepo.add(students[i]);
+                }
+                for (int i = 0; i < groups.size(); i++) {
+                    Group group = groups.get(i);
+                    for (int position : memberPositions.get(i)) {
+                        if (position >= 0) {
+                            group.restoreMember(students[position]);
+                        }
+                    }
+                    groupRepo.add(group);
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Snapshot is corrupt: " + e.getMessage(), e);
+            }
+
+            log.info("Snapshot loaded from {}: {} students, {} groups in {} ms",
+                file, studentCount, groupCount, (System.nanoTime() - startNanos) / 1_000_000);
+            return info;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new IOException("Snapshot truncated: incomplete header");
+            }
+        }
+    }
+
+    /**
+     * Restores the repositories at startup. A snapshot is preferred; if it cannot be
+     * read, the configured CSV files are imported instead. The ID allocator is opened
+     * first, so that loaded students keep their IDs and new ones never collide with them.
+     *
+     * @param config the configuration naming the snapshot and CSV files
+     * @param studentRepo the repository to fill with students
+     * @param groupRepo the repository to fill with groups
+     * @return the loaded snapshot, or {@link Info#NONE} if the state came from CSV
+     *         or nothing was restored
+     */
+    public static Info restore(ConfigManager config, StudentRepository studentRepo, GroupRepository groupRepo) {
+        IdAllocator.global().open(Paths.get(config.getIdFile()));
+
+        Path snapshot = Paths.get(config.getSnapshotFile());
+        if (!Files.exists(snapshot)) {
+            log.debug("No snapshot at {}, starting empty", snapshot);
+            return Info.NONE;
+        }
+
+        try {
+            return load(snapshot, studentRepo, groupRepo);
+        } catch (IOException e) {
+            log.warn("Could not load snapshot {} ({}), falling back to CSV", snapshot, e.getMessage());
+        }
+
+        try {
+            Path studentsFile = Paths.get(config.getStudentsFile());
+            Path groupsFile = Paths.get(config.getGroupsFile());
+            if (Files.exists(studentsFile)) {
+                CsvStudentHandler.forEachStudent(studentsFile, config.getDelimiter(),
+                    config.getImportParallelism(), studentRepo::add);
+            }
+            if (Files.exists(groupsFile)) {
+                CsvGroupHandler.forEachGroup(groupsFile, config.getDelimiter(), studentRepo,
+                    groupRepo.getRegistry(), group -> {
+                        if (!groupRepo.addIfAbsent(group)) {
+                            CsvGroupHandler.discard(group);
+                        }
+                    });
+            }
+            log.info("Restored {} students and {} groups from CSV",
+                studentRepo.size(), groupRepo.getAll().size());
+        } catch (IOException e) {
+            log.error("CSV fallback failed: {}", e.getMessage());
+        }
+        return Info.NONE;
+    }
+
+    /**
+     * Buffers snapshot output, writes it to the channel in large blocks and
+     * keeps a running checksum. Starts writing right after the header.
+     */
+    private static class BlockWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private long position = HEADER_SIZE;
+
+        BlockWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int count = Math.min(bytes.length - offset, buffer.remaining());
+                buffer.put(bytes, offset, count);
+                offset += count;
+            }
+        }
+
+        long finish() throws IOException {
+            flush();
+            return position - HEADER_SIZE;
+        }
+
+        long checksum() {
+            return crc.getValue();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Decodes strings from the mapped payload through a reusable byte array.
+     */
+    private static class BlockReader {
+        private final ByteBuffer payload;
+        private byte[] scratch = new byte[64];
+
+        BlockReader(ByteBuffer payload) {
+            this.payload = payload;
+        }
+
+        String getString() {
+            int length = payload.getInt();
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            payload.get(scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.lab5;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool that deduplicates frequently repeated strings such as first names,
+ * surnames and group descriptions.
+ * <p>
+ * The pool is a fixed-size table indexed by hash code, where each string may sit in
+ * one of two neighbouring slots. {@link #intern(String)} returns the pooled instance
+ * when an equal string occupies either slot, and otherwise stores the given string
+ * in a free slot, or evicts the first one. Memory is therefore
+ * bounded by the capacity, no matter how many distinct strings pass through, and
+ * strings that repeat often stay pooled. Lookups are lock-free and safe from any
+ * number of threads; a lost race only means a missed deduplication.
+ */
+public final class StringPool {
+    /** Strings longer than this are passed through unpooled. */
+    private static final int MAX_LENGTH = 64;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final StringPool SHARED = new StringPool(DEFAULT_CAPACITY);
+
+    private final AtomicReferenceArray<String> slots;
+    private final int shift;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    /**
+     * Creates a pool with the given number of slots, rounded up to a power of two.
+     *
+     * @param capacity the maximum number of pooled strings
+     */
+    public StringPool(int capacity) {
+        int bits = 1;
+        while ((1 << bits) < capacity && bits < 30) {
+            bits++;
+        }
+        slots = new AtomicReferenceArray<>(1 << bits);
+        shift = 32 - bits;
+    }
+
+    /**
+     * Returns the pool shared by the CSV and snapshot loaders and the services.
+     *
+     * @return the shared pool
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns a canonical instance equal to the given string.
+     *
+     * @param value the string to deduplicate, may be null
+     * @return the pooled instance, or {@code value} itself if it was not pooled yet
+     */
+    public String intern(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        // Names differing in one character have close hash codes; multiplying scatters them
+        int slot = (value.hashCode() * 0x9E3779B9) >>> shift;
+        String pooled = slots.get(slot);
+        if (pooled == null || !pooled.equals(value)) {
+            String neighbour = slots.get(slot ^ 1);
+            if (neighbour == null || !neighbour.equals(value)) {
+                slots.set(pooled != null && neighbour == null ? slot ^ 1 : slot, value);
+                misses.increment();
+                return value;
+            }
+            pooled = neighbour;
+        }
+        if (pooled != value) {
+            hits.increment();
+            bytesSaved.add(estimateSize(value));
+        }
+        return pooled;
+    }
+
+    /**
+     * Returns the number of slots, i.e. the most strings the pool can hold.
+     *
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * Returns how many lookups returned an already pooled, different instance.
+     *
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many lookups stored a new string.
+     *
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the share of lookups that were deduplicated.
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Returns an estimate of the heap no longer retained thanks to deduplication,
+     * assuming each dropped duplicate was a Latin-1 string.
+     *
+     * @return the estimated bytes saved
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * Resets the statistics; pooled strings are kept.
+     */
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+        bytesSaved.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StringPool[capacity=%d, hits=%d, misses=%d, hitRate=%.1f%%, saved=%d KB]",
+            getCapacity(), getHits(), getMisses(), getHitRate() * 100, getBytesSaved() >> 10);
+    }
+
+    /**
+     * Estimates the heap size of a string: a 24-byte String object plus a 16-byte
+     * array header and one byte per character, rounded up to 8 bytes.
+     */
+    private static long estimateSize(String value) {
+        return 24 + ((16 + value.length() + 7) & ~7);
+    }
+}
@@ -1,31 +1,34 @@
 package org.example.lab5;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
 import java.util.OptionalDouble;
-import java.util.Set;
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 /**
  * Represents a student, extending the Person class with academic information.
+ * <p>
+ * Grades are stored as half-points in a byte array (4.5 is stored as 9), together
+ * with a running sum, so the average is available without iterating or boxing.
  */
 public class Student extends Person {
     private static final Logger log = LogManager.getLogger(Student.class);
-    private static final Set<Double> VALID_GRADES = new HashSet<>();
+    private static final BulkLogging.Sampler CREATED_LOG = new BulkLogging.Sampler();
+    private static final BulkLogging.Sampler GRADE_LOG = new BulkLogging.Sampler();
+    // Indexed by grade * 2: 2.0, 3.0, 3.5, 4.0, 4.5 and 5.0
+    private static final boolean[] VALID_CODES = {
+        false, false, false, false, true, false, true, true, true, true, true
+    };
     
-    static {
-        VALID_GRADES.add(2.0);
-        VALID_GRADES.add(3.0);
-        VALID_GRADES.add(3.5);
-        VALID_GRADES.add(4.0);
-        VALID_GRADES.add(4.5);
-        VALID_GRADES.add(5.0);
-    }
+    private static final byte[] NO_CODES = new byte[0];
     
     private final String indexNumber;
-    private final List<Double> grades;
+    private byte[] gradeCodes = NO_CODES;
+    private int gradeCount;
+    private int gradeSum; // in half-points
     
     /**
      * Creates a new Student with the given details.
@@ -39,8 +42,104 @@ public class Student extends Person {
     public Student(String firstName, String lastName, String birthDate, Gender gender, String indexNumber) {
         super(firstName, lastName, birthDate, gender);
         this.indexNumber = indexNumber;
-        this.grades = new ArrayList<>();
-        log.info("New Student created: index={} personId={}", indexNumber, getId());
+        if (CREATED_LOG.shouldLog(log, Level.INFO)) {
+            log.info("New Student created: index={} personId={}", indexNumber, getId());
+        }
+    }
+    
+    private Student(long id, String firstName, String lastName, int birthDay, Gender gender,
+                    String indexNumber) {
+        super(id, firstName, lastName, birthDay, gender);
+        this.indexNumber = indexNumber;
+    }
+    
+    /**
+     * Creates a student loaded in bulk from a CSV file or snapshot.
+     * <p>
+     * All fields are already parsed, so nothing is logged or parsed per student: the
+     * stored ID is kept if it is still free, the grade codes are validated in one pass
+     * and copied into an array of exactly the right size.
+     *
+     * @param storedId the stored ID, or -1 if there is none
+     * @param firstName the student's first name
+     * @param lastName the student's last name
+     * @param birthDay the birth date as an epoch day
+     * @param gender the student's gender
+     * @param indexNumber the student's index number
+     * @param codes buffer holding the grades as half-point codes (grade * 2)
+     * @param count number of grade codes in the buffer
+     * @return the loaded student
+     * @throws IllegalArgumentException if any grade code is not valid
+     */
+    static Student bulkLoad(long storedId, String firstName, String lastName, int birthDay, Gender gender,
+                            String indexNumber, byte[] codes, int count) {
+        for (int i = 0; i < count; i++) {
+            if (!isValidCode(codes[i])) {
+                throw new IllegalArgumentException("Invalid grade: " + codes[i] / 2.0);
+            }
+        }
+        Student student = new Student(IdAllocator.global().adopt(storedId), firstName, lastName, birthDay,
+            gender, indexNumber);
+        student.setCodes(codes, 0, count);
+        return student;
+    }
+    
+    /**
+     * Recreates a student recorded together with its ID, e.g. by a journal, without
+     * per-entity logging. The stored ID is kept if it is still free, otherwise a new
+     * one is assigned. Grades are added afterwards with {@link #addGrade(double)}.
+     *
+     * @param storedId the stored numeric ID, or -1 to assign a new one
+     * @param firstName the student's first name
+     * @param lastName the student's last name
+     * @param birthDate the birth date as a string in DD.MM.YYYY format
+     * @param gender the student's gender
+     * @param indexNumber the student's index number
+     * @return the student
+     * @throws java.time.format.DateTimeParseException if the birth date is not valid
+     */
+    public static Student restore(long storedId, String firstName, String lastName, String birthDate,
+                                  Gender gender, String indexNumber) {
+        return bulkLoad(storedId, firstName, lastName, BirthDateCodec.parse(birthDate), gender, indexNumber,
+            NO_CODES, 0);
+    }
+    
+    /**
+     * Materializes a student kept in compact form, keeping its ID.
+     * Grades are given as half-point codes that the caller has already validated.
+     *
+     * @param id the student's numeric ID
+     * @param firstName the student's first name
+     * @param lastName the student's last name
+     * @param birthDay the birth date as an epoch day
+     * @param gender the student's gender
+     * @param indexNumber the student's index number
+     * @param codes buffer holding the grade codes
+     * @param offset position of the first grade code in the buffer
+     * @param count number of grade codes
+     * @return the student
+     */
+    static Student fromCodes(long id, String firstName, String lastName, int birthDay, Gender gender,
+                             String indexNumber, byte[] codes, int offset, int count) {
+        Student student = new Student(id, firstName, lastName, birthDay, gender, indexNumber);
+        student.setCodes(codes, offset, count);
+        return student;
+    }
+    
+    /**
+     * Copies the grades as half-point codes into a buffer. The grades are read once,
+     * so a concurrent change cannot make the copy run past the grade array.
+     *
+     * @param target the buffer to write to
+     * @param offset position of the first code in the buffer
+     * @param max the most codes the buffer has room for
+     * @return the number of codes copied
+     */
+    int copyGradeCodes(byte[] target, int offset, int max) {
+        byte[] codes = gradeCodes;
+        int count = Math.min(Math.min(gradeCount, codes.length), max);
+        System.arraycopy(codes, 0, target, offset, count);
+        return count;
     }
     
     /**
@@ -58,7 +157,34 @@ public class Student extends Person {
      * @return the list of grades
      */
     public List<Double> getGrades() {
-        return new ArrayList<>(grades);
+        List<Double> grades = new ArrayList<>(gradeCount);
+        for (int i = 0; i < gradeCount; i++) {
+            grades.add(gradeCodes[i] / 2.0);
+        }
+        return grades;
+    }
+    
+    /**
+     * Returns the number of grades.
+     *
+     * @return the grade count
+     */
+    public int gradeCount() {
+        return gradeCount;
+    }
+    
+    /**
+     * Returns a single grade without copying the grade list.
+     *
+     * @param index the position of the grade (0-based)
+     * @return the grade
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public double gradeAt(int index) {
+        if (index < 0 || index >= gradeCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + gradeCount);
+        }
+        return gradeCodes[index] / 2.0;
     }
     
     /**
@@ -69,15 +195,18 @@ public class Student extends Person {
      * @throws IllegalArgumentException if the grade is not valid
      */
     public void addGrade(double grade) {
-        if (!VALID_GRADES.contains(grade)) {
+        int code = gradeCode(grade);
+        if (code < 0) {
             log.error("Attempt to add invalid grade={} for student index={}", grade, indexNumber);
             throw new IllegalArgumentException(
                 "Invalid grade: " + grade + ". Valid grades are: 2.0, 3.0, 3.5, 4.0, 4.5, 5.0"
             );
         }
-        grades.add(grade);
-        log.debug("Added grade={} to student index={} (now {} grades)",
-            grade, indexNumber, grades.size());
+        appendCode(code);
+        if (GRADE_LOG.shouldLog(log, Level.DEBUG)) {
+            log.debug("Added grade={} to student index={} (now {} grades)",
+                grade, indexNumber, gradeCount);
+        }
     }
     
     /**
@@ -87,12 +216,13 @@ public class Student extends Person {
      * @return true if the grade was removed, false if index is out of bounds
      */
     public boolean removeGrade(int index) {
-        if (index < 0 || index >= grades.size()) {
+        if (index < 0 || index >= gradeCount) {
             log.warn("Attempt to remove grade at invalid index={} for student index={}",
                 index, indexNumber);
             return false;
         }
-        double removedGrade = grades.remove(index);
+        double removedGrade = gradeCodes[index] / 2.0;
+        removeCodeAt(index);
         log.info("Removed grade={} at position {} from student index={}",
             removedGrade, index, indexNumber);
         return true;
@@ -105,21 +235,30 @@ public class Student extends Person {
      * @return true if the grade was found and removed, false otherwise
      */
     public boolean removeGradeValue(double grade) {
-        boolean removed = grades.remove(Double.valueOf(grade));
-        if (removed) {
+        int position = -1;
+        int code = gradeCode(grade);
+        for (int i = 0; code >= 0 && i < gradeCount; i++) {
+            if (gradeCodes[i] == code) {
+                position = i;
+                break;
+            }
+        }
+        if (position >= 0) {
+            removeCodeAt(position);
             log.info("Removed grade value={} from student index={}", grade, indexNumber);
-        } else {
-            log.warn("Grade value={} not found for student index={}", grade, indexNumber);
+            return true;
         }
-        return removed;
+        log.warn("Grade value={} not found for student index={}", grade, indexNumber);
+        return false;
     }
 
     /**
      * Clears all grades for this student.
      */
     public void clearGrades() {
-        int count = grades.size();
-        grades.clear();
+        int count = gradeCount;
+        gradeCount = 0;
+        gradeSum = 0;
         log.info("Cleared {} grades from student index={}", count, indexNumber);
     }
 
@@ -129,19 +268,83 @@ public class Student extends Person {
      * @return OptionalDouble containing the average, or empty if no grades
      */
     public OptionalDouble average() {
-        if (grades.isEmpty()) {
+        if (gradeCount == 0) {
             log.trace("Computed average for index={}: no grades", indexNumber);
             return OptionalDouble.empty();
         }
-        double sum = 0;
-        for (double grade : grades) {
-            sum += grade;
+        double avg = averageOr(0);
+        if (log.isTraceEnabled()) {
+            log.trace("Computed average for index={}: {}", indexNumber, avg);
         }
-        double avg = sum / grades.size();
-        log.trace("Computed average for index={}: {}", indexNumber, avg);
         return OptionalDouble.of(avg);
     }
     
+    /**
+     * Returns the average of all grades, or a default if there are none.
+     * Unlike {@link #average()} this allocates nothing, which suits comparators.
+     *
+     * @param defaultValue the value returned when the student has no grades
+     * @return the average, or the default value
+     */
+    public double averageOr(double defaultValue) {
+        if (gradeCount == 0) {
+            return defaultValue;
+        }
+        // The half-point sum is exact, so this equals summing the grades as doubles
+        return gradeSum / 2.0 / gradeCount;
+    }
+    
+    /**
+     * Checks whether the student has any grades.
+     *
+     * @return true if at least one grade is recorded
+     */
+    public boolean hasGrades() {
+        return gradeCount > 0;
+    }
+    
+    /**
+     * Returns the half-point code of a legal grade, or -1 if the grade is not legal.
+     */
+    static int gradeCode(double grade) {
+        double doubled = grade * 2;
+        int code = (int) doubled;
+        if (code != doubled || code < 0 || code >= VALID_CODES.length || !VALID_CODES[code]) {
+            return -1;
+        }
+        return code;
+    }
+    
+    /**
+     * Checks whether a half-point code stands for a legal grade.
+     */
+    static boolean isValidCode(int code) {
+        return code >= 0 && code < VALID_CODES.length && VALID_CODES[code];
+    }
+    
+    private void setCodes(byte[] codes, int offset, int count) {
+        gradeCodes = count == 0 ? NO_CODES : Arrays.copyOfRange(codes, offset, offset + count);
+        gradeCount = count;
+        gradeSum = 0;
+        for (int i = 0; i < count; i++) {
+            gradeSum += gradeCodes[i];
+        }
+    }
+    
+    private void appendCode(int code) {
+        if (gradeCount == gradeCodes.length) {
+            gradeCodes = Arrays.copyOf(gradeCodes, Math.max(4, gradeCount * 2));
+        }
+        gradeCodes[gradeCount++] = (byte) code;
+        gradeSum += code;
+    }
+    
+    private void removeCodeAt(int index) {
+        gradeSum -= gradeCodes[index];
+        System.arraycopy(gradeCodes, index + 1, gradeCodes, index, gradeCount - index - 1);
+        gradeCount--;
+    }
+    
     /**
      * Returns a string representation of the student.
      * 
@@ -1,33 +1,242 @@
 package org.example.lab5;
 
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 /**
  * Repository for managing students in memory.
+ * Students are indexed by ID and, through a secondary index, by index number.
+ * <p>
+ * Students are partitioned by numeric ID into a fixed number of shards, each with
+ * its own primitive-keyed map and its own lock. The repository is safe to share
+ * between threads. Lookups by ID read the shard optimistically and only wait when
+ * they overlap a write to the same shard; {@link #getAll()} iterates weakly
+ * consistently. Writes that touch both indexes lock the shard of the student, so
+ * writers in different shards never contend.
+ * <p>
+ * Full passes over large repositories should use the parallel operations
+ * ({@link #parallelForEach}, {@link #parallelFilter}, {@link #parallelCount} and
+ * {@link #aggregate}), which scan the shards concurrently on the common
+ * fork/join pool.
+ * <p>
+ * Each shard also keeps a trigram index of its students' names and index numbers,
+ * so that {@link #search} only checks the students that can match instead of
+ * scanning all of them. The index is built by the first search and updated with
+ * every write after that, so repositories that are never searched do not pay for it.
+ * <p>
+ * Read-mostly work on very large rosters can run on a {@link #compactSnapshot()},
+ * a column copy that holds tens of bytes per student instead of a {@link Student}
+ * object graph.
+ * <p>
+ * The number of students is kept in a counter updated with every write, so
+ * {@link #size()} costs the same however many students are stored, and
+ * {@linkplain #addSizeListener size listeners} learn about changes without polling.
  */
 public class StudentRepository {
-    private final Map<String, Student> students = new HashMap<>();
+    private static final Logger log = LogManager.getLogger(StudentRepository.class);
+    /** Default number of shards, used when none is configured. */
+    public static final int DEFAULT_SHARDS = 16;
+    private static final int MAX_SHARDS = 1 << 10;
+    /** Shortest search text answered from the index; shorter texts scan all students. */
+    public static final int MIN_INDEXED_SEARCH_LENGTH = TrigramIndex.GRAM_LENGTH;
 
-    public void add(Student student) {
-        students.put(student.getId(), student);
+    private final Shard[] shards;
+    private final ConcurrentMap<String, Student> byIndexNumber = new ConcurrentHashMap<>();
+    // Updated while the shard of the added or removed student is locked
+    private final AtomicInteger count = new AtomicInteger();
+    private final ChangeListeners sizeListeners = new ChangeListeners();
+
+    public StudentRepository() {
+        this(DEFAULT_SHARDS);
+    }
+
+    /**
+     * Creates a repository with the given number of shards, rounded up to a power of two.
+     *
+     * @param shardCount the number of shards; values below 1 mean a single shard
+     */
+    public StudentRepository(int shardCount) {
+        int count = 1;
+        while (count < shardCount && count < MAX_SHARDS) {
+            count <<= 1;
+        }
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    /**
+     * Adds a student, replacing a stored student with the same ID. A student whose
+     * index number belongs to another student is rejected and logged.
+     *
+     * @param student the student to add
+     * @return true if the student was added, false if the index number is taken
+     */
+    public boolean add(Student student) {
+        Shard shard = shardFor(student.getNumericId());
+        Student previous;
+        long stamp = shard.lock.writeLock();
+        try {
+            previous = shard.students.get(student.getNumericId());
+            Student holder = byIndexNumber.putIfAbsent(student.getIndexNumber(), student);
+            if (holder != null && holder != previous) {
+                log.warn("Rejected student id={}: index number {} belongs to id={}",
+                    student.getId(), student.getIndexNumber(), holder.getId());
+                return false;
+            }
+            shard.students.put(student.getNumericId(), student);
+            if (previous != null) {
+                unindex(previous);
+                shard.searchIndex.remove(previous);
+            } else {
+                count.incrementAndGet();
+            }
+            // Also covers the replaced student keeping its index number
+            byIndexNumber.put(student.getIndexNumber(), student);
+            shard.searchIndex.add(student);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+        if (previous == null) {
+            sizeListeners.fire();
+        }
+        return true;
+    }
+
+    /**
+     * Adds a student unless another student already has the same index number.
+     * The check and the insert are a single atomic step.
+     *
+     * @param student the student to add
+     * @return true if the student was added, false if the index number is taken
+     */
+    public boolean addIfIndexAbsent(Student student) {
+        Shard shard = shardFor(student.getNumericId());
+        Student previous;
+        long stamp = shard.lock.writeLock();
+        try {
+            if (byIndexNumber.putIfAbsent(student.getIndexNumber(), student) != null) {
+                return false;
+            }
+            previous = shard.students.put(student.getNumericId(), student);
+            if (previous != null) {
+                unindex(previous);
+                shard.searchIndex.remove(previous);
+            } else {
+                count.incrementAndGet();
+            }
+            shard.searchIndex.add(student);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+        if (previous == null) {
+            sizeListeners.fire();
+        }
+        return true;
     }
 
     /**
      * Updates a student in the repository by ID.
-     * Replaces the existing student with the new one.
+     * Replaces the existing student with the new one, which must have the same ID;
+     * use {@link #replace} for a copy with a different ID.
      *
      * @param id the ID of the student to replace
      * @param student the new student object
-     * @return true if student was found and updated, false otherwise
+     * @return true if student was found and updated, false if it was not found or
+     *         the new index number belongs to another student
+     * @throws IllegalArgumentException if the new student has a different ID
      */
     public boolean update(String id, Student student) {
-        if (students.containsKey(id)) {
-            students.put(id, student);
+        long key = Person.parseId(id);
+        if (key < 0) {
+            return false;
+        }
+        if (student.getNumericId() != key) {
+            throw new IllegalArgumentException("Student id=" + student.getId() + " cannot replace id=" + id);
+        }
+        Shard shard = shardFor(key);
+        long stamp = shard.lock.writeLock();
+        try {
+            Student previous = shard.students.get(key);
+            if (previous == null) {
+                return false;
+            }
+            Student holder = byIndexNumber.putIfAbsent(student.getIndexNumber(), student);
+            if (holder != null && holder != previous) {
+                return false;
+            }
+            shard.students.put(key, student);
+            unindex(previous);
+            byIndexNumber.put(student.getIndexNumber(), student);
+            shard.searchIndex.remove(previous);
+            shard.searchIndex.add(student);
+            return true;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically replaces a student with an updated copy that may have a different
+     * ID and index number. Fails if the current student is no longer stored or if
+     * the new index number belongs to someone else.
+     *
+     * @param current the student currently stored
+     * @param replacement the student to store instead
+     * @return true if the student was replaced, false otherwise
+     */
+    public boolean replace(Student current, Student replacement) {
+        int from = shardIndex(current.getNumericId());
+        int to = shardIndex(replacement.getNumericId());
+        // Lock shards in index order so that two replacements cannot deadlock
+        StampedLock first = shards[Math.min(from, to)].lock;
+        StampedLock second = shards[Math.max(from, to)].lock;
+        long firstStamp = first.writeLock();
+        long secondStamp = from != to ? second.writeLock() : 0;
+        try {
+            if (shards[from].students.get(current.getNumericId()) != current) {
+                return false;
+            }
+            String oldIndex = current.getIndexNumber();
+            String newIndex = replacement.getIndexNumber();
+            if (oldIndex.equals(newIndex)) {
+                if (!byIndexNumber.replace(newIndex, current, replacement)) {
+                    return false;
+                }
+            } else {
+                if (byIndexNumber.putIfAbsent(newIndex, replacement) != null) {
+                    return false;
+                }
+                byIndexNumber.remove(oldIndex, current);
+            }
+            shards[from].students.remove(current.getNumericId());
+            shards[to].students.put(replacement.getNumericId(), replacement);
+            shards[from].searchIndex.remove(current);
+            shards[to].searchIndex.add(replacement);
             return true;
+        } finally {
+            if (from != to) {
+                second.unlockWrite(secondStamp);
+            }
+            first.unlockWrite(firstStamp);
         }
-        return false;
     }
 
     /**
@@ -37,22 +246,392 @@ public class StudentRepository {
      * @return the removed student, or null if not found
      */
     public Student remove(String id) {
-        return students.remove(id);
+        long key = Person.parseId(id);
+        if (key < 0) {
+            return null;
+        }
+        Shard shard = shardFor(key);
+        Student removed;
+        long stamp = shard.lock.writeLock();
+        try {
+            removed = shard.students.remove(key);
+            if (removed != null) {
+                unindex(removed);
+                shard.searchIndex.remove(removed);
+                count.decrementAndGet();
+            }
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+        if (removed != null) {
+            sizeListeners.fire();
+        }
+        return removed;
     }
 
     public Student getById(String id) {
-        return students.get(id);
+        long key = Person.parseId(id);
+        return key >= 0 ? getById(key) : null;
     }
 
+    /**
+     * Finds a student by numeric ID.
+     *
+     * @param id the numeric ID
+     * @return the student, or null if not found
+     */
+    public Student getById(long id) {
+        Shard shard = shardFor(id);
+        long stamp = shard.lock.tryOptimisticRead();
+        Student student = shard.students.get(id);
+        if (shard.lock.validate(stamp)) {
+            return student;
+        }
+        // A write overlapped the read; retry under the read lock
+        stamp = shard.lock.readLock();
+        try {
+            return shard.students.get(id);
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Finds a student by index number.
+     *
+     * @param indexNumber the index number
+     * @return the student, or null if not found
+     */
+    public Student getByIndexNumber(String indexNumber) {
+        return indexNumber != null ? byIndexNumber.get(indexNumber) : null;
+    }
+
+    /**
+     * Checks whether a student with the given index number exists.
+     *
+     * @param indexNumber the index number
+     * @return true if the index number is taken, false otherwise
+     */
+    public boolean containsIndexNumber(String indexNumber) {
+        return indexNumber != null && byIndexNumber.containsKey(indexNumber);
+    }
+
+    /**
+     * Returns a read-only view of all students, shard by shard. Iteration is weakly
+     * consistent: it never fails because of concurrent writes and may or may not
+     * reflect them. Use {@link #remove(String)} to remove students so that the
+     * index-number index stays consistent.
+     *
+     * @return all students
+     */
     public Collection<Student> getAll() {
-        return students.values();
+        return new AllStudents();
+    }
+
+    /**
+     * Copies all students into a read-only {@link CompactStudentStore}, which keeps
+     * them in primitive columns and builds detached students on demand. The students
+     * in this repository are only read. Like {@link #getAll()} the copy is weakly
+     * consistent with concurrent writes.
+     *
+     * @return the column copy of all students
+     * @throws IllegalStateException if the students do not fit into the column arrays
+     */
+    public CompactStudentStore compactSnapshot() {
+        CompactStudentStore.Builder builder = CompactStudentStore.builder(size());
+        for (Shard shard : shards) {
+            for (Object student : shard.snapshot()) {
+                builder.add((Student) student);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Runs an action for every student, scanning the shards in parallel.
+     * The action may be called from several threads at once and must be thread-safe.
+     *
+     * @param action the action to run
+     */
+    public void parallelForEach(Consumer<? super Student> action) {
+        Arrays.stream(shards).parallel().forEach(shard -> {
+            for (Object student : shard.snapshot()) {
+                action.accept((Student) student);
+            }
+        });
+    }
+
+    /**
+     * Returns the students matching a predicate, scanning the shards in parallel.
+     * The result keeps shard order, so it matches the iteration order of {@link #getAll()}.
+     *
+     * @param filter the predicate to test; must be thread-safe
+     * @return a new list of matching students
+     */
+    public List<Student> parallelFilter(Predicate<? super Student> filter) {
+        return aggregate(ArrayList::new, (matches, student) -> {
+            if (filter.test(student)) {
+                matches.add(student);
+            }
+        }, (left, right) -> {
+            left.addAll(right);
+            return left;
+        });
+    }
+
+    /**
+     * Counts the students matching a predicate, scanning the shards in parallel.
+     *
+     * @param filter the predicate to test; must be thread-safe
+     * @return the number of matching students
+     */
+    public long parallelCount(Predicate<? super Student> filter) {
+        return Arrays.stream(shards).parallel()
+            .mapToLong(shard -> {
+                long count = 0;
+                for (Object student : shard.snapshot()) {
+                    if (filter.test((Student) student)) {
+                        count++;
+                    }
+                }
+                return count;
+            })
+            .sum();
+    }
+
+    /**
+     * Finds the students whose first name, last name or index number contains a
+     * text, ignoring case. The text is matched against the three fields joined with
+     * single spaces, so it may span them, e.g. "anna kow".
+     * <p>
+     * Texts of three or more characters are answered from the shards' trigram
+     * indexes and only check the students that share the rarest trigram of the text;
+     * shorter texts scan all students. The shards are searched in parallel.
+     *
+     * @param text the text to look for; an empty text matches everyone
+     * @param filter an extra condition, e.g. membership in a group; must be thread-safe
+     * @return a new list of matching students, in no particular order
+     */
+    public List<Student> search(String text, Predicate<? super Student> filter) {
+        String normalized = TrigramIndex.normalize(text);
+        if (normalized.length() < MIN_INDEXED_SEARCH_LENGTH) {
+            return parallelFilter(student -> TrigramIndex.matches(student, normalized) && filter.test(student));
+        }
+        return Arrays.stream(shards).parallel()
+            .map(shard -> shard.search(normalized, filter))
+            .reduce((left, right) -> {
+                left.addAll(right);
+                return left;
+            })
+            .orElseGet(ArrayList::new);
+    }
+
+    /**
+     * Finds the students whose first name, last name or index number contains a text.
+     *
+     * @param text the text to look for, ignoring case
+     * @return a new list of matching students
+     * @see #search(String, Predicate)
+     */
+    public List<Student> search(String text) {
+        return search(text, student -> true);
+    }
+
+    /**
+     * Checks a single student against a search text with the same rules as
+     * {@link #search}, e.g. to decide whether a new student belongs in search results.
+     *
+     * @param student the student to check
+     * @param text the text to look for, ignoring case
+     * @return true if the student matches
+     */
+    public static boolean matchesSearch(Student student, String text) {
+        return TrigramIndex.matches(student, TrigramIndex.normalize(text));
+    }
+
+    /**
+     * Aggregates all students into a result, scanning the shards in parallel.
+     * Each shard is folded into its own container from {@code supplier}; the
+     * containers are then merged in shard order with {@code combiner}.
+     *
+     * @param supplier creates an empty container for one shard
+     * @param accumulator adds one student to a container
+     * @param combiner merges the right container into the left one and returns the result
+     * @param <A> the container type
+     * @return the combined result
+     */
+    public <A> A aggregate(Supplier<A> supplier, BiConsumer<A, ? super Student> accumulator,
+                           BinaryOperator<A> combiner) {
+        return Arrays.stream(shards).parallel()
+            .map(shard -> {
+                A container = supplier.get();
+                for (Object student : shard.snapshot()) {
+                    accumulator.accept(container, (Student) student);
+                }
+                return container;
+            })
+            .reduce(combiner)
+            .orElseGet(supplier);
     }
 
     public void clear() {
-        students.clear();
+        long[] stamps = new long[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            stamps[i] = shards[i].lock.writeLock();
+        }
+        try {
+            for (Shard shard : shards) {
+                shard.students.clear();
+                shard.searchIndex.clear();
+            }
+            byIndexNumber.clear();
+            count.set(0);
+        } finally {
+            for (int i = 0; i < shards.length; i++) {
+                shards[i].lock.unlockWrite(stamps[i]);
+            }
+        }
+        sizeListeners.fire();
     }
 
+    /**
+     * Returns the number of students, read from a counter without visiting the shards.
+     *
+     * @return the number of students
+     */
     public int size() {
-        return students.size();
+        return count.get();
+    }
+
+    /**
+     * Registers an action to run whenever the number of students changes. It runs on
+     * the thread that added or removed a student, once per student, so it should only
+     * note the change, e.g. to refresh a view later.
+     *
+     * @param listener the action to run
+     */
+    public void addSizeListener(Runnable listener) {
+        sizeListeners.add(listener);
+    }
+
+    /**
+     * Unregisters an action added with {@link #addSizeListener}.
+     *
+     * @param listener the action to remove
+     */
+    public void removeSizeListener(Runnable listener) {
+        sizeListeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of shards the students are partitioned into.
+     *
+     * @return the shard count, a power of two
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private int shardIndex(long id) {
+        // IDs are sequential; spread them so consecutive students land in different shards
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (shards.length - 1);
+    }
+
+    private Shard shardFor(long id) {
+        return shards[shardIndex(id)];
+    }
+
+    private void unindex(Student student) {
+        // Only drop the entry if it still points at this student
+        byIndexNumber.remove(student.getIndexNumber(), student);
+    }
+
+    /**
+     * One partition of the repository.
+     */
+    private static final class Shard {
+        final LongHashMap<Student> students = new LongHashMap<>();
+        final TrigramIndex searchIndex = new TrigramIndex();
+        final StampedLock lock = new StampedLock();
+
+        List<Student> search(String text, Predicate<? super Student> filter) {
+            List<Student> matches = new ArrayList<>();
+            long stamp = lock.readLock();
+            try {
+                if (!searchIndex.isBuilt()) {
+                    stamp = upgrade(stamp);
+                    if (!searchIndex.isBuilt()) {
+                        searchIndex.build(students.valuesToArray());
+                    }
+                }
+                searchIndex.search(text, matches);
+            } finally {
+                lock.unlock(stamp);
+            }
+            // The filter may take other locks, so it runs after the shard lock is released
+            matches.removeIf(filter.negate());
+            return matches;
+        }
+
+        /**
+         * Turns a read lock into the write lock, waiting for other readers if needed.
+         */
+        private long upgrade(long readStamp) {
+            long stamp = lock.tryConvertToWriteLock(readStamp);
+            if (stamp == 0L) {
+                lock.unlockRead(readStamp);
+                stamp = lock.writeLock();
+            }
+            return stamp;
+        }
+
+        /**
+         * Copies the shard's students, so that callers can scan them without holding the lock.
+         */
+        Object[] snapshot() {
+            long stamp = lock.readLock();
+            try {
+                return students.valuesToArray();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Read-only view that walks the shards one after another.
+     */
+    private final class AllStudents extends AbstractCollection<Student> {
+        @Override
+        public Iterator<Student> iterator() {
+            return new Iterator<Student>() {
+                private int nextShard = 0;
+                private Object[] current = new Object[0];
+                private int position = 0;
+
+                @Override
+                public boolean hasNext() {
+                    while (position == current.length && nextShard < shards.length) {
+                        current = shards[nextShard++].snapshot();
+                        position = 0;
+                    }
+                    return position < current.length;
+                }
+
+                @Override
+                public Student next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return (Student) current[position++];
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return StudentRepository.this.size();
+        }
     }
 }
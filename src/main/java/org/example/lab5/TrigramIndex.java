@@ -0,0 +1,254 @@
+package org.example.lab5;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Substring index over the search key of students: first name, last name and
+ * index number joined with single spaces, in lower case.
+ * <p>
+ * Every run of three characters of a key (a trigram) maps to the students whose
+ * key contains it. A query of three or more characters only has to check the
+ * students listed under its rarest trigram, instead of every student. Shorter
+ * queries have no trigram and must be answered by a scan with {@link #matches}.
+ * <p>
+ * The index costs a few microseconds and about a hundred bytes per student, so
+ * it is only built on the first search; from then on every add and remove keeps
+ * it up to date. It is not thread-safe; each repository shard keeps one and
+ * guards it with the shard lock.
+ */
+final class TrigramIndex {
+    static final int GRAM_LENGTH = 3;
+
+    /**
+     * Students listed under one trigram, in no particular order.
+     */
+    private static final class Postings {
+        Student[] students = new Student[2];
+        int size;
+
+        void add(Student student) {
+            if (size == students.length) {
+                students = Arrays.copyOf(students, size * 2);
+            }
+            students[size++] = student;
+        }
+
+        boolean remove(Student student) {
+            for (int i = 0; i < size; i++) {
+                if (students[i] == student) {
+                    // Order does not matter, so move the last entry into the gap
+                    students[i] = students[--size];
+                    students[size] = null;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private LongHashMap<Postings> postings;
+    // Trigrams of the student being added or removed; writes hold the shard's write lock
+    private long[] scratch = new long[32];
+
+    /**
+     * Checks whether the index has been built and is being kept up to date.
+     *
+     * @return true once {@link #build} has run
+     */
+    boolean isBuilt() {
+        return postings != null;
+    }
+
+    /**
+     * Indexes the students present when searching starts.
+     *
+     * @param students the students of the shard
+     */
+    void build(Object[] students) {
+        postings = new LongHashMap<>(students.length);
+        for (Object student : students) {
+            add((Student) student);
+        }
+    }
+
+    void add(Student student) {
+        if (postings == null) {
+            return;
+        }
+        int count = trigrams(student);
+        for (int i = 0; i < count; i++) {
+            Postings list = postings.get(scratch[i]);
+            if (list == null) {
+                list = new Postings();
+                postings.put(scratch[i], list);
+            }
+            list.add(student);
+        }
+    }
+
+    void remove(Student student) {
+        if (postings == null) {
+            return;
+        }
+        int count = trigrams(student);
+        for (int i = 0; i < count; i++) {
+            Postings list = postings.get(scratch[i]);
+            if (list != null && list.remove(student) && list.size == 0) {
+                postings.remove(scratch[i]);
+            }
+        }
+    }
+
+    /**
+     * Drops the index; it is built again on the next search.
+     */
+    void clear() {
+        postings = null;
+    }
+
+    /**
+     * Adds the indexed students whose key contains a query to a list.
+     *
+     * @param text the query, already normalized with {@link #normalize}; at least three characters
+     * @param matches the list to add the matching students to
+     */
+    void search(String text, List<Student> matches) {
+        Postings rarest = null;
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            Postings list = postings.get(pack(text.charAt(i), text.charAt(i + 1), text.charAt(i + 2)));
+            if (list == null) {
+                return;
+            }
+            if (rarest == null || list.size < rarest.size) {
+                rarest = list;
+            }
+        }
+        for (int i = 0; i < rarest.size; i++) {
+            Student student = rarest.students[i];
+            if (matches(student, text)) {
+                matches.add(student);
+            }
+        }
+    }
+
+    /**
+     * Lower-cases a query the same way keys are lower-cased.
+     *
+     * @param text the query as typed
+     * @return the query in lower case
+     */
+    static String normalize(String text) {
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = lower(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Checks whether a student's key contains a query, without building the key.
+     *
+     * @param student the student to check
+     * @param text the query, already normalized with {@link #normalize}
+     * @return true if the key contains the query
+     */
+    static boolean matches(Student student, String text) {
+        String first = student.getFirstName();
+        String last = student.getLastName();
+        String index = student.getIndexNumber();
+        if (text.indexOf(' ') < 0) {
+            // Without a space the query cannot span two fields
+            return contains(first, text) || contains(last, text) || contains(index, text);
+        }
+        int keyLength = first.length() + last.length() + index.length() + 2;
+        for (int start = 0; start + text.length() <= keyLength; start++) {
+            int i = 0;
+            while (i < text.length() && keyChar(first, last, index, start + i) == text.charAt(i)) {
+                i++;
+            }
+            if (i == text.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(String field, String text) {
+        char head = text.charAt(0);
+        for (int start = 0; start + text.length() <= field.length(); start++) {
+            if (lower(field.charAt(start)) != head) {
+                continue;
+            }
+            int i = 1;
+            while (i < text.length() && lower(field.charAt(start + i)) == text.charAt(i)) {
+                i++;
+            }
+            if (i == text.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char keyChar(String first, String last, String index, int position) {
+        if (position < first.length()) {
+            return lower(first.charAt(position));
+        }
+        position -= first.length() + 1;
+        if (position < 0) {
+            return ' ';
+        }
+        if (position < last.length()) {
+            return lower(last.charAt(position));
+        }
+        position -= last.length() + 1;
+        return position < 0 ? ' ' : lower(index.charAt(position));
+    }
+
+    private static char lower(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static long pack(char a, char b, char c) {
+        return (long) a << 32 | (long) b << 16 | c;
+    }
+
+    /**
+     * Collects the distinct trigrams of a student's key into {@link #scratch}.
+     *
+     * @return the number of trigrams collected
+     */
+    private int trigrams(Student student) {
+        String first = student.getFirstName();
+        String last = student.getLastName();
+        String index = student.getIndexNumber();
+        int count = first.length() + last.length() + index.length() + 2 - GRAM_LENGTH + 1;
+        if (count <= 0) {
+            return 0;
+        }
+        if (scratch.length < count) {
+            scratch = new long[count];
+        }
+        char a = keyChar(first, last, index, 0);
+        char b = keyChar(first, last, index, 1);
+        for (int i = 0; i < count; i++) {
+            char c = keyChar(first, last, index, i + 2);
+            scratch[i] = pack(a, b, c);
+            a = b;
+            b = c;
+        }
+        // A student is listed once per trigram, even if the trigram repeats in the key
+        Arrays.sort(scratch, 0, count);
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (scratch[i] != scratch[distinct - 1]) {
+                scratch[distinct++] = scratch[i];
+            }
+        }
+        return distinct;
+    }
+}
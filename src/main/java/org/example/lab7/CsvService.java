@@ -1,28 +1,58 @@
 package org.example.lab7;
 
+import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.lab5.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
 
 /**
  * Service layer for CSV import/export operations.
  * Handles business logic for file operations.
+ * <p>
+ * Every operation can be observed and cancelled through a {@link Monitor}. An
+ * import that is cancelled or fails removes everything it added before its
+ * bulk change ends, so the repositories are left as they were. Other changes
+ * can be made while an import runs. An export is
+ * written to a temporary file that only replaces the target when complete.
  */
 public class CsvService {
     private static final Logger log = LogManager.getLogger(CsvService.class);
+    private static final BulkLogging.Sampler DUPLICATE_LOG = new BulkLogging.Sampler();
 
     private final StudentRepository studentRepo;
     private final GroupRepository groupRepo;
     private final ConfigManager config;
+    private final MutationJournal journal;
 
     public CsvService(StudentRepository studentRepo, GroupRepository groupRepo, ConfigManager config) {
+        this(studentRepo, groupRepo, config, MutationJournal.disabled());
+    }
+
+    /**
+     * Creates a service whose imports are persisted through the given journal.
+     * Imported rows are not journaled one by one; each import runs as a bulk change
+     * of the journal and ends with a compaction that folds them into a new snapshot.
+     *
+     * @param studentRepo the student repository
+     * @param groupRepo the group repository
+     * @param config the configuration providing the delimiter and import settings
+     * @param journal the journal to compact after each import
+     */
+    public CsvService(StudentRepository studentRepo, GroupRepository groupRepo, ConfigManager config,
+                      MutationJournal journal) {
         this.studentRepo = studentRepo;
         this.groupRepo = groupRepo;
         this.config = config;
+        this.journal = journal;
     }
 
     /**
@@ -35,13 +65,24 @@ public class CsvService {
      * @throws CsvFormatException if CSV format is invalid
      */
     public CsvImportResult loadStudents(Path filePath, String addToGroup) throws IOException, CsvFormatException {
-        log.info("Loading students from CSV: {}", filePath.toAbsolutePath());
-
-        List<Student> students = CsvStudentHandler.loadStudents(filePath, config.getDelimiter());
+        return loadStudents(filePath, addToGroup, Monitor.NONE);
+    }
 
-        int addedToRepo = 0;
-        int addedToGroup = 0;
-        int skipped = 0;
+    /**
+     * Loads students from a CSV file, reporting progress in bytes read and each added student.
+     *
+     * @param filePath path to CSV file
+     * @param addToGroup optional group name to add students to
+     * @param monitor observes the import and can cancel it
+     * @return result containing number of students loaded
+     * @throws IOException if file operation fails
+     * @throws CsvFormatException if CSV format is invalid
+     * @throws CancellationException if the monitor cancelled the import; nothing was added
+     */
+    public CsvImportResult loadStudents(Path filePath, String addToGroup, Monitor monitor)
+            throws IOException, CsvFormatException {
+        log.info("Loading students from CSV: {}", filePath.toAbsolutePath());
+        long totalBytes = Files.size(filePath);
 
         Group targetGroup = null;
         if (addToGroup != null && !addToGroup.trim().isEmpty()) {
@@ -51,29 +92,29 @@ public class CsvService {
             }
         }
 
-        for (Student student : students) {
-            // Check if student already exists (by index number)
-            boolean exists = studentRepo.getAll().stream()
-                .anyMatch(s -> s.getIndexNumber().equals(student.getIndexNumber()));
-
-            if (exists) {
-                log.debug("Skipping duplicate student: {}", student.getIndexNumber());
-                skipped++;
-                continue;
-            }
-
-            studentRepo.add(student);
-            addedToRepo++;
-
-            // Add to group if specified
-            if (targetGroup != null) {
-                if (targetGroup.addStudent(student)) {
-                    addedToGroup++;
-                }
-            }
+        // Students are streamed from the file straight into the repository
+        StudentImport tally = new StudentImport(targetGroup, monitor);
+        journal.beginBulk();
+        try {
+            CsvStudentHandler.forEachStudent(filePath, config.getDelimiter(), config.getImportParallelism(), tally,
+                (lines, bytes) -> {
+                    checkCancelled(monitor);
+                    monitor.progress(lines, bytes, totalBytes);
+                });
+        } catch (IOException | RuntimeException e) {
+            // Still inside the bulk change, so compaction never sees the partial import
+            abortBulk(() -> tally.rollBack(filePath));
+            throw e;
         }
+        // Compacts the completed import, so the imported students become durable
+        endBulk(filePath, () -> tally.rollBack(filePath));
+
+        int addedToRepo = tally.addedToRepo;
+        int addedToGroup = tally.addedToGroup;
+        int skipped = tally.skipped;
 
         log.info("Loaded {} students from CSV (skipped {} duplicates)", addedToRepo, skipped);
+        log.debug("Name deduplication: {}", StringPool.shared());
 
         return new CsvImportResult(addedToRepo, addedToGroup, skipped);
     }
@@ -87,23 +128,40 @@ public class CsvService {
      * @throws CsvFormatException if CSV format is invalid
      */
     public CsvImportResult loadGroups(Path filePath) throws IOException, CsvFormatException {
-        log.info("Loading groups from CSV: {}", filePath.toAbsolutePath());
-
-        List<Group> groups = CsvGroupHandler.loadGroups(filePath, config.getDelimiter(), studentRepo);
-
-        int added = 0;
-        int skipped = 0;
-
-        for (Group group : groups) {
-            if (groupRepo.exists(group.getName())) {
-                log.debug("Skipping duplicate group: {}", group.getName());
-                skipped++;
-                continue;
-            }
+        return loadGroups(filePath, Monitor.NONE);
+    }
 
-            groupRepo.add(group);
-            added++;
+    /**
+     * Loads groups from a CSV file, reporting progress in bytes read.
+     *
+     * @param filePath path to CSV file
+     * @param monitor observes the import and can cancel it
+     * @return result containing number of groups loaded
+     * @throws IOException if file operation fails
+     * @throws CsvFormatException if CSV format is invalid
+     * @throws CancellationException if the monitor cancelled the import; nothing was added
+     */
+    public CsvImportResult loadGroups(Path filePath, Monitor monitor) throws IOException, CsvFormatException {
+        log.info("Loading groups from CSV: {}", filePath.toAbsolutePath());
+        long totalBytes = Files.size(filePath);
+
+        // Groups are streamed from the file straight into the repository
+        GroupImport tally = new GroupImport();
+        journal.beginBulk();
+        try {
+            CsvGroupHandler.forEachGroup(filePath, config.getDelimiter(), studentRepo,
+                groupRepo.getRegistry(), tally, (lines, bytes) -> {
+                    checkCancelled(monitor);
+                    monitor.progress(lines, bytes, totalBytes);
+                });
+        } catch (IOException | RuntimeException e) {
+            abortBulk(() -> tally.rollBack(filePath));
+            throw e;
         }
+        endBulk(filePath, () -> tally.rollBack(filePath));
+
+        int added = tally.added;
+        int skipped = tally.skipped;
 
         log.info("Loaded {} groups from CSV (skipped {} duplicates)", added, skipped);
 
@@ -118,12 +176,32 @@ public class CsvService {
      * @throws IOException if file operation fails
      */
     public int saveStudents(Path filePath) throws IOException {
-        log.info("Saving {} students to CSV: {}", studentRepo.size(), filePath.toAbsolutePath());
-
-        CsvStudentHandler.saveStudents(studentRepo.getAll(), filePath, config.getDelimiter());
+        return saveStudents(filePath, Monitor.NONE);
+    }
 
-        log.info("Successfully exported {} students", studentRepo.size());
-        return studentRepo.size();
+    /**
+     * Saves students to a CSV file, reporting progress in rows written.
+     *
+     * @param filePath path to CSV file
+     * @param monitor observes the export and can cancel it
+     * @return number of students saved
+     * @throws IOException if file operation fails
+     * @throws CancellationException if the monitor cancelled the export; the file was not changed
+     */
+    public int saveStudents(Path filePath, Monitor monitor) throws IOException {
+        int studentCount = studentRepo.size();
+        log.info("Saving {} students to CSV: {}", studentCount, filePath.toAbsolutePath());
+
+        long[] written = new long[1];
+        writeReplacing(filePath, temp -> CsvStudentHandler.saveStudents(studentRepo.getAll(), temp,
+            config.getDelimiter(), (rows, bytes) -> {
+                checkCancelled(monitor);
+                written[0] = rows;
+                monitor.progress(rows, rows, studentCount);
+            }));
+
+        log.info("Successfully exported {} students", written[0]);
+        return (int) written[0];
     }
 
     /**
@@ -134,15 +212,238 @@ public class CsvService {
      * @throws IOException if file operation fails
      */
     public int saveGroups(Path filePath) throws IOException {
-        int groupCount = groupRepo.getAll().size();
+        return saveGroups(filePath, Monitor.NONE);
+    }
+
+    /**
+     * Saves groups to a CSV file, reporting progress in rows written.
+     *
+     * @param filePath path to CSV file
+     * @param monitor observes the export and can cancel it
+     * @return number of groups saved
+     * @throws IOException if file operation fails
+     * @throws CancellationException if the monitor cancelled the export; the file was not changed
+     */
+    public int saveGroups(Path filePath, Monitor monitor) throws IOException {
+        int groupCount = groupRepo.size();
         log.info("Saving {} groups to CSV: {}", groupCount, filePath.toAbsolutePath());
 
-        CsvGroupHandler.saveGroups(groupRepo.getAll(), filePath, config.getDelimiter());
+        writeReplacing(filePath, temp -> CsvGroupHandler.saveGroups(groupRepo.getAll(), temp,
+            config.getDelimiter(), (rows, bytes) -> {
+                checkCancelled(monitor);
+                monitor.progress(rows, rows, groupCount);
+            }));
 
         log.info("Successfully exported {} groups", groupCount);
         return groupCount;
     }
 
+    /**
+     * Writes an export to a temporary sibling file and moves it over the target once
+     * it is complete. If the export fails or is cancelled, the target is left untouched.
+     */
+    private static void writeReplacing(Path filePath, Export export) throws IOException {
+        Path temp = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+        try {
+            export.writeTo(temp);
+            Files.move(temp, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private static void checkCancelled(Monitor monitor) {
+        if (monitor.isCancelRequested()) {
+            throw new CancellationException("Cancelled by user");
+        }
+    }
+
+    /**
+     * Ends the bulk change of a failed import after rolling it back.
+     */
+    private void abortBulk(Runnable rollBack) throws IOException {
+        try {
+            rollBack.run();
+        } finally {
+            journal.endBulk(false);
+        }
+    }
+
+    /**
+     * Ends the bulk change of a completed import, which compacts so the import becomes
+     * durable. If that fails, the import is rolled back rather than kept in memory
+     * while being reported as failed.
+     */
+    private void endBulk(Path filePath, Runnable rollBack) throws IOException {
+        try {
+            journal.endBulk(true);
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not save import from {}, rolling it back: {}", filePath, e.getMessage());
+            // Reopened so no compaction runs while the import is removed
+            journal.beginBulk();
+            try {
+                rollBack.run();
+            } finally {
+                try {
+                    // A compaction may have saved the import in the meantime, so save the rollback too
+                    journal.endBulk(true);
+                } catch (IOException | RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes one export to the given file.
+     */
+    @FunctionalInterface
+    private interface Export {
+        void writeTo(Path file) throws IOException;
+    }
+
+    /**
+     * Observes a running import or export. Its methods are called on the thread
+     * running the operation, so implementations must be thread-safe.
+     */
+    public interface Monitor {
+        /**
+         * A monitor that never cancels and ignores all progress.
+         */
+        Monitor NONE = new Monitor() {
+        };
+
+        /**
+         * Checks whether the operation should stop. Imports then roll back and
+         * exports leave the target file as it was.
+         *
+         * @return true to cancel the operation
+         */
+        default boolean isCancelRequested() {
+            return false;
+        }
+
+        /**
+         * Reports progress, every few thousand rows and at the end.
+         *
+         * @param rows the rows read or written so far
+         * @param done the work done: bytes read for imports, rows written for exports
+         * @param total the total work in the same unit
+         */
+        default void progress(long rows, long done, long total) {
+        }
+
+        /**
+         * Receives each student added to the repository by an import.
+         *
+         * @param student the added student
+         */
+        default void studentAdded(Student student) {
+        }
+    }
+
+    /**
+     * Adds streamed students to the repository (and optionally a group),
+     * counting how many were added and how many were skipped as duplicates.
+     */
+    private class StudentImport implements Consumer<Student> {
+        private final Group targetGroup;
+        private final Monitor monitor;
+        // Kept for the rollback
+        private final List<Student> added = new ArrayList<>();
+        private int addedToRepo;
+        private int addedToGroup;
+        private int skipped;
+
+        StudentImport(Group targetGroup, Monitor monitor) {
+            this.targetGroup = targetGroup;
+            this.monitor = monitor;
+        }
+
+        @Override
+        public void accept(Student student) {
+            checkCancelled(monitor);
+
+            // Check if student already exists (by index number)
+            if (!studentRepo.addIfIndexAbsent(student)) {
+                if (DUPLICATE_LOG.shouldLog(log, Level.DEBUG)) {
+                    log.debug("Skipping duplicate student: {}", student.getIndexNumber());
+                }
+                skipped++;
+                return;
+            }
+
+            addedToRepo++;
+            added.add(student);
+
+            // Add to group if specified
+            if (targetGroup != null) {
+                if (targetGroup.addStudent(student)) {
+                    addedToGroup++;
+                }
+            }
+            monitor.studentAdded(student);
+        }
+
+        /**
+         * Removes every student added so far from the group and the repository.
+         */
+        void rollBack(Path filePath) {
+            try (BulkLogging.Operation rollback = BulkLogging.begin(log, "Rollback of student import from " + filePath)) {
+                for (int i = added.size() - 1; i >= 0; i--) {
+                    Student student = added.get(i);
+                    if (targetGroup != null && targetGroup.getMembers().contains(student)) {
+                        targetGroup.removeStudent(student);
+                    }
+                    studentRepo.remove(student.getId());
+                    // Nothing was saved yet, so importing the file again may reuse its IDs
+                    IdAllocator.global().release(student.getNumericId());
+                    rollback.processed();
+                }
+            }
+            added.clear();
+        }
+    }
+
+    /**
+     * Adds streamed groups to the repository, counting duplicates that were skipped.
+     */
+    private class GroupImport implements Consumer<Group> {
+        // Kept for the rollback
+        private final List<Group> addedGroups = new ArrayList<>();
+        private int added;
+        private int skipped;
+
+        @Override
+        public void accept(Group group) {
+            if (!groupRepo.addIfAbsent(group)) {
+                log.debug("Skipping duplicate group: {}", group.getName());
+                CsvGroupHandler.discard(group);
+                skipped++;
+                return;
+            }
+
+            added++;
+            addedGroups.add(group);
+        }
+
+        /**
+         * Removes every group added so far and unassigns its members.
+         */
+        void rollBack(Path filePath) {
+            try (BulkLogging.Operation rollback = BulkLogging.begin(log, "Rollback of group import from " + filePath)) {
+                for (Group group : addedGroups) {
+                    groupRepo.remove(group.getName());
+                    CsvGroupHandler.discard(group);
+                    rollback.processed();
+                }
+            }
+            addedGroups.clear();
+        }
+    }
+
     /**
      * Result of a CSV import operation.
      */
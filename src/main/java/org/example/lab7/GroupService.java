@@ -12,9 +12,40 @@ public class GroupService {
     private static final Logger log = LogManager.getLogger(GroupService.class);
 
     private final GroupRepository groupRepo;
+    private final MutationJournal journal;
+    private final RepositoryEvents events = new RepositoryEvents();
 
     public GroupService(GroupRepository groupRepo) {
+        this(groupRepo, MutationJournal.disabled());
+    }
+
+    /**
+     * Creates a service that records every change in the given journal.
+     *
+     * @param groupRepo the group repository
+     * @param journal the journal receiving one record per change
+     */
+    public GroupService(GroupRepository groupRepo, MutationJournal journal) {
         this.groupRepo = groupRepo;
+        this.journal = journal;
+    }
+
+    /**
+     * Registers a listener for the changes made through this service.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(RepositoryListener listener) {
+        events.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(RepositoryListener listener) {
+        events.remove(listener);
     }
 
     /**
@@ -29,23 +60,29 @@ public class GroupService {
     public Group createGroup(String name, String description) {
         log.debug("Creating group: {}", name);
 
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Group name is required.");
-        }
+        try (MutationJournal.Entry entry = journal.begin(MutationJournal.groupKey(name != null ? name.trim() : null))) {
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Group name is required.");
+            }
 
-        name = name.trim();
+            name = name.trim();
 
-        // Check if group already exists
-        if (groupRepo.exists(name)) {
-            throw new IllegalStateException("Group with name '" + name + "' already exists.");
-        }
+            // Check if group already exists
+            if (groupRepo.exists(name)) {
+                throw new IllegalStateException("Group with name '" + name + "' already exists.");
+            }
 
-        String desc = description != null ? description.trim() : "";
-        Group group = new Group(name, desc);
-        groupRepo.add(group);
+            String desc = StringPool.shared().intern(description != null ? description.trim() : "");
+            Group group = new Group(name, desc, groupRepo.getRegistry());
+            if (!groupRepo.addIfAbsent(group)) {
+                throw new IllegalStateException("Group with name '" + name + "' already exists.");
+            }
+            entry.createGroup(group);
+            events.groupAdded(group);
 
-        log.info("Group created: {}", name);
-        return group;
+            log.info("Group created: {}", name);
+            return group;
+        }
     }
 
     /**
@@ -58,17 +95,21 @@ public class GroupService {
     public void updateGroupDescription(String groupName, String newDescription) {
         log.debug("Updating description for group: {}", groupName);
 
-        Group group = groupRepo.getByName(groupName);
-        if (group == null) {
-            throw new IllegalArgumentException("Group not found: " + groupName);
-        }
+        try (MutationJournal.Entry entry = journal.begin(MutationJournal.groupKey(groupName))) {
+            Group group = groupRepo.getByName(groupName);
+            if (group == null) {
+                throw new IllegalArgumentException("Group not found: " + groupName);
+            }
 
-        if (newDescription == null || newDescription.trim().isEmpty()) {
-            throw new IllegalArgumentException("Description cannot be empty.");
-        }
+            if (newDescription == null || newDescription.trim().isEmpty()) {
+                throw new IllegalArgumentException("Description cannot be empty.");
+            }
 
-        group.setDescription(newDescription.trim());
-        log.info("Group description updated: {}", groupName);
+            group.setDescription(StringPool.shared().intern(newDescription.trim()));
+            entry.updateGroupDescription(group);
+            events.groupUpdated(group);
+            log.info("Group description updated: {}", groupName);
+        }
     }
 
     /**
@@ -81,23 +122,25 @@ public class GroupService {
     public int removeGroup(String groupName) {
         log.debug("Removing group: {}", groupName);
 
-        Group group = groupRepo.getByName(groupName);
-        if (group == null) {
-            throw new IllegalArgumentException("Group not found: " + groupName);
-        }
-
-        int memberCount = group.getMembers().size();
+        try (MutationJournal.Entry entry = journal.begin(MutationJournal.groupKey(groupName))) {
+            // Remove group from repository first, so no new members can find it
+            Group group = groupRepo.remove(groupName);
+            if (group == null) {
+                throw new IllegalArgumentException("Group not found: " + groupName);
+            }
 
-        // Remove all students from group (this also updates GroupRegistry)
-        for (Student student : group.getMembers().toArray(new Student[0])) {
-            group.removeStudent(student);
-        }
+            int memberCount = group.size();
 
-        // Remove group from repository
-        groupRepo.getAll().removeIf(g -> g.getName().equals(groupName));
+            // Remove all students from group (this also updates the group registry)
+            for (Student student : group.getMembers().toArray(new Student[0])) {
+                group.removeStudent(student);
+            }
+            entry.removeGroup(groupName);
+            events.groupRemoved(group);
 
-        log.info("Group removed: {} (had {} members)", groupName, memberCount);
-        return memberCount;
+            log.info("Group removed: {} (had {} members)", groupName, memberCount);
+            return memberCount;
+        }
     }
 
     /**
@@ -0,0 +1,1007 @@
+package org.example.lab7;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.lab5.*;
+
+/**
+ * Append-only journal of the changes made through {@link StudentService} and
+ * {@link GroupService}. Each mutation becomes one small checksummed record, so a
+ * change costs a single append instead of rewriting a whole file.
+ * <p>
+ * Records are numbered in the order they are appended. A background thread
+ * collects everything appended since its last write and makes it durable with one
+ * {@code force} call (group commit); callers return once their record is on disk.
+ * Records refer to students by index number and to groups by name. Records of
+ * created and updated students also carry the student's numeric ID, so replay
+ * brings them back under the IDs they had.
+ * <p>
+ * Mutations run concurrently. {@link #begin(int...)} only locks the stripes of the
+ * students and groups a mutation touches, so changes to the same student or group
+ * are recorded in the order they were made, while unrelated changes never wait for
+ * each other.
+ * <p>
+ * The journal is split into segments. Compaction cuts the journal at the last
+ * appended sequence number, switches new records to a fresh segment and writes a
+ * snapshot of the state up to the cut; mutations only wait while that state is
+ * copied into memory, not while it is written. The old segment is deleted once the
+ * snapshot is on disk. On startup every segment that extends the restored
+ * snapshot is replayed, skipping the records the snapshot already contains.
+ */
+public class MutationJournal implements Closeable {
+    private static final Logger log = LogManager.getLogger(MutationJournal.class);
+    private static final int MAGIC = 0x53474D4A; // "SGMJ"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int SEQUENCE_SIZE = 8;
+    private static final int LOCK_STRIPES = 64;
+    private static final Gender[] GENDERS = Gender.values();
+
+    private static final byte CREATE_STUDENT = 1;
+    private static final byte UPDATE_STUDENT = 2;
+    private static final byte REMOVE_STUDENT = 3;
+    private static final byte TRANSFER_STUDENT = 4;
+    private static final byte ADD_GRADE = 5;
+    private static final byte REMOVE_GRADE = 6;
+    private static final byte CLEAR_GRADES = 7;
+    private static final byte CREATE_GROUP = 8;
+    private static final byte UPDATE_GROUP_DESCRIPTION = 9;
+    private static final byte REMOVE_GROUP = 10;
+
+    private static final MutationJournal DISABLED = new MutationJournal();
+
+    private final boolean enabled;
+    // Student stripes first, then group stripes; always locked in ascending order
+    private final ReentrantLock[] stripes = new ReentrantLock[2 * LOCK_STRIPES];
+    // Shared by mutations, taken exclusively by compaction while it copies the state
+    private final ReentrantReadWriteLock captureLock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final Path snapshotFile;
+    private final Path[] segmentFiles;
+    private final StudentRepository studentRepo;
+    private final GroupRepository groupRepo;
+    private final long compactThreshold;
+    private final Thread writer;
+    private final ExecutorService compactor;
+    private final CRC32 crc = new CRC32();
+
+    // Guarded by compactionLock
+    private long generation;
+    private Path retiredSegment;
+    private int bulkChanges;
+    private boolean compactionDeferred;
+
+    // Guarded by this
+    private FileChannel channel;
+    private int segment;
+    private ByteBuffer pending = ByteBuffer.allocate(4096);
+    private ByteBuffer writing = ByteBuffer.allocate(4096);
+    private long appendedSequence;
+    private long durableSequence;
+    private long fileSize;
+    private boolean compactionScheduled;
+    private boolean closed;
+    private IOException failure;
+
+    private MutationJournal() {
+        this.enabled = false;
+        this.snapshotFile = null;
+        this.segmentFiles = null;
+        this.studentRepo = null;
+        this.groupRepo = null;
+        this.compactThreshold = Long.MAX_VALUE;
+        this.writer = null;
+        this.compactor = null;
+    }
+
+    private MutationJournal(ConfigManager config, StudentRepository studentRepo, GroupRepository groupRepo) {
+        this.enabled = true;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.snapshotFile = Paths.get(config.getSnapshotFile());
+        Path journalFile = Paths.get(config.getJournalFile());
+        this.segmentFiles = new Path[] {journalFile, journalFile.resolveSibling(journalFile.getFileName() + ".1")};
+        this.studentRepo = studentRepo;
+        this.groupRepo = groupRepo;
+        this.compactThreshold = config.getJournalCompactBytes();
+        this.writer = new Thread(this::writeLoop, "journal-writer");
+        this.writer.setDaemon(true);
+        this.compactor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns a journal that records nothing, for services used without persistence.
+     *
+     * @return the shared disabled journal
+     */
+    public static MutationJournal disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Restores the repositories from the configured snapshot (or CSV files), replays
+     * the journal on top of it and opens the journal for new records.
+     *
+     * @param config the configuration naming the snapshot and journal files
+     * @param studentRepo the repository to restore students into
+     * @param groupRepo the repository to restore groups into
+     * @return the open journal
+     * @throws IOException if the journal file cannot be opened
+     */
+    public static MutationJournal open(ConfigManager config, StudentRepository studentRepo,
+                                       GroupRepository groupRepo) throws IOException {
+        SnapshotStore.Info snapshot = SnapshotStore.restore(config, studentRepo, groupRepo);
+        MutationJournal journal = new MutationJournal(config, studentRepo, groupRepo);
+        try {
+            journal.recover(snapshot);
+        } catch (IOException e) {
+            if (journal.channel != null) {
+                journal.channel.close();
+            }
+            throw e;
+        }
+        journal.writer.start();
+        return journal;
+    }
+
+    /**
+     * Returns the lock stripe of a student, for {@link #begin(int...)}.
+     *
+     * @param indexNumber the index number of the student, or null
+     * @return the stripe, or -1 if no index number is given
+     */
+    public static int studentKey(String indexNumber) {
+        return indexNumber != null ? spread(indexNumber.hashCode()) : -1;
+    }
+
+    /**
+     * Returns the lock stripe of a group, for {@link #begin(int...)}.
+     *
+     * @param groupName the name of the group, or null
+     * @return the stripe, or -1 if no group is given
+     */
+    public static int groupKey(String groupName) {
+        return groupName != null ? LOCK_STRIPES + spread(groupName.hashCode()) : -1;
+    }
+
+    private static int spread(int hash) {
+        return (hash ^ hash >>> 16) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Starts a mutation. The returned entry must be closed when the mutation is
+     * finished; closing waits until its records are durable. Other mutations of the
+     * same students and groups wait until the entry is closed.
+     *
+     * @param keys the stripes of the students and groups the mutation reads or changes,
+     *             from {@link #studentKey} and {@link #groupKey}; -1 is ignored
+     * @return the entry used to record the mutation
+     */
+    public Entry begin(int... keys) {
+        if (!enabled) {
+            return new Entry(null);
+        }
+        int[] locked = keys.clone();
+        Arrays.sort(locked);
+        captureLock.readLock().lock();
+        int count = 0;
+        for (int key : locked) {
+            if (key >= 0 && (count == 0 || locked[count - 1] != key)) {
+                locked[count++] = key;
+                stripes[key].lock();
+            }
+        }
+        return new Entry(Arrays.copyOf(locked, count));
+    }
+
+    /**
+     * Starts a change that is not journaled record by record, such as a CSV import.
+     * Compaction is held back until every bulk change has ended, so a snapshot never
+     * contains part of a bulk change that may still be rolled back. Other mutations
+     * are not blocked.
+     */
+    public void beginBulk() {
+        if (!enabled) {
+            return;
+        }
+        compactionLock.lock();
+        try {
+            bulkChanges++;
+        } finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Ends a bulk change started with {@link #beginBulk()}. If it kept its changes,
+     * they are made durable by a compaction once no other bulk change is running.
+     *
+     * @param changed whether the bulk change kept any changes
+     * @throws IOException if the snapshot cannot be written
+     */
+    public void endBulk(boolean changed) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        boolean compactNow;
+        compactionLock.lock();
+        try {
+            bulkChanges--;
+            compactionDeferred |= changed;
+            compactNow = bulkChanges == 0 && compactionDeferred;
+            if (compactNow) {
+                compactionDeferred = false;
+            }
+        } finally {
+            compactionLock.unlock();
+        }
+        if (compactNow && changed) {
+            compact();
+        } else if (compactNow) {
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Writes a new snapshot of the repositories and starts a new journal segment.
+     * Mutations wait only while the state is copied into memory. While a bulk
+     * change is running, the compaction is postponed until it ends.
+     *
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    public void compact() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        compactionLock.lock();
+        try {
+            if (bulkChanges > 0) {
+                compactionDeferred = true;
+                return;
+            }
+            long startNanos = System.nanoTime();
+            long cut;
+            long journalBytes;
+            SnapshotStore.Image image;
+            captureLock.writeLock().lock();
+            try {
+                synchronized (this) {
+                    cut = appendedSequence;
+                    awaitDurable(cut);
+                    journalBytes = fileSize;
+                }
+                // A segment kept by a failed compaction still holds records the snapshot lacks
+                if (retiredSegment == null) {
+                    retiredSegment = switchSegment();
+                }
+                image = SnapshotStore.capture(studentRepo, groupRepo);
+            } finally {
+                captureLock.writeLock().unlock();
+            }
+            long pauseMillis = (System.nanoTime() - startNanos) / 1_000_000;
+
+            long newGeneration = SnapshotStore.newGeneration();
+            image.write(snapshotFile, newGeneration, generation, cut);
+            generation = newGeneration;
+            Files.deleteIfExists(retiredSegment);
+            retiredSegment = null;
+            log.info("Journal compacted at record {}: {} bytes folded into snapshot in {} ms, changes paused {} ms",
+                cut, journalBytes, (System.nanoTime() - startNanos) / 1_000_000, pauseMillis);
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the journal file.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        compactor.shutdown();
+        synchronized (this) {
+            channel.close();
+        }
+    }
+
+    // ========== SEGMENTS ==========
+
+    /**
+     * Opens the other segment file for new records. All appended records must be
+     * durable and no record may be appended meanwhile.
+     *
+     * @return the segment file that was written so far
+     */
+    private Path switchSegment() throws IOException {
+        int next = 1 - segment;
+        FileChannel opened = createSegment(segmentFiles[next], generation);
+        FileChannel previous;
+        synchronized (this) {
+            previous = channel;
+            channel = opened;
+            segment = next;
+            fileSize = HEADER_SIZE;
+        }
+        previous.close();
+        return segmentFiles[1 - next];
+    }
+
+    private static FileChannel createSegment(Path file, long base) throws IOException {
+        FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(base);
+            header.flip();
+            created.truncate(0);
+            while (header.hasRemaining()) {
+                created.write(header, header.position());
+            }
+            created.force(true);
+            return created;
+        } catch (IOException e) {
+            created.close();
+            throw e;
+        }
+    }
+
+    // ========== RECOVERY ==========
+
+    /**
+     * Records found in one segment file.
+     */
+    private static final class Segment {
+        final int number;
+        final int version;
+        final List<ByteBuffer> payloads = new ArrayList<>();
+        final List<Long> sequences = new ArrayList<>();
+        long validEnd;
+        long replayedEnd;
+        boolean replayed;
+
+        Segment(int number, int version) {
+            this.number = number;
+            this.version = version;
+        }
+
+        long firstSequence() {
+            return sequences.isEmpty() ? Long.MAX_VALUE : sequences.get(0);
+        }
+    }
+
+    private void recover(SnapshotStore.Info snapshot) throws IOException {
+        generation = snapshot.getGeneration();
+        long startNanos = System.nanoTime();
+
+        List<Segment> segments = new ArrayList<>();
+        for (int number = 0; number < segmentFiles.length; number++) {
+            Segment found = readSegment(number, snapshot);
+            if (found != null) {
+                segments.add(found);
+            }
+        }
+        segments.sort(Comparator.comparingLong(Segment::firstSequence));
+
+        // Replay in sequence order, skipping what the snapshot already contains
+        Replay replay = new Replay();
+        long last = snapshot.getSequence();
+        int count = 0;
+        replaying:
+        for (Segment found : segments) {
+            found.replayedEnd = found.validEnd;
+            int sequenceSize = found.version >= 2 ? SEQUENCE_SIZE : 0;
+            long position = HEADER_SIZE;
+            for (int i = 0; i < found.payloads.size(); i++) {
+                ByteBuffer payload = found.payloads.get(i);
+                long sequence = found.sequences.get(i);
+                if (sequence > last + 1) {
+                    log.warn("Journal records {} to {} are missing: dropping the records after them",
+                        last + 1, sequence - 1);
+                    found.replayedEnd = position;
+                    break replaying;
+                }
+                position += RECORD_HEADER_SIZE + sequenceSize + payload.remaining();
+                if (sequence <= last) {
+                    continue;
+                }
+                replay.apply(payload, found.version);
+                found.replayed = true;
+                last = sequence;
+                count++;
+            }
+        }
+        synchronized (this) {
+            appendedSequence = last;
+            durableSequence = last;
+        }
+        log.info("Journal replayed: {} records in {} ms", count, (System.nanoTime() - startNanos) / 1_000_000);
+
+        List<Segment> needed = new ArrayList<>();
+        for (Segment found : segments) {
+            if (found.replayed) {
+                needed.add(found);
+            }
+        }
+        if (needed.size() == 1 && needed.get(0).version == VERSION) {
+            // Keep appending to the segment that holds the replayed records
+            Segment current = needed.get(0);
+            FileChannel opened = FileChannel.open(segmentFiles[current.number], StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            long size = opened.size();
+            if (current.replayedEnd < size) {
+                log.warn("Journal has a torn tail: dropping {} bytes", size - current.replayedEnd);
+                opened.truncate(current.replayedEnd);
+            }
+            synchronized (this) {
+                channel = opened;
+                segment = current.number;
+                fileSize = current.replayedEnd;
+            }
+        } else {
+            if (!needed.isEmpty()) {
+                // Stopped during a compaction, or written in the old format: fold it all into a snapshot
+                long newGeneration = SnapshotStore.newGeneration();
+                SnapshotStore.capture(studentRepo, groupRepo).write(snapshotFile, newGeneration, generation, last);
+                generation = newGeneration;
+            }
+            FileChannel created = createSegment(segmentFiles[0], generation);
+            synchronized (this) {
+                channel = created;
+                segment = 0;
+                fileSize = HEADER_SIZE;
+            }
+        }
+        Files.deleteIfExists(segmentFiles[1 - segment]);
+    }
+
+    /**
+     * Reads the valid records of a segment file.
+     *
+     * @return the segment, or null if the file is missing or does not extend the snapshot
+     */
+    private Segment readSegment(int number, SnapshotStore.Info snapshot) throws IOException {
+        Path file = segmentFiles[number];
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal too large to replay: " + size + " bytes");
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (in.read(data, data.position()) < 0) {
+                    throw new IOException("Unexpected end of journal");
+                }
+            }
+            data.flip();
+
+            int magic = data.getInt();
+            int version = data.getInt();
+            long base = data.getLong();
+            // Version 1 had a single segment whose records carried no sequence numbers,
+            // version 2 records of created and updated students carried no IDs
+            boolean known = magic == MAGIC && (version == VERSION || version == 2 || version == 1 && number == 0);
+            if (!known || base != snapshot.getGeneration() && base != snapshot.getPreviousGeneration()) {
+                log.warn("Discarding journal segment {}: it does not extend the restored snapshot", file);
+                return null;
+            }
+
+            Segment found = new Segment(number, version);
+            long implicitSequence = snapshot.getSequence();
+            int sequenceSize = version >= 2 ? SEQUENCE_SIZE : 0;
+            while (data.remaining() >= RECORD_HEADER_SIZE) {
+                int start = data.position();
+                int length = data.getInt();
+                long checksum = data.getInt() & 0xFFFFFFFFL;
+                if (length <= sequenceSize || length > data.remaining()) {
+                    data.position(start);
+                    break;
+                }
+                ByteBuffer payload = data.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if (crc.getValue() != checksum) {
+                    data.position(start);
+                    break;
+                }
+                data.position(data.position() + length);
+                found.sequences.add(sequenceSize > 0 ? payload.getLong() : ++implicitSequence);
+                found.payloads.add(payload.slice());
+            }
+            found.validEnd = data.position();
+            return found;
+        }
+    }
+
+    /**
+     * Applies journal records through services that do not journal again.
+     */
+    private class Replay {
+        private final StudentService students = new StudentService(studentRepo, groupRepo);
+        private final GroupService groups = new GroupService(groupRepo);
+
+        void apply(ByteBuffer payload, int version) {
+            byte op = payload.get();
+            try {
+                switch (op) {
+                    case CREATE_STUDENT: {
+                        long id = version >= 3 ? payload.getLong() : -1;
+                        String index = getString(payload);
+                        String firstName = getString(payload);
+                        String lastName = getString(payload);
+                        String birthDate = getString(payload);
+                        Gender gender = GENDERS[payload.get()];
+                        double[] grades = new double[payload.getInt()];
+                        for (int i = 0; i < grades.length; i++) {
+                            grades[i] = payload.get() / 2.0;
+                        }
+                        String groupName = getString(payload);
+                        students.createStudent(id, firstName, lastName, birthDate, gender,
+                            index, grades, groupName.isEmpty() ? null : groupName);
+                        break;
+                    }
+                    case UPDATE_STUDENT: {
+                        String index = getString(payload);
+                        String firstName = getString(payload);
+                        String lastName = getString(payload);
+                        String birthDate = getString(payload);
+                        Gender gender = GENDERS[payload.get()];
+                        String newIndex = getString(payload);
+                        long id = version >= 3 ? payload.getLong() : -1;
+                        students.updateStudent(id, idOf(index), firstName, lastName, birthDate, gender, newIndex);
+                        break;
+                    }
+                    case REMOVE_STUDENT:
+                        students.removeStudent(idOf(getString(payload)));
+                        break;
+                    case TRANSFER_STUDENT:
+                        students.transferStudent(idOf(getString(payload)), getString(payload));
+                        break;
+                    case ADD_GRADE:
+                        students.addGrade(idOf(getString(payload)), payload.get() / 2.0);
+                        break;
+                    case REMOVE_GRADE:
+                        students.removeGrade(idOf(getString(payload)), payload.getInt());
+                        break;
+                    case CLEAR_GRADES:
+                        students.clearGrades(idOf(getString(payload)));
+                        break;
+                    case CREATE_GROUP:
+                        groups.createGroup(getString(payload), getString(payload));
+                        break;
+                    case UPDATE_GROUP_DESCRIPTION:
+                        groups.updateGroupDescription(getString(payload), getString(payload));
+                        break;
+                    case REMOVE_GROUP:
+                        groups.removeGroup(getString(payload));
+                        break;
+                    default:
+                        log.warn("Skipping journal record with unknown type {}", op);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Skipping journal record of type {}: {}", op, e.getMessage());
+            }
+        }
+
+        private String idOf(String index) {
+            Student student = studentRepo.getByIndexNumber(index);
+            if (student == null) {
+                throw new IllegalArgumentException("Student not found: index=" + index);
+            }
+            return student.getId();
+        }
+    }
+
+    private static String getString(ByteBuffer payload) {
+        int length = payload.getInt();
+        String value = new String(payload.array(), payload.arrayOffset() + payload.position(),
+            length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return value;
+    }
+
+    // ========== WRITING ==========
+
+    /**
+     * Numbers a finished record and queues it for the writer thread.
+     *
+     * @param record the record, with room for its header and sequence number
+     * @return the sequence number to wait for
+     */
+    private synchronized long append(ByteBuffer record) {
+        long sequence = ++appendedSequence;
+        int length = record.position() - RECORD_HEADER_SIZE;
+        record.putLong(RECORD_HEADER_SIZE, sequence);
+        crc.reset();
+        crc.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(4, (int) crc.getValue());
+        record.flip();
+
+        if (pending.remaining() < record.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                pending.position() + record.remaining()));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.put(record);
+        notifyAll();
+        return sequence;
+    }
+
+    private synchronized void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durableSequence < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer batch;
+            long batchSequence;
+            long position;
+            FileChannel target;
+            synchronized (this) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Keep running until the journal is closed
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                batch = pending;
+                pending = writing;
+                writing = batch;
+                batchSequence = appendedSequence;
+                position = fileSize;
+                target = channel;
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    position += target.write(batch, position);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                log.error("Journal write failed: {}", e.getMessage());
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+
+            synchronized (this) {
+                fileSize = position;
+                durableSequence = batchSequence;
+                notifyAll();
+                if (fileSize >= compactThreshold && !compactionScheduled && !closed) {
+                    compactionScheduled = true;
+                    compactor.execute(this::compactInBackground);
+                }
+            }
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Journal compaction failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * One mutation in progress. Record methods are called after the change has been
+     * applied; closing the entry releases its locks and waits until the records are
+     * durable.
+     */
+    public final class Entry implements AutoCloseable {
+        private final int[] locked;
+        private ByteBuffer record;
+        private long sequence;
+
+        private Entry(int[] locked) {
+            this.locked = locked;
+        }
+
+        /**
+         * Records a created student.
+         *
+         * @param student the new student
+         * @param birthDate the birth date as entered
+         * @param grades the grades the student was created with, or null
+         * @param groupName the group the student was added to, or null
+         */
+        public void createStudent(Student student, String birthDate, double[] grades, String groupName) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(CREATE_STUDENT);
+            putLong(student.getNumericId());
+            putString(student.getIndexNumber());
+            putString(student.getFirstName());
+            putString(student.getLastName());
+            putString(birthDate);
+            putByte(student.getGender().ordinal());
+            putInt(grades != null ? grades.length : 0);
+            if (grades != null) {
+                for (double grade : grades) {
+                    putByte((int) (grade * 2));
+                }
+            }
+            putString(groupName != null ? groupName : "");
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records an updated student.
+         *
+         * @param oldIndexNumber the index number before the update
+         * @param student the updated student
+         * @param birthDate the birth date as entered
+         */
+        public void updateStudent(String oldIndexNumber, Student student, String birthDate) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(UPDATE_STUDENT);
+            putString(oldIndexNumber);
+            putString(student.getFirstName());
+            putString(student.getLastName());
+            putString(birthDate);
+            putByte(student.getGender().ordinal());
+            putString(student.getIndexNumber());
+            putLong(student.getNumericId());
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a removed student.
+         *
+         * @param indexNumber the index number of the removed student
+         */
+        public void removeStudent(String indexNumber) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(REMOVE_STUDENT);
+            putString(indexNumber);
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a transfer to another group.
+         *
+         * @param indexNumber the index number of the student
+         * @param groupName the target group
+         */
+        public void transferStudent(String indexNumber, String groupName) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(TRANSFER_STUDENT);
+            putString(indexNumber);
+            putString(groupName);
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records an added grade.
+         *
+         * @param indexNumber the index number of the student
+         * @param grade the grade
+         */
+        public void addGrade(String indexNumber, double grade) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(ADD_GRADE);
+            putString(indexNumber);
+            putByte((int) (grade * 2));
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a removed grade.
+         *
+         * @param indexNumber the index number of the student
+         * @param gradeIndex the position of the removed grade
+         */
+        public void removeGrade(String indexNumber, int gradeIndex) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(REMOVE_GRADE);
+            putString(indexNumber);
+            putInt(gradeIndex);
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records that all grades of a student were cleared.
+         *
+         * @param indexNumber the index number of the student
+         */
+        public void clearGrades(String indexNumber) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(CLEAR_GRADES);
+            putString(indexNumber);
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a created group.
+         *
+         * @param group the new group
+         */
+        public void createGroup(Group group) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(CREATE_GROUP);
+            putString(group.getName());
+            putString(group.getDescription());
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a changed group description.
+         *
+         * @param group the updated group
+         */
+        public void updateGroupDescription(Group group) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(UPDATE_GROUP_DESCRIPTION);
+            putString(group.getName());
+            putString(group.getDescription());
+            sequence = finishRecord();
+        }
+
+        /**
+         * Records a removed group.
+         *
+         * @param groupName the name of the removed group
+         */
+        public void removeGroup(String groupName) {
+            if (!enabled) {
+                return;
+            }
+            startRecord(REMOVE_GROUP);
+            putString(groupName);
+            sequence = finishRecord();
+        }
+
+        /**
+         * Ends the mutation and waits until its records are durable.
+         *
+         * @throws UncheckedIOException if the journal could not be written
+         */
+        @Override
+        public void close() {
+            if (locked == null) {
+                return;
+            }
+            for (int i = locked.length - 1; i >= 0; i--) {
+                stripes[locked[i]].unlock();
+            }
+            captureLock.readLock().unlock();
+            if (sequence > 0) {
+                awaitDurable(sequence);
+            }
+        }
+
+        private void startRecord(byte op) {
+            if (record == null) {
+                record = ByteBuffer.allocate(256);
+            }
+            record.clear();
+            record.position(RECORD_HEADER_SIZE + SEQUENCE_SIZE);
+            record.put(op);
+        }
+
+        private void putByte(int value) {
+            ensureRecordCapacity(1);
+            record.put((byte) value);
+        }
+
+        private void putInt(int value) {
+            ensureRecordCapacity(4);
+            record.putInt(value);
+        }
+
+        private void putLong(long value) {
+            ensureRecordCapacity(8);
+            record.putLong(value);
+        }
+
+        private void putString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensureRecordCapacity(bytes.length);
+            record.put(bytes);
+        }
+
+        private void ensureRecordCapacity(int bytes) {
+            if (record.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(record.capacity() * 2, record.position() + bytes));
+                record.flip();
+                grown.put(record);
+                record = grown;
+            }
+        }
+
+        private long finishRecord() {
+            return append(record);
+        }
+    }
+}
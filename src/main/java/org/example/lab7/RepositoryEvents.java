@@ -0,0 +1,77 @@
+package org.example.lab7;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.lab5.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Forwards each event to all registered listeners. A listener that throws is
+ * logged and does not stop the others or the change that caused the event.
+ */
+class RepositoryEvents implements RepositoryListener {
+    private static final Logger log = LogManager.getLogger(RepositoryEvents.class);
+
+    private final List<RepositoryListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(RepositoryListener listener) {
+        listeners.add(listener);
+    }
+
+    void remove(RepositoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void send(Consumer<RepositoryListener> event) {
+        for (RepositoryListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                log.error("Repository listener failed", e);
+            }
+        }
+    }
+
+    @Override
+    public void studentAdded(Student student) {
+        send(listener -> listener.studentAdded(student));
+    }
+
+    @Override
+    public void studentUpdated(Student oldStudent, Student newStudent) {
+        send(listener -> listener.studentUpdated(oldStudent, newStudent));
+    }
+
+    @Override
+    public void studentRemoved(Student student) {
+        send(listener -> listener.studentRemoved(student));
+    }
+
+    @Override
+    public void gradesChanged(Student student) {
+        send(listener -> listener.gradesChanged(student));
+    }
+
+    @Override
+    public void membershipChanged(Student student, String oldGroup, String newGroup) {
+        send(listener -> listener.membershipChanged(student, oldGroup, newGroup));
+    }
+
+    @Override
+    public void groupAdded(Group group) {
+        send(listener -> listener.groupAdded(group));
+    }
+
+    @Override
+    public void groupUpdated(Group group) {
+        send(listener -> listener.groupUpdated(group));
+    }
+
+    @Override
+    public void groupRemoved(Group group) {
+        send(listener -> listener.groupRemoved(group));
+    }
+}
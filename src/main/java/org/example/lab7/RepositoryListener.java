@@ -0,0 +1,81 @@
+package org.example.lab7;
+
+import org.example.lab5.*;
+
+/**
+ * Receives the changes made through {@link StudentService} and {@link GroupService},
+ * so that views can update only what changed instead of reloading everything.
+ * <p>
+ * Events are sent on the thread that made the change, after it has been applied
+ * and while the journal entry is still open, so implementations must be quick
+ * and thread-safe. Bulk CSV imports send no events; views reload after them.
+ * Every method does nothing by default.
+ */
+public interface RepositoryListener {
+    /**
+     * A student was added to the repository.
+     *
+     * @param student the new student
+     */
+    default void studentAdded(Student student) {
+    }
+
+    /**
+     * A student was replaced by an edited copy, which also took over the group membership.
+     *
+     * @param oldStudent the student that was replaced
+     * @param newStudent the student now stored
+     */
+    default void studentUpdated(Student oldStudent, Student newStudent) {
+    }
+
+    /**
+     * A student was removed from the repository and from their group.
+     *
+     * @param student the removed student
+     */
+    default void studentRemoved(Student student) {
+    }
+
+    /**
+     * Grades of a student were added, removed or cleared.
+     *
+     * @param student the student whose grades changed
+     */
+    default void gradesChanged(Student student) {
+    }
+
+    /**
+     * A student joined a group or moved to another one.
+     *
+     * @param student the student
+     * @param oldGroup the previous group name, or null if the student was not assigned
+     * @param newGroup the new group name
+     */
+    default void membershipChanged(Student student, String oldGroup, String newGroup) {
+    }
+
+    /**
+     * A group was created.
+     *
+     * @param group the new group
+     */
+    default void groupAdded(Group group) {
+    }
+
+    /**
+     * A group's description changed.
+     *
+     * @param group the changed group
+     */
+    default void groupUpdated(Group group) {
+    }
+
+    /**
+     * A group was removed; its former members are no longer assigned to any group.
+     *
+     * @param group the removed group
+     */
+    default void groupRemoved(Group group) {
+    }
+}
@@ -8,12 +8,25 @@ import javax.swing.*;
 import javax.swing.Timer;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Main GUI application for Student & Group Manager using Swing (Lab 7).
@@ -21,6 +34,8 @@ import java.time.format.DateTimeParseException;
  */
 public class StudentManagerSwing extends JFrame {
     private static final Logger log = LogManager.getLogger(StudentManagerSwing.class);
+    // Pause in typing after which the search field filters the table
+    private static final int SEARCH_DELAY_MS = 200;
 
     // Domain repositories
     private final StudentRepository studentRepo;
@@ -31,14 +46,28 @@ public class StudentManagerSwing extends JFrame {
     private final StudentService studentService;
     private final GroupService groupService;
     private final CsvService csvService;
+    private final MutationJournal journal;
 
     // UI Components
     private DefaultListModel<String> groupListModel;
     private JList<String> groupList;
-    private DefaultTableModel studentTableModel;
+    private StudentTableModel studentTableModel;
     private JTable studentTable;
     private JLabel statusLabel;
+    private JLabel countsLabel;
     private JTextField searchField;
+    private JPanel taskPanel;
+    private JProgressBar taskProgressBar;
+
+    // The running import or export, if any; only touched on the Event Dispatch Thread
+    private CsvTask<?> backgroundTask;
+    // The search text the student table was last filled with
+    private String shownFilter = "";
+    // Live search: the debounce timer and the search running on a worker thread, if any
+    private Timer searchTimer;
+    private SwingWorker<Collection<Student>, Void> searchWorker;
+    // Set while a counts update is queued on the Event Dispatch Thread
+    private final AtomicBoolean countsUpdatePending = new AtomicBoolean();
 
     // Form fields
     private JTextField firstNameField;
@@ -52,14 +81,17 @@ public class StudentManagerSwing extends JFrame {
         log.info("Initializing Swing GUI application");
 
         // Initialize repositories
-        studentRepo = new StudentRepository();
-        groupRepo = new GroupRepository();
         config = new ConfigManager();
+        studentRepo = new StudentRepository(config.getRepositoryShards());
+        groupRepo = new GroupRepository();
+
+        // Restore the last session: snapshot (or CSV) plus the journal of later changes
+        journal = openJournal();
 
         // Initialize services (business logic layer)
-        studentService = new StudentService(studentRepo, groupRepo);
-        groupService = new GroupService(groupRepo);
-        csvService = new CsvService(studentRepo, groupRepo, config);
+        studentService = new StudentService(studentRepo, groupRepo, journal);
+        groupService = new GroupService(groupRepo, journal);
+        csvService = new CsvService(studentRepo, groupRepo, config, journal);
 
         // Setup main window
         setTitle("Student & Group Manager — Lab 7");
@@ -69,6 +101,29 @@ public class StudentManagerSwing extends JFrame {
 
         // Build UI
         initializeUI();
+        refreshGroupList();
+        refreshStudentTable();
+
+        // Apply single edits to the views instead of reloading them
+        ViewUpdater viewUpdater = new ViewUpdater();
+        studentService.addListener(viewUpdater);
+        groupService.addListener(viewUpdater);
+
+        // Keep the counts in the status bar current, including during imports
+        studentRepo.addSizeListener(this::countsChanged);
+        groupRepo.addSizeListener(this::countsChanged);
+        groupRepo.getRegistry().addChangeListener(this::countsChanged);
+        updateCounts();
+
+        // Persist the session for the next fast startup
+        addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosing(java.awt.event.WindowEvent e) {
+                stopBackgroundTask();
+                saveSnapshot();
+                closeJournal();
+            }
+        });
 
         log.info("Swing GUI initialized successfully");
     }
@@ -125,9 +180,19 @@ public class StudentManagerSwing extends JFrame {
         JMenuItem saveGroupsItem = new JMenuItem("Save Groups to CSV");
         saveGroupsItem.addActionListener(e -> saveGroupsToCsv());
 
+        JMenuItem saveSnapshotItem = new JMenuItem("Save Snapshot");
+        saveSnapshotItem.addActionListener(e -> {
+            if (!isBusy() && saveSnapshot()) {
+                setStatus("Snapshot saved to " + config.getSnapshotFile());
+            }
+        });
+
         JMenuItem exitItem = new JMenuItem("Exit");
         exitItem.addActionListener(e -> {
             log.info("User exiting application via menu");
+            stopBackgroundTask();
+            saveSnapshot();
+            closeJournal();
             System.exit(0);
         });
 
@@ -136,6 +201,7 @@ public class StudentManagerSwing extends JFrame {
         fileMenu.addSeparator();
         fileMenu.add(saveStudentsItem);
         fileMenu.add(saveGroupsItem);
+        fileMenu.add(saveSnapshotItem);
         fileMenu.addSeparator();
         fileMenu.add(exitItem);
 
@@ -163,6 +229,7 @@ public class StudentManagerSwing extends JFrame {
         groupList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
                 refreshStudentTable();
+                updateCounts();
             }
         });
 
@@ -202,6 +269,25 @@ public class StudentManagerSwing extends JFrame {
         JPanel searchPanel = new JPanel(new BorderLayout(5, 5));
         searchPanel.add(new JLabel("Search: "), BorderLayout.WEST);
         searchField = new JTextField();
+        // Filter while typing, once the user pauses; Enter filters right away
+        searchTimer = new Timer(SEARCH_DELAY_MS, e -> filterStudents());
+        searchTimer.setRepeats(false);
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                searchTimer.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                // Attribute changes do not change the text
+            }
+        });
         searchField.addActionListener(e -> filterStudents());
         JButton searchButton = new JButton("Filter");
         searchButton.addActionListener(e -> filterStudents());
@@ -210,18 +296,24 @@ public class StudentManagerSwing extends JFrame {
 
         panel.add(searchPanel, BorderLayout.NORTH);
 
-        // Students table
-        String[] columnNames = {"ID", "Index", "First Name", "Last Name", "Birth Date", "Gender", "Average"};
-        studentTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Students table; rows are read from the students only while they are painted
+        studentTableModel = new StudentTableModel();
 
         studentTable = new JTable(studentTableModel);
         studentTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        studentTable.getTableHeader().setReorderingAllowed(false);
+        JTableHeader header = studentTable.getTableHeader();
+        header.setReorderingAllowed(false);
+
+        // Click a column header to sort by it, again to reverse the order
+        header.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int column = studentTable.columnAtPoint(e.getPoint());
+                if (column >= 0) {
+                    sortStudentTable(studentTable.convertColumnIndexToModel(column));
+                }
+            }
+        });
 
         // Double-click to edit student
         studentTable.addMouseListener(new java.awt.event.MouseAdapter() {
@@ -380,18 +472,26 @@ public class StudentManagerSwing extends JFrame {
         statusLabel.setBorder(new EmptyBorder(3, 5, 3, 5));
         panel.add(statusLabel, BorderLayout.WEST);
 
-        // Info label with counts
-        JLabel infoLabel = new JLabel();
-        infoLabel.setBorder(new EmptyBorder(3, 5, 3, 5));
-        panel.add(infoLabel, BorderLayout.EAST);
-
-        // Update info periodically
-        Timer timer = new Timer(1000, e -> {
-            int studentCount = studentRepo.size();
-            int groupCount = groupRepo.getAll().size();
-            infoLabel.setText(String.format("Students: %d | Groups: %d ", studentCount, groupCount));
+        // Progress of a background import or export, shown only while one runs
+        taskPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        taskProgressBar = new JProgressBar(0, 100);
+        taskProgressBar.setStringPainted(true);
+        JButton cancelTaskButton = new JButton("Cancel");
+        cancelTaskButton.addActionListener(e -> {
+            if (backgroundTask != null) {
+                backgroundTask.requestCancel();
+                setStatus("Cancelling...");
+            }
         });
-        timer.start();
+        taskPanel.add(taskProgressBar);
+        taskPanel.add(cancelTaskButton);
+        taskPanel.setVisible(false);
+        panel.add(taskPanel, BorderLayout.CENTER);
+
+        // Counts, updated when the repositories report a change (see countsChanged)
+        countsLabel = new JLabel();
+        countsLabel.setBorder(new EmptyBorder(3, 5, 3, 5));
+        panel.add(countsLabel, BorderLayout.EAST);
 
         return panel;
     }
@@ -401,40 +501,18 @@ public class StudentManagerSwing extends JFrame {
     private void showAllStudents() {
         log.debug("User requested to show all students");
 
-        studentTableModel.setRowCount(0);
-
         if (studentRepo.size() == 0) {
+            studentTableModel.setStudents(List.of());
             showInfo("No students in repository. Import students from CSV first.");
             return;
         }
 
-        int unassignedCount = 0;
-
-        for (Student student : studentRepo.getAll()) {
-            String groupName = GroupRegistry.getGroupName(student.getId());
-            if (groupName == null) {
-                unassignedCount++;
-            }
-
-            String average = student.average().isPresent()
-                ? String.format("%.2f", student.average().getAsDouble())
-                : "N/A";
+        int unassignedCount = unassignedCount();
 
-            Object[] row = {
-                student.getId(),
-                student.getIndexNumber(),
-                student.getFirstName(),
-                student.getLastName(),
-                student.getBirthDateString(),
-                student.getGender(),
-                average
-            };
-
-            studentTableModel.addRow(row);
-        }
-
-        // Clear group selection
+        // Clear group selection and search text
         groupList.clearSelection();
+        searchField.setText("");
+        filterStudents();
 
         String message = "Showing all " + studentRepo.size() + " students";
         if (unassignedCount > 0) {
@@ -460,7 +538,6 @@ public class StudentManagerSwing extends JFrame {
 
         try {
             Group group = groupService.createGroup(name, description);
-            refreshGroupList();
             setStatus("Group '" + group.getName() + "' created successfully");
             log.info("Group created via GUI: {}", group.getName());
         } catch (IllegalStateException ex) {
@@ -499,7 +576,6 @@ public class StudentManagerSwing extends JFrame {
             groupService.updateGroupDescription(selectedGroupName, newDescription);
             setStatus("Group description updated");
             log.info("Description updated for group: {}", selectedGroupName);
-            refreshGroupList();
         } catch (IllegalArgumentException ex) {
             showError(ex.getMessage());
             log.warn("Failed to update group description: {}", ex.getMessage());
@@ -521,10 +597,10 @@ public class StudentManagerSwing extends JFrame {
             return;
         }
 
-        if (!group.getMembers().isEmpty()) {
+        if (group.size() > 0) {
             int result = JOptionPane.showConfirmDialog(
                 this,
-                "Group '" + selectedGroupName + "' has " + group.getMembers().size() + " members.\n" +
+                "Group '" + selectedGroupName + "' has " + group.size() + " members.\n" +
                 "Removing the group will unassign all members. Continue?",
                 "Confirm Remove",
                 JOptionPane.YES_NO_OPTION,
@@ -538,8 +614,6 @@ public class StudentManagerSwing extends JFrame {
 
         try {
             int memberCount = groupService.removeGroup(selectedGroupName);
-            refreshGroupList();
-            refreshStudentTable();
             setStatus("Group '" + selectedGroupName + "' removed (had " + memberCount + " member(s))");
             log.info("Group removed via GUI: {}", selectedGroupName);
         } catch (IllegalArgumentException ex) {
@@ -552,7 +626,6 @@ public class StudentManagerSwing extends JFrame {
 
     private void addNewStudent() {
         log.debug("User requested to add new student");
-
         try {
             // Collect data from form
             String firstName = firstNameField.getText().trim();
@@ -573,9 +646,8 @@ public class StudentManagerSwing extends JFrame {
                 firstName, lastName, birthDate, gender, indexNumber, grades, selectedGroup
             );
 
-            // Update UI
+            // Update UI; the table picks up the new student from the service event
             clearStudentForm();
-            refreshStudentTable();
 
             // Show success message
             if (selectedGroup != null && !selectedGroup.trim().isEmpty()) {
@@ -608,7 +680,7 @@ public class StudentManagerSwing extends JFrame {
             return;
         }
 
-        String studentId = (String) studentTableModel.getValueAt(selectedRow, 0);
+        String studentId = studentTableModel.getStudentAt(selectedRow).getId();
         Student student = studentRepo.getById(studentId);
 
         if (student == null) {
@@ -687,7 +759,6 @@ public class StudentManagerSwing extends JFrame {
                 // Use service to update student (handles all validation and business logic)
                 studentService.updateStudent(studentId, newFirstName, newLastName, newBirthDate, newGender, newIndex);
 
-                refreshStudentTable();
                 setStatus("Student updated successfully");
                 log.info("Student updated: old index={}, new index={}", student.getIndexNumber(), newIndex);
                 dialog.dispose();
@@ -720,7 +791,7 @@ public class StudentManagerSwing extends JFrame {
             return;
         }
 
-        String studentId = (String) studentTableModel.getValueAt(selectedRow, 0);
+        String studentId = studentTableModel.getStudentAt(selectedRow).getId();
         Student student = studentRepo.getById(studentId);
 
         if (student == null) {
@@ -744,7 +815,6 @@ public class StudentManagerSwing extends JFrame {
             // Use service to remove student (handles all business logic)
             studentService.removeStudent(studentId);
 
-            refreshStudentTable();
             setStatus("Student removed");
             log.info("Student removed via GUI: {} {}", student.getFirstName(), student.getLastName());
         } catch (Exception ex) {
@@ -760,7 +830,7 @@ public class StudentManagerSwing extends JFrame {
             return;
         }
 
-        String studentId = (String) studentTableModel.getValueAt(selectedRow, 0);
+        String studentId = studentTableModel.getStudentAt(selectedRow).getId();
         Student student = studentRepo.getById(studentId);
 
         if (student == null) {
@@ -776,8 +846,8 @@ public class StudentManagerSwing extends JFrame {
 
         // Current grades list
         DefaultListModel<String> gradesListModel = new DefaultListModel<>();
-        for (Double grade : student.getGrades()) {
-            gradesListModel.addElement(String.format("%.1f", grade));
+        for (int i = 0; i < student.gradeCount(); i++) {
+            gradesListModel.addElement(String.format("%.1f", student.gradeAt(i)));
         }
 
         JList<String> gradesList = new JList<>(gradesListModel);
@@ -797,8 +867,8 @@ public class StudentManagerSwing extends JFrame {
 
         // Helper method to update average label
         Runnable updateAverage = () -> {
-            if (student.average().isPresent()) {
-                avgLabel.setText(String.format("Average: %.2f", student.average().getAsDouble()));
+            if (student.hasGrades()) {
+                avgLabel.setText(String.format("Average: %.2f", student.averageOr(0)));
             } else {
                 avgLabel.setText("Average: N/A");
             }
@@ -814,7 +884,6 @@ public class StudentManagerSwing extends JFrame {
                 gradesListModel.addElement(String.format("%.1f", grade));
                 newGradeField.setText("");
                 updateAverage.run();
-                refreshStudentTable();
                 log.info("Grade {} added to student {}", grade, student.getIndexNumber());
             } catch (NumberFormatException ex) {
                 showError("Invalid grade format.");
@@ -853,7 +922,6 @@ public class StudentManagerSwing extends JFrame {
                     if (studentService.removeGrade(studentId, selectedIndex)) {
                         gradesListModel.remove(selectedIndex);
                         updateAverage.run();
-                        refreshStudentTable();
                         log.info("Grade at index {} removed from student {}", selectedIndex, student.getIndexNumber());
                     } else {
                         showError("Failed to remove grade.");
@@ -883,7 +951,6 @@ public class StudentManagerSwing extends JFrame {
                     studentService.clearGrades(studentId);
                     gradesListModel.clear();
                     updateAverage.run();
-                    refreshStudentTable();
                     log.info("All grades cleared from student {}", student.getIndexNumber());
                 } catch (IllegalArgumentException ex) {
                     showError(ex.getMessage());
@@ -924,14 +991,13 @@ public class StudentManagerSwing extends JFrame {
             return;
         }
 
-        String studentId = (String) studentTableModel.getValueAt(selectedRow, 0);
+        String studentId = studentTableModel.getStudentAt(selectedRow).getId();
 
         try {
             // Use service to transfer student (handles all business logic)
             studentService.transferStudent(studentId, targetGroupName);
 
             setStatus("Student transferred to group '" + targetGroupName + "'");
-            refreshStudentTable();
         } catch (IllegalArgumentException ex) {
             showError(ex.getMessage());
         } catch (IllegalStateException ex) {
@@ -943,13 +1009,17 @@ public class StudentManagerSwing extends JFrame {
     }
 
     private void filterStudents() {
-        String searchText = searchField.getText().trim().toLowerCase();
-        refreshStudentTable(searchText);
+        searchTimer.stop();
+        refreshStudentTable();
     }
 
     // ========== CSV OPERATIONS ==========
 
     private void loadStudentsFromCsv() {
+        if (isBusy()) {
+            return;
+        }
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
         fileChooser.setCurrentDirectory(new File("."));
@@ -957,53 +1027,84 @@ public class StudentManagerSwing extends JFrame {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
 
-            try {
-                // Get currently selected group (if any)
-                String selectedGroupName = groupList.getSelectedValue();
+            // Get currently selected group (if any)
+            String selectedGroupName = groupList.getSelectedValue();
 
-                // Use service to load students (handles all business logic)
-                CsvService.CsvImportResult result = csvService.loadStudents(file.toPath(), selectedGroupName);
+            // Use service to load students (handles all business logic) on a background thread
+            runInBackground(new CsvTask<CsvService.CsvImportResult>("Importing " + file.getName(), "lines") {
+                @Override
+                protected CsvService.CsvImportResult doInBackground() throws Exception {
+                    return csvService.loadStudents(file.toPath(), selectedGroupName, this);
+                }
 
-                refreshStudentTable();
+                @Override
+                protected void process(List<List<Student>> batches) {
+                    // Imported students are shown as they arrive while the table still shows their target
+                    if (Objects.equals(groupList.getSelectedValue(), selectedGroupName)) {
+                        for (List<Student> batch : batches) {
+                            studentTableModel.addStudents(batch);
+                        }
+                    }
+                }
 
-                // Build informative message
-                StringBuilder message = new StringBuilder();
-                message.append("Imported ").append(result.getItemsAdded()).append(" students from ").append(file.getName());
+                @Override
+                protected void succeeded(CsvService.CsvImportResult result) {
+                    refreshStudentTable();
 
-                if (result.getItemsSkipped() > 0) {
-                    message.append("\n(Skipped ").append(result.getItemsSkipped()).append(" duplicate(s))");
-                }
+                    // Build informative message
+                    StringBuilder message = new StringBuilder();
+                    message.append("Imported ").append(result.getItemsAdded()).append(" students from ").append(file.getName());
 
-                if (selectedGroupName != null) {
-                    message.append("\n\nAdded ").append(result.getItemsAddedToGroup()).append(" students to group '")
-                           .append(selectedGroupName).append("'");
-                    int notAdded = result.getItemsAdded() - result.getItemsAddedToGroup();
-                    if (notAdded > 0) {
-                        message.append("\n(").append(notAdded)
-                               .append(" students were already assigned to other groups)");
+                    if (result.getItemsSkipped() > 0) {
+                        message.append("\n(Skipped ").append(result.getItemsSkipped()).append(" duplicate(s))");
                     }
-                } else {
-                    message.append("\n\nNote: No group selected. Students are in repository but not assigned to any group.")
-                           .append("\nSelect a group and use 'Transfer' to assign them.");
+
+                    if (selectedGroupName != null) {
+                        message.append("\n\nAdded ").append(result.getItemsAddedToGroup()).append(" students to group '")
+                               .append(selectedGroupName).append("'");
+                        int notAdded = result.getItemsAdded() - result.getItemsAddedToGroup();
+                        if (notAdded > 0) {
+                            message.append("\n(").append(notAdded)
+                                   .append(" students were already assigned to other groups)");
+                        }
+                    } else {
+                        message.append("\n\nNote: No group selected. Students are in repository but not assigned to any group.")
+                               .append("\nSelect a group and use 'Transfer' to assign them.");
+                    }
+
+                    showInfo(message.toString());
+                    setStatus("Imported " + result.getItemsAdded() + " students");
                 }
 
-                showInfo(message.toString());
-                setStatus("Imported " + result.getItemsAdded() + " students");
+                @Override
+                protected void cancelled() {
+                    refreshStudentTable();
+                    setStatus("Import of " + file.getName() + " cancelled, no students were added");
+                }
 
-            } catch (IOException ex) {
-                showError("Failed to load file: " + ex.getMessage());
-                log.error("Error loading students from CSV", ex);
-            } catch (CsvFormatException ex) {
-                showError("CSV format error: " + ex.getMessage());
-                log.error("CSV format error", ex);
-            } catch (Exception ex) {
-                showError("Error importing students: " + ex.getMessage());
-                log.error("Error importing students", ex);
-            }
+                @Override
+                protected void failed(Throwable cause) {
+                    refreshStudentTable();
+                    if (cause instanceof IOException) {
+                        showError("Failed to load file: " + cause.getMessage());
+                        log.error("Error loading students from CSV", cause);
+                    } else if (cause instanceof CsvFormatException) {
+                        showError("CSV format error: " + cause.getMessage());
+                        log.error("CSV format error", cause);
+                    } else {
+                        showError("Error importing students: " + cause.getMessage());
+                        log.error("Error importing students", cause);
+                    }
+                }
+            });
         }
     }
 
     private void loadGroupsFromCsv() {
+        if (isBusy()) {
+            return;
+        }
+
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
         fileChooser.setCurrentDirectory(new File("."));
@@ -1011,109 +1112,325 @@ public class StudentManagerSwing extends JFrame {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
 
-            try {
-                // Use service to load groups (handles all business logic)
-                CsvService.CsvImportResult result = csvService.loadGroups(file.toPath());
+            // Use service to load groups (handles all business logic) on a background thread
+            runInBackground(new CsvTask<CsvService.CsvImportResult>("Importing " + file.getName(), "lines") {
+                @Override
+                protected CsvService.CsvImportResult doInBackground() throws Exception {
+                    return csvService.loadGroups(file.toPath(), this);
+                }
 
-                refreshGroupList();
-                refreshStudentTable();
+                @Override
+                protected void succeeded(CsvService.CsvImportResult result) {
+                    refreshGroupList();
+                    refreshStudentTable();
 
-                String message = result.getMessage() + " from " + file.getName();
-                showInfo(message);
-                setStatus("Imported " + result.getItemsAdded() + " groups");
+                    String message = result.getMessage() + " from " + file.getName();
+                    showInfo(message);
+                    setStatus("Imported " + result.getItemsAdded() + " groups");
+                }
 
-            } catch (IOException ex) {
-                showError("Failed to load file: " + ex.getMessage());
-                log.error("Error loading groups from CSV", ex);
-            } catch (CsvFormatException ex) {
-                showError("CSV format error: " + ex.getMessage());
-                log.error("CSV format error", ex);
-            } catch (Exception ex) {
-                showError("Error importing groups: " + ex.getMessage());
-                log.error("Error importing groups", ex);
-            }
+                @Override
+                protected void cancelled() {
+                    setStatus("Import of " + file.getName() + " cancelled, no groups were added");
+                }
+
+                @Override
+                protected void failed(Throwable cause) {
+                    if (cause instanceof IOException) {
+                        showError("Failed to load file: " + cause.getMessage());
+                        log.error("Error loading groups from CSV", cause);
+                    } else if (cause instanceof CsvFormatException) {
+                        showError("CSV format error: " + cause.getMessage());
+                        log.error("CSV format error", cause);
+                    } else {
+                        showError("Error importing groups: " + cause.getMessage());
+                        log.error("Error importing groups", cause);
+                    }
+                }
+            });
         }
     }
 
     private void saveStudentsToCsv() {
+        if (isBusy()) {
+            return;
+        }
+
         if (studentRepo.size() == 0) {
             showWarning("No students to export.");
             return;
         }
 
-        JFileChooser fileChooser = new JFileChooser();
-        fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
-        fileChooser.setCurrentDirectory(new File("."));
-        fileChooser.setSelectedFile(new File("students.csv"));
-
-        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
+        File file = chooseExportFile("students.csv");
+        if (file == null) {
+            return;
+        }
 
-            // Confirm overwrite
-            if (file.exists()) {
-                int result = JOptionPane.showConfirmDialog(
-                    this,
-                    "File already exists. Overwrite?",
-                    "Confirm Overwrite",
-                    JOptionPane.YES_NO_OPTION
-                );
-                if (result != JOptionPane.YES_OPTION) {
-                    return;
-                }
+        // Use service to save students (handles all business logic) on a background thread
+        runInBackground(new CsvTask<Integer>("Exporting " + file.getName(), "rows") {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return csvService.saveStudents(file.toPath(), this);
             }
 
-            try {
-                // Use service to save students (handles all business logic)
-                int count = csvService.saveStudents(file.toPath());
-
+            @Override
+            protected void succeeded(Integer count) {
                 showInfo("Exported " + count + " students to " + file.getName());
                 setStatus("Exported " + count + " students");
+            }
+
+            @Override
+            protected void cancelled() {
+                setStatus("Export to " + file.getName() + " cancelled, the file was not changed");
+            }
 
-            } catch (IOException ex) {
-                showError("Failed to save file: " + ex.getMessage());
-                log.error("Error saving students to CSV", ex);
+            @Override
+            protected void failed(Throwable cause) {
+                showError("Failed to save file: " + cause.getMessage());
+                log.error("Error saving students to CSV", cause);
             }
-        }
+        });
     }
 
     private void saveGroupsToCsv() {
+        if (isBusy()) {
+            return;
+        }
+
         if (groupRepo.getAll().isEmpty()) {
             showWarning("No groups to export.");
             return;
         }
 
+        File file = chooseExportFile("groups.csv");
+        if (file == null) {
+            return;
+        }
+
+        // Use service to save groups (handles all business logic) on a background thread
+        runInBackground(new CsvTask<Integer>("Exporting " + file.getName(), "rows") {
+            @Override
+            protected Integer doInBackground() throws Exception {
+                return csvService.saveGroups(file.toPath(), this);
+            }
+
+            @Override
+            protected void succeeded(Integer count) {
+                showInfo("Exported " + count + " groups to " + file.getName());
+                setStatus("Exported " + count + " groups");
+            }
+
+            @Override
+            protected void cancelled() {
+                setStatus("Export to " + file.getName() + " cancelled, the file was not changed");
+            }
+
+            @Override
+            protected void failed(Throwable cause) {
+                showError("Failed to save file: " + cause.getMessage());
+                log.error("Error saving groups to CSV", cause);
+            }
+        });
+    }
+
+    /**
+     * Asks for the file to export to, confirming before an existing file is overwritten.
+     *
+     * @return the chosen file, or null if the user cancelled
+     */
+    private File chooseExportFile(String defaultName) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setFileFilter(new FileNameExtensionFilter("CSV files", "csv"));
         fileChooser.setCurrentDirectory(new File("."));
-        fileChooser.setSelectedFile(new File("groups.csv"));
+        fileChooser.setSelectedFile(new File(defaultName));
 
-        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            File file = fileChooser.getSelectedFile();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return null;
+        }
+        File file = fileChooser.getSelectedFile();
 
-            // Confirm overwrite
-            if (file.exists()) {
-                int result = JOptionPane.showConfirmDialog(
-                    this,
-                    "File already exists. Overwrite?",
-                    "Confirm Overwrite",
-                    JOptionPane.YES_NO_OPTION
-                );
-                if (result != JOptionPane.YES_OPTION) {
-                    return;
+        // Confirm overwrite
+        if (file.exists()) {
+            int result = JOptionPane.showConfirmDialog(
+                this,
+                "File already exists. Overwrite?",
+                "Confirm Overwrite",
+                JOptionPane.YES_NO_OPTION
+            );
+            if (result != JOptionPane.YES_OPTION) {
+                return null;
+            }
+        }
+        return file;
+    }
+
+    // ========== BACKGROUND TASKS ==========
+
+    private void runInBackground(CsvTask<?> task) {
+        backgroundTask = task;
+        taskProgressBar.setValue(0);
+        taskPanel.setVisible(true);
+        setStatus(task.title + "...");
+        task.execute();
+    }
+
+    /**
+     * Checks whether an import or export is running and tells the user to wait.
+     * Only one runs at a time; students and groups can still be edited meanwhile.
+     */
+    private boolean isBusy() {
+        if (backgroundTask == null) {
+            return false;
+        }
+        showWarning("Please wait until the running import or export finishes, or cancel it.");
+        return true;
+    }
+
+    /**
+     * Cancels the running import or export and waits until it has rolled back,
+     * so the repositories are consistent before they are saved on exit.
+     */
+    private void stopBackgroundTask() {
+        if (backgroundTask == null) {
+            return;
+        }
+        backgroundTask.requestCancel();
+        try {
+            backgroundTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | CancellationException e) {
+            // The outcome does not matter on exit
+        }
+    }
+
+    /**
+     * An import or export running on a worker thread. It reports progress to the
+     * status bar, hands imported students to {@link #process} in batches and
+     * finishes with one of {@link #succeeded}, {@link #cancelled} or {@link #failed}
+     * on the Event Dispatch Thread.
+     * <p>
+     * Cancelling is cooperative: the service notices the request at its next row,
+     * rolls back and only then lets the task finish. The task is never interrupted,
+     * because interrupting a thread closes the file channel it is reading.
+     */
+    private abstract class CsvTask<T> extends SwingWorker<T, List<Student>> implements CsvService.Monitor {
+        private static final int BATCH_SIZE = 4096;
+        private static final long STATUS_INTERVAL_NANOS = 200_000_000L;
+
+        final String title;
+        private final String unit;
+        private final long startNanos = System.nanoTime();
+        private volatile boolean cancelRequested;
+        private long lastStatusNanos;
+        // Only used by the worker thread
+        private List<Student> batch = new ArrayList<>();
+
+        CsvTask(String title, String unit) {
+            this.title = title;
+            this.unit = unit;
+        }
+
+        void requestCancel() {
+            cancelRequested = true;
+        }
+
+        @Override
+        public boolean isCancelRequested() {
+            return cancelRequested;
+        }
+
+        @Override
+        public void progress(long rows, long done, long total) {
+            flushBatch();
+            int percent = total > 0 ? (int) Math.min(100, done * 100 / total) : 100;
+            setProgress(percent);
+
+            long now = System.nanoTime();
+            if (now - lastStatusNanos < STATUS_INTERVAL_NANOS && percent < 100) {
+                return;
+            }
+            lastStatusNanos = now;
+            long perSecond = rows * 1_000_000_000L / Math.max(1, now - startNanos);
+            String text = String.format("%s: %d%% (%,d %s, %,d %s/s)", title, percent, rows, unit, perSecond, unit);
+            SwingUtilities.invokeLater(() -> {
+                if (backgroundTask == this && !cancelRequested) {
+                    taskProgressBar.setValue(percent);
+                    setStatus(text);
                 }
+            });
+        }
+
+        @Override
+        public void studentAdded(Student student) {
+            batch.add(student);
+            if (batch.size() >= BATCH_SIZE) {
+                flushBatch();
             }
+        }
 
+        private void flushBatch() {
+            if (!batch.isEmpty()) {
+                publish(batch);
+                batch = new ArrayList<>();
+            }
+        }
+
+        @Override
+        protected final void done() {
+            backgroundTask = null;
+            taskPanel.setVisible(false);
             try {
-                // Use service to save groups (handles all business logic)
-                int count = csvService.saveGroups(file.toPath());
+                succeeded(get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof CancellationException) {
+                    log.info("{} cancelled after {} ms", title, (System.nanoTime() - startNanos) / 1_000_000);
+                    cancelled();
+                } else {
+                    failed(cause);
+                }
+            }
+        }
 
-                showInfo("Exported " + count + " groups to " + file.getName());
-                setStatus("Exported " + count + " groups");
+        protected abstract void succeeded(T result);
+
+        protected abstract void cancelled();
 
-            } catch (IOException ex) {
-                showError("Failed to save file: " + ex.getMessage());
-                log.error("Error saving groups to CSV", ex);
+        protected abstract void failed(Throwable cause);
+    }
+
+    private MutationJournal openJournal() {
+        try {
+            return MutationJournal.open(config, studentRepo, groupRepo);
+        } catch (IOException ex) {
+            log.error("Could not open journal {}, changes will only be saved on exit", config.getJournalFile(), ex);
+            return MutationJournal.disabled();
+        }
+    }
+
+    private void closeJournal() {
+        try {
+            journal.close();
+        } catch (IOException ex) {
+            log.error("Error closing journal", ex);
+        }
+    }
+
+    private boolean saveSnapshot() {
+        try {
+            if (journal == MutationJournal.disabled()) {
+                SnapshotStore.save(new File(config.getSnapshotFile()).toPath(), studentRepo, groupRepo);
+            } else {
+                journal.compact();
             }
+            return true;
+        } catch (IOException | UncheckedIOException ex) {
+            showError("Failed to save snapshot: " + ex.getMessage());
+            log.error("Error saving snapshot", ex);
+            return false;
         }
     }
 
@@ -1126,81 +1443,244 @@ public class StudentManagerSwing extends JFrame {
         }
     }
 
+    /**
+     * Shows the students of the selected group, or all students, that match the
+     * search text. Without a search text the table is filled right away; searches
+     * run on a worker thread, because the first one builds the search index and
+     * texts too short for the index scan every student.
+     */
     private void refreshStudentTable() {
-        refreshStudentTable("");
-    }
+        String selectedGroupName = groupList.getSelectedValue();
+        String filter = searchField.getText().trim();
 
-    private void refreshStudentTable(String filter) {
-        studentTableModel.setRowCount(0);
+        // A newer refresh makes a running search obsolete
+        if (searchWorker != null) {
+            searchWorker.cancel(false);
+            searchWorker = null;
+        }
 
-        String selectedGroupName = groupList.getSelectedValue();
+        if (filter.isEmpty()) {
+            showStudents(findStudents(selectedGroupName, filter), filter);
+            return;
+        }
 
-        // If no group is selected, show all students (fixes the issue after CSV load)
-        if (selectedGroupName == null) {
-            // Show all students from repository
-            for (Student student : studentRepo.getAll()) {
-                // Apply filter
-                if (!filter.isEmpty()) {
-                    String searchText = (student.getFirstName() + " " + student.getLastName() + " " +
-                                        student.getIndexNumber()).toLowerCase();
-                    if (!searchText.contains(filter)) {
-                        continue;
-                    }
-                }
+        long startNanos = System.nanoTime();
+        searchWorker = new SwingWorker<Collection<Student>, Void>() {
+            @Override
+            protected Collection<Student> doInBackground() {
+                return findStudents(selectedGroupName, filter);
+            }
 
-                String average = student.average().isPresent()
-                    ? String.format("%.2f", student.average().getAsDouble())
-                    : "N/A";
-
-                Object[] row = {
-                    student.getId(),
-                    student.getIndexNumber(),
-                    student.getFirstName(),
-                    student.getLastName(),
-                    student.getBirthDateString(),
-                    student.getGender(),
-                    average
-                };
-
-                studentTableModel.addRow(row);
+            @Override
+            protected void done() {
+                if (searchWorker != this) {
+                    return;
+                }
+                searchWorker = null;
+                try {
+                    Collection<Student> found = get();
+                    showStudents(found, filter);
+                    log.debug("Search for '{}' found {} students in {} ms",
+                              filter, found.size(), (System.nanoTime() - startNanos) / 1_000_000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    setStatus("Search failed: " + e.getCause().getMessage());
+                    log.error("Error searching students", e.getCause());
+                }
             }
-            return;
+        };
+        searchWorker.execute();
+    }
+
+    private void showStudents(Collection<Student> students, String filter) {
+        studentTableModel.setStudents(students);
+        shownFilter = filter;
+    }
+
+    /**
+     * Finds the students of a group, or all students, that match a search text.
+     * Only reads the repositories, so it may run on a worker thread.
+     */
+    private Collection<Student> findStudents(String groupName, String filter) {
+        // If no group is selected, show all students (fixes the issue after CSV load)
+        if (groupName == null) {
+            return filter.isEmpty() ? studentRepo.getAll() : studentRepo.search(filter);
         }
 
-        // Show students from selected group
-        Group group = groupRepo.getByName(selectedGroupName);
+        Group group = groupRepo.getByName(groupName);
         if (group == null) {
-            return;
+            return List.of();
+        }
+        if (filter.length() >= StudentRepository.MIN_INDEXED_SEARCH_LENGTH) {
+            GroupRegistry registry = groupRepo.getRegistry();
+            return studentRepo.search(filter, student -> groupName.equals(registry.getGroupName(student.getNumericId())));
         }
 
+        // Too short for the index: checking the group's members is cheaper than scanning everyone
+        List<Student> members = new ArrayList<>();
         for (Student student : group.getMembers()) {
-            // Apply filter
-            if (!filter.isEmpty()) {
-                String searchText = (student.getFirstName() + " " + student.getLastName() + " " +
-                                    student.getIndexNumber()).toLowerCase();
-                if (!searchText.contains(filter)) {
-                    continue;
-                }
+            if (matchesFilter(student, filter)) {
+                members.add(student);
             }
+        }
+        return members;
+    }
+
+    /**
+     * Applies the changes made through the services to the group list and the
+     * student table, so one edit costs the same however many students are shown.
+     * <p>
+     * Events may come from any thread. They are queued and applied together on the
+     * next run of the Event Dispatch Thread, in the order they happened: students
+     * appended in a row become one inserted range, and each changed student is
+     * repainted once at the end.
+     */
+    private class ViewUpdater implements RepositoryListener {
+        // Guarded by this; null while no update is scheduled
+        private List<Runnable> pending;
+        // The state of one flush; only used on the Event Dispatch Thread
+        private final List<Student> appended = new ArrayList<>();
+        private final Set<Student> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private synchronized void enqueue(Runnable change) {
+            if (pending == null) {
+                pending = new ArrayList<>();
+                SwingUtilities.invokeLater(this::flush);
+            }
+            pending.add(change);
+        }
+
+        private synchronized List<Runnable> takePending() {
+            List<Runnable> changes = pending;
+            pending = null;
+            return changes;
+        }
+
+        private void flush() {
+            for (Runnable change : takePending()) {
+                change.run();
+            }
+            appendShown();
+            for (Student student : changed) {
+                studentTableModel.fireStudentUpdated(student);
+            }
+            changed.clear();
+        }
+
+        /** Adds the queued new rows, which keeps them in order with the removals that follow. */
+        private void appendShown() {
+            if (!appended.isEmpty()) {
+                studentTableModel.addStudents(appended);
+                appended.clear();
+            }
+        }
+
+        private void show(Student student) {
+            if (matchesFilter(student, shownFilter) && !studentTableModel.contains(student)) {
+                appended.add(student);
+            }
+        }
+
+        private void hide(Student student) {
+            appendShown();
+            studentTableModel.removeStudent(student);
+        }
+
+        private boolean showingAll() {
+            return groupList.getSelectedValue() == null;
+        }
+
+        @Override
+        public void studentAdded(Student student) {
+            enqueue(() -> {
+                if (showingAll()) {
+                    show(student);
+                }
+            });
+        }
 
-            String average = student.average().isPresent()
-                ? String.format("%.2f", student.average().getAsDouble())
-                : "N/A";
+        @Override
+        public void studentUpdated(Student oldStudent, Student newStudent) {
+            enqueue(() -> {
+                appendShown();
+                if (matchesFilter(newStudent, shownFilter)) {
+                    studentTableModel.replaceStudent(oldStudent, newStudent);
+                } else {
+                    studentTableModel.removeStudent(oldStudent);
+                }
+            });
+        }
 
-            Object[] row = {
-                student.getId(),
-                student.getIndexNumber(),
-                student.getFirstName(),
-                student.getLastName(),
-                student.getBirthDateString(),
-                student.getGender(),
-                average
-            };
+        @Override
+        public void studentRemoved(Student student) {
+            enqueue(() -> hide(student));
+        }
 
-            studentTableModel.addRow(row);
+        @Override
+        public void gradesChanged(Student student) {
+            enqueue(() -> changed.add(student));
+        }
+
+        @Override
+        public void membershipChanged(Student student, String oldGroup, String newGroup) {
+            enqueue(() -> {
+                String shownGroup = groupList.getSelectedValue();
+                if (shownGroup == null) {
+                    return;
+                }
+                if (shownGroup.equals(newGroup)) {
+                    show(student);
+                } else if (shownGroup.equals(oldGroup)) {
+                    hide(student);
+                }
+            });
+        }
+
+        @Override
+        public void groupAdded(Group group) {
+            enqueue(() -> groupListModel.addElement(group.getName()));
+        }
+
+        @Override
+        public void groupUpdated(Group group) {
+            // Only names are listed; repaint in case a renderer shows more
+            enqueue(() -> groupList.repaint());
+        }
+
+        @Override
+        public void groupRemoved(Group group) {
+            // Removing the selected group clears the selection, which shows all students
+            enqueue(() -> groupListModel.removeElement(group.getName()));
         }
     }
 
+    private void sortStudentTable(int column) {
+        Student selected = studentTable.getSelectedRow() >= 0
+            ? studentTableModel.getStudentAt(studentTable.getSelectedRow())
+            : null;
+
+        studentTableModel.sortBy(column);
+
+        // Column headers are copied from the model when the table is built, so update the sort marker here
+        for (int i = 0; i < studentTable.getColumnCount(); i++) {
+            studentTable.getColumnModel().getColumn(i)
+                .setHeaderValue(studentTableModel.getColumnName(studentTable.convertColumnIndexToModel(i)));
+        }
+        studentTable.getTableHeader().repaint();
+
+        // Keep the selected student selected at its new position
+        int row = selected != null ? studentTableModel.indexOf(selected) : -1;
+        if (row >= 0) {
+            studentTable.setRowSelectionInterval(row, row);
+            studentTable.scrollRectToVisible(studentTable.getCellRect(row, 0, true));
+        }
+    }
+
+    private static boolean matchesFilter(Student student, String filter) {
+        return filter.isEmpty() || StudentRepository.matchesSearch(student, filter);
+    }
+
     private void clearStudentForm() {
         firstNameField.setText("");
         lastNameField.setText("");
@@ -1239,6 +1719,41 @@ public class StudentManagerSwing extends JFrame {
         JOptionPane.showMessageDialog(this, message, "About", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    /**
+     * Notes that a count changed. Called on the thread that changed a repository,
+     * possibly once per row of an import, so it only queues one update of the
+     * status bar until that update has run.
+     */
+    private void countsChanged() {
+        if (!countsUpdatePending.get() && countsUpdatePending.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::updateCounts);
+        }
+    }
+
+    private void updateCounts() {
+        countsUpdatePending.set(false);
+        StringBuilder text = new StringBuilder()
+            .append("Students: ").append(studentRepo.size())
+            .append(" | Groups: ").append(groupRepo.size())
+            .append(" | Unassigned: ").append(unassignedCount());
+        String selectedGroupName = groupList.getSelectedValue();
+        Group selectedGroup = groupRepo.getByName(selectedGroupName);
+        if (selectedGroup != null) {
+            text.append(" | In ").append(selectedGroupName).append(": ").append(selectedGroup.size());
+        }
+        countsLabel.setText(text.append(' ').toString());
+    }
+
+    /**
+     * Counts the students not assigned to any group from the repository and
+     * registry counters. Every assignment belongs to a stored student and a stored
+     * group: removing a student also removes them from their group, and imported
+     * groups that are skipped or rolled back unassign their members.
+     */
+    private int unassignedCount() {
+        return Math.max(0, studentRepo.size() - groupRepo.getRegistry().size());
+    }
+
     private void setStatus(String message) {
         statusLabel.setText(" " + message);
         log.debug("Status: {}", message);
@@ -4,6 +4,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.lab5.*;
 
+import java.util.Arrays;
+
 /**
  * Service layer for student operations.
  * Handles business logic for student management.
@@ -13,10 +15,42 @@ public class StudentService {
 
     private final StudentRepository studentRepo;
     private final GroupRepository groupRepo;
+    private final MutationJournal journal;
+    private final RepositoryEvents events = new RepositoryEvents();
 
     public StudentService(StudentRepository studentRepo, GroupRepository groupRepo) {
+        this(studentRepo, groupRepo, MutationJournal.disabled());
+    }
+
+    /**
+     * Creates a service that records every change in the given journal.
+     *
+     * @param studentRepo the student repository
+     * @param groupRepo the group repository
+     * @param journal the journal receiving one record per change
+     */
+    public StudentService(StudentRepository studentRepo, GroupRepository groupRepo, MutationJournal journal) {
         this.studentRepo = studentRepo;
         this.groupRepo = groupRepo;
+        this.journal = journal;
+    }
+
+    /**
+     * Registers a listener for the changes made through this service.
+     *
+     * @param listener the listener to add
+     */
+    public void addListener(RepositoryListener listener) {
+        events.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with {@link #addListener}.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeListener(RepositoryListener listener) {
+        events.remove(listener);
     }
 
     /**
@@ -36,50 +70,72 @@ public class StudentService {
     public Student createStudent(String firstName, String lastName, String birthDate,
                                   Gender gender, String indexNumber, double[] grades,
                                   String groupName) {
+        return createStudent(-1, firstName, lastName, birthDate, gender, indexNumber, grades, groupName);
+    }
+
+    /**
+     * Creates a student under a stored ID, e.g. when replaying the journal.
+     * The ID is kept if it is still free.
+     *
+     * @param storedId the numeric ID to restore, or -1 to assign a new one
+     */
+    Student createStudent(long storedId, String firstName, String lastName, String birthDate,
+                          Gender gender, String indexNumber, double[] grades, String groupName) {
         log.debug("Creating student: {} {} (index: {})", firstName, lastName, indexNumber);
 
-        // Validation
-        if (firstName == null || firstName.trim().isEmpty() ||
-            lastName == null || lastName.trim().isEmpty()) {
-            throw new IllegalArgumentException("First name and last name are required.");
-        }
+        try (MutationJournal.Entry entry = journal.begin(MutationJournal.studentKey(indexNumber),
+                MutationJournal.groupKey(groupName))) {
+            // Validation
+            if (firstName == null || firstName.trim().isEmpty() ||
+                lastName == null || lastName.trim().isEmpty()) {
+                throw new IllegalArgumentException("First name and last name are required.");
+            }
 
-        if (indexNumber == null || indexNumber.trim().isEmpty()) {
-            throw new IllegalArgumentException("Index number is required.");
-        }
+            if (indexNumber == null || indexNumber.trim().isEmpty()) {
+                throw new IllegalArgumentException("Index number is required.");
+            }
 
-        // Check for duplicate index number
-        if (isIndexNumberTaken(indexNumber)) {
-            throw new IllegalStateException("Student with index number '" + indexNumber + "' already exists.");
-        }
+            // Check for duplicate index number
+            if (isIndexNumberTaken(indexNumber)) {
+                throw new IllegalStateException("Student with index number '" + indexNumber + "' already exists.");
+            }
 
-        // Create student (validates birth date format)
-        Student student = new Student(firstName, lastName, birthDate, gender, indexNumber);
+            // Create student (validates birth date format)
+            StringPool pool = StringPool.shared();
+            Student student = newStudent(storedId, pool.intern(firstName), pool.intern(lastName), birthDate,
+                gender, indexNumber);
 
-        // Add grades
-        if (grades != null) {
-            for (double grade : grades) {
-                student.addGrade(grade);
+            // Add grades
+            if (grades != null) {
+                for (double grade : grades) {
+                    student.addGrade(grade);
+                }
             }
-        }
 
-        // Add to repository
-        studentRepo.add(student);
-        log.info("Student created: {} {} (index: {})", firstName, lastName, indexNumber);
-
-        // Optionally add to group
-        if (groupName != null && !groupName.trim().isEmpty()) {
-            Group group = groupRepo.getByName(groupName);
-            if (group != null) {
-                if (group.addStudent(student)) {
-                    log.info("Student added to group: {}", groupName);
-                } else {
-                    log.warn("Could not add student to group: {}", groupName);
+            // Add to repository; the index number may have been taken concurrently
+            if (!studentRepo.addIfIndexAbsent(student)) {
+                throw new IllegalStateException("Student with index number '" + indexNumber + "' already exists.");
+            }
+            log.info("Student created: {} {} (index: {})", firstName, lastName, indexNumber);
+
+            events.studentAdded(student);
+
+            // Optionally add to group
+            if (groupName != null && !groupName.trim().isEmpty()) {
+                Group group = groupRepo.getByName(groupName);
+                if (group != null) {
+                    if (joinGroup(group, student)) {
+                        log.info("Student added to group: {}", groupName);
+                        events.membershipChanged(student, null, group.getName());
+                    } else {
+                        log.warn("Could not add student to group: {}", groupName);
+                    }
                 }
             }
-        }
 
-        return student;
+            entry.createStudent(student, birthDate, grades, groupName);
+            return student;
+        }
     }
 
     /**
@@ -98,59 +154,69 @@ public class StudentService {
      */
     public Student updateStudent(String studentId, String newFirstName, String newLastName,
                                   String newBirthDate, Gender newGender, String newIndexNumber) {
-        log.debug("Updating student: {}", studentId);
-
-        Student oldStudent = studentRepo.getById(studentId);
-        if (oldStudent == null) {
-            throw new IllegalArgumentException("Student not found: " + studentId);
-        }
+        return updateStudent(-1, studentId, newFirstName, newLastName, newBirthDate, newGender, newIndexNumber);
+    }
 
-        // Validation
-        if (newFirstName == null || newFirstName.trim().isEmpty() ||
-            newLastName == null || newLastName.trim().isEmpty() ||
-            newBirthDate == null || newBirthDate.trim().isEmpty() ||
-            newIndexNumber == null || newIndexNumber.trim().isEmpty()) {
-            throw new IllegalArgumentException("All fields are required.");
-        }
+    /**
+     * Updates a student, giving the updated student a stored ID, e.g. when replaying
+     * the journal. The ID is kept if it is still free.
+     *
+     * @param storedId the numeric ID to restore, or -1 to assign a new one
+     */
+    Student updateStudent(long storedId, String studentId, String newFirstName, String newLastName,
+                          String newBirthDate, Gender newGender, String newIndexNumber) {
+        log.debug("Updating student: {}", studentId);
 
-        // Check if index number changed and is already taken
-        if (!newIndexNumber.equals(oldStudent.getIndexNumber()) && isIndexNumberTaken(newIndexNumber)) {
-            throw new IllegalStateException("Index number already exists: " + newIndexNumber);
-        }
+        try (MutationJournal.Entry entry = beginFor(studentId, MutationJournal.studentKey(newIndexNumber))) {
+            Student oldStudent = studentRepo.getById(studentId);
+            if (oldStudent == null) {
+                throw new IllegalArgumentException("Student not found: " + studentId);
+            }
 
-        // Get current group membership
-        String groupName = GroupRegistry.getGroupName(studentId);
-        Group currentGroup = null;
-        if (groupName != null) {
-            currentGroup = groupRepo.getByName(groupName);
-        }
+            // Validation
+            if (newFirstName == null || newFirstName.trim().isEmpty() ||
+                newLastName == null || newLastName.trim().isEmpty() ||
+                newBirthDate == null || newBirthDate.trim().isEmpty() ||
+                newIndexNumber == null || newIndexNumber.trim().isEmpty()) {
+                throw new IllegalArgumentException("All fields are required.");
+            }
 
-        // Remove old student from group
-        if (currentGroup != null) {
-            currentGroup.removeStudent(oldStudent);
-        }
+            // Check if index number changed and is already taken
+            if (!newIndexNumber.equals(oldStudent.getIndexNumber()) && isIndexNumberTaken(newIndexNumber)) {
+                throw new IllegalStateException("Index number already exists: " + newIndexNumber);
+            }
 
-        // Create new student with updated data
-        Student updatedStudent = new Student(newFirstName, newLastName, newBirthDate, newGender, newIndexNumber);
+            // Create new student with updated data
+            StringPool pool = StringPool.shared();
+            Student updatedStudent = newStudent(storedId, pool.intern(newFirstName), pool.intern(newLastName),
+                newBirthDate, newGender, newIndexNumber);
 
-        // Copy grades from old student
-        for (Double grade : oldStudent.getGrades()) {
-            updatedStudent.addGrade(grade);
-        }
+            // Copy grades from old student
+            for (int i = 0; i < oldStudent.gradeCount(); i++) {
+                updatedStudent.addGrade(oldStudent.gradeAt(i));
+            }
 
-        // Remove old student from repository
-        studentRepo.remove(studentId);
+            // Swap the students in one step, so the index number is never briefly free
+            if (!studentRepo.replace(oldStudent, updatedStudent)) {
+                if (studentRepo.getById(studentId) != oldStudent) {
+                    throw new IllegalArgumentException("Student not found: " + studentId);
+                }
+                throw new IllegalStateException("Index number already exists: " + newIndexNumber);
+            }
+            entry.updateStudent(oldStudent.getIndexNumber(), updatedStudent, newBirthDate);
 
-        // Add updated student to repository
-        studentRepo.add(updatedStudent);
+            // Move group membership to the new student object
+            String groupName = groupRepo.getRegistry().getGroupName(studentId);
+            Group currentGroup = groupName != null ? groupRepo.getByName(groupName) : null;
+            if (currentGroup != null) {
+                currentGroup.removeStudent(oldStudent);
+                joinGroup(currentGroup, updatedStudent);
+            }
+            events.studentUpdated(oldStudent, updatedStudent);
 
-        // Re-add to group with new student object
-        if (currentGroup != null) {
-            currentGroup.addStudent(updatedStudent);
+            log.info("Student updated: old index={}, new index={}", oldStudent.getIndexNumber(), newIndexNumber);
+            return updatedStudent;
         }
-
-        log.info("Student updated: old index={}, new index={}", oldStudent.getIndexNumber(), newIndexNumber);
-        return updatedStudent;
     }
 
     /**
@@ -162,29 +228,33 @@ public class StudentService {
     public boolean removeStudent(String studentId) {
         log.debug("Removing student: {}", studentId);
 
-        Student student = studentRepo.getById(studentId);
-        if (student == null) {
-            log.warn("Student not found: {}", studentId);
-            return false;
-        }
+        try (MutationJournal.Entry entry = beginFor(studentId)) {
+            Student student = studentRepo.getById(studentId);
+            if (student == null) {
+                log.warn("Student not found: {}", studentId);
+                return false;
+            }
 
-        // Remove from group if assigned
-        String groupName = GroupRegistry.getGroupName(studentId);
-        if (groupName != null) {
-            Group group = groupRepo.getByName(groupName);
-            if (group != null) {
-                group.removeStudent(student);
+            // Remove from repository first, so no other thread can move the student afterwards
+            boolean removed = studentRepo.remove(studentId) != null;
+            if (!removed) {
+                return false;
             }
-        }
 
-        // Remove from repository
-        boolean removed = studentRepo.getAll().removeIf(s -> s.getId().equals(studentId));
+            // Remove from group if assigned
+            String groupName = groupRepo.getRegistry().getGroupName(studentId);
+            if (groupName != null) {
+                Group group = groupRepo.getByName(groupName);
+                if (group != null) {
+                    group.removeStudent(student);
+                }
+            }
 
-        if (removed) {
+            entry.removeStudent(student.getIndexNumber());
+            events.studentRemoved(student);
             log.info("Student removed: {} {}", student.getFirstName(), student.getLastName());
+            return true;
         }
-
-        return removed;
     }
 
     /**
@@ -198,38 +268,40 @@ public class StudentService {
     public void transferStudent(String studentId, String targetGroupName) {
         log.debug("Transferring student {} to group {}", studentId, targetGroupName);
 
-        Student student = studentRepo.getById(studentId);
-        if (student == null) {
-            throw new IllegalArgumentException("Student not found.");
-        }
+        try (MutationJournal.Entry entry = beginFor(studentId, MutationJournal.groupKey(targetGroupName))) {
+            Student student = studentRepo.getById(studentId);
+            if (student == null) {
+                throw new IllegalArgumentException("Student not found.");
+            }
 
-        Group targetGroup = groupRepo.getByName(targetGroupName);
-        if (targetGroup == null) {
-            throw new IllegalArgumentException("Target group not found.");
-        }
+            Group targetGroup = groupRepo.getByName(targetGroupName);
+            if (targetGroup == null) {
+                throw new IllegalArgumentException("Target group not found.");
+            }
 
-        // Check current group
-        String currentGroupName = GroupRegistry.getGroupName(studentId);
+            // Check current group
+            String currentGroupName = groupRepo.getRegistry().getGroupName(studentId);
 
-        if (targetGroupName.equals(currentGroupName)) {
-            throw new IllegalStateException("Student is already in group '" + targetGroupName + "'");
-        }
+            if (targetGroupName.equals(currentGroupName)) {
+                throw new IllegalStateException("Student is already in group '" + targetGroupName + "'");
+            }
 
-        // Remove from current group if assigned
-        if (currentGroupName != null) {
-            Group currentGroup = groupRepo.getByName(currentGroupName);
-            if (currentGroup != null) {
-                currentGroup.removeStudent(student);
-                log.info("Student {} removed from group {}", studentId, currentGroupName);
+            // Move in one step if assigned, so the student is never in two groups
+            Group currentGroup = currentGroupName != null ? groupRepo.getByName(currentGroupName) : null;
+            boolean moved = currentGroup != null
+                ? currentGroup.transferStudent(student, targetGroup)
+                : targetGroup.addStudent(student);
+            if (!moved) {
+                throw new IllegalStateException("Failed to add student to target group.");
             }
-        }
+            if (!stillStored(targetGroup, student)) {
+                throw new IllegalArgumentException("Student not found.");
+            }
+            entry.transferStudent(student.getIndexNumber(), targetGroupName);
+            events.membershipChanged(student, currentGroup != null ? currentGroupName : null, targetGroupName);
 
-        // Add to target group
-        if (!targetGroup.addStudent(student)) {
-            throw new IllegalStateException("Failed to add student to target group.");
+            log.info("Student {} transferred to group {}", studentId, targetGroupName);
         }
-
-        log.info("Student {} transferred to group {}", studentId, targetGroupName);
     }
 
     /**
@@ -240,13 +312,17 @@ public class StudentService {
      * @throws IllegalArgumentException if student not found or grade invalid
      */
     public void addGrade(String studentId, double grade) {
-        Student student = studentRepo.getById(studentId);
-        if (student == null) {
-            throw new IllegalArgumentException("Student not found.");
-        }
+        try (MutationJournal.Entry entry = beginFor(studentId)) {
+            Student student = studentRepo.getById(studentId);
+            if (student == null) {
+                throw new IllegalArgumentException("Student not found.");
+            }
 
-        student.addGrade(grade);
-        log.info("Grade {} added to student {}", grade, student.getIndexNumber());
+            student.addGrade(grade);
+            entry.addGrade(student.getIndexNumber(), grade);
+            events.gradesChanged(student);
+            log.info("Grade {} added to student {}", grade, student.getIndexNumber());
+        }
     }
 
     /**
@@ -258,16 +334,20 @@ public class StudentService {
      * @throws IllegalArgumentException if student not found
      */
     public boolean removeGrade(String studentId, int gradeIndex) {
-        Student student = studentRepo.getById(studentId);
-        if (student == null) {
-            throw new IllegalArgumentException("Student not found.");
-        }
+        try (MutationJournal.Entry entry = beginFor(studentId)) {
+            Student student = studentRepo.getById(studentId);
+            if (student == null) {
+                throw new IllegalArgumentException("Student not found.");
+            }
 
-        boolean removed = student.removeGrade(gradeIndex);
-        if (removed) {
-            log.info("Grade at index {} removed from student {}", gradeIndex, student.getIndexNumber());
+            boolean removed = student.removeGrade(gradeIndex);
+            if (removed) {
+                entry.removeGrade(student.getIndexNumber(), gradeIndex);
+                events.gradesChanged(student);
+                log.info("Grade at index {} removed from student {}", gradeIndex, student.getIndexNumber());
+            }
+            return removed;
         }
-        return removed;
     }
 
     /**
@@ -277,13 +357,69 @@ public class StudentService {
      * @throws IllegalArgumentException if student not found
      */
     public void clearGrades(String studentId) {
-        Student student = studentRepo.getById(studentId);
-        if (student == null) {
-            throw new IllegalArgumentException("Student not found.");
+        try (MutationJournal.Entry entry = beginFor(studentId)) {
+            Student student = studentRepo.getById(studentId);
+            if (student == null) {
+                throw new IllegalArgumentException("Student not found.");
+            }
+
+            student.clearGrades();
+            entry.clearGrades(student.getIndexNumber());
+            events.gradesChanged(student);
+            log.info("All grades cleared from student {}", student.getIndexNumber());
         }
+    }
 
-        student.clearGrades();
-        log.info("All grades cleared from student {}", student.getIndexNumber());
+    /**
+     * Starts a journal entry for a change to an existing student. The student's index
+     * number is locked along with the given keys, so changes to the same student are
+     * journaled in the order they are made. If the student is replaced or removed
+     * before the lock is held, the lookup is repeated.
+     *
+     * @param studentId ID of the student to change
+     * @param keys further lock stripes from {@link MutationJournal#studentKey} and
+     *             {@link MutationJournal#groupKey}
+     * @return the journal entry
+     */
+    private MutationJournal.Entry beginFor(String studentId, int... keys) {
+        while (true) {
+            Student student = studentRepo.getById(studentId);
+            int[] locked = Arrays.copyOf(keys, keys.length + 1);
+            locked[keys.length] = student != null ? MutationJournal.studentKey(student.getIndexNumber()) : -1;
+            MutationJournal.Entry entry = journal.begin(locked);
+            if (studentRepo.getById(studentId) == student) {
+                return entry;
+            }
+            entry.close();
+        }
+    }
+
+    /**
+     * Adds a student to a group, undoing it if the student was removed concurrently.
+     *
+     * @param group the group to join
+     * @param student the student
+     * @return true if the student is now a member of the group, false otherwise
+     */
+    private boolean joinGroup(Group group, Student student) {
+        return group.addStudent(student) && stillStored(group, student);
+    }
+
+    /**
+     * Checks that a student who just joined a group is still in the repository.
+     * {@link #removeStudent(String)} drops the student from the repository before
+     * looking up their group, so a join that raced with it is caught here and undone.
+     *
+     * @param group the group the student just joined
+     * @param student the student
+     * @return true if the student is still stored, false if the membership was undone
+     */
+    private boolean stillStored(Group group, Student student) {
+        if (studentRepo.getById(student.getNumericId()) == student) {
+            return true;
+        }
+        group.removeStudent(student);
+        return false;
     }
 
     /**
@@ -293,8 +429,18 @@ public class StudentService {
      * @return true if taken, false otherwise
      */
     private boolean isIndexNumberTaken(String indexNumber) {
-        return studentRepo.getAll().stream()
-            .anyMatch(s -> s.getIndexNumber().equals(indexNumber));
+        return studentRepo.containsIndexNumber(indexNumber);
+    }
+
+    /**
+     * Creates a student with a new ID, or under a stored ID when one is given.
+     */
+    private static Student newStudent(long storedId, String firstName, String lastName, String birthDate,
+                                      Gender gender, String indexNumber) {
+        if (storedId < 0) {
+            return new Student(firstName, lastName, birthDate, gender, indexNumber);
+        }
+        return Student.restore(storedId, firstName, lastName, birthDate, gender, indexNumber);
     }
 
     /**
@@ -0,0 +1,387 @@
+package org.example.lab7;
+
+import org.example.lab5.*;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Table model showing students straight from the domain objects.
+ * <p>
+ * The model only keeps references to the students it shows, in display order.
+ * Cells are read and formatted when the table asks for them, which Swing only
+ * does for the rows currently painted, so showing or refreshing a large
+ * repository costs one pass over references and nothing per cell. Sorting
+ * reorders the references in place with a comparator on the raw fields.
+ * Students can also be appended in batches while an import is running.
+ * <p>
+ * Single students can be added, replaced and removed without touching the other
+ * rows. Removing leaves an empty slot instead of shifting the rows after it; a
+ * Fenwick tree counting the occupied slots maps rows to slots and back in
+ * O(log n), and the slots are compacted once more than half of them are empty.
+ * A map from each student to its slot makes finding a student's row O(log n) too.
+ */
+public class StudentTableModel extends AbstractTableModel {
+    private static final int ID_COLUMN = 0;
+    private static final int INDEX_COLUMN = 1;
+    private static final int FIRST_NAME_COLUMN = 2;
+    private static final int LAST_NAME_COLUMN = 3;
+    private static final int BIRTH_DATE_COLUMN = 4;
+    private static final int GENDER_COLUMN = 5;
+    private static final int AVERAGE_COLUMN = 6;
+
+    private static final String[] COLUMN_NAMES = {
+        "ID", "Index", "First Name", "Last Name", "Birth Date", "Gender", "Average"
+    };
+    private static final Student[] NO_STUDENTS = new Student[0];
+
+    // Shown students by slot; removed students leave a null slot until the next compaction
+    private Student[] students = NO_STUDENTS;
+    private int slotCount;
+    private int rowCount;
+    private final Map<Student, Integer> slots = new IdentityHashMap<>();
+    // Fenwick tree over the slots, 1-based, counting the occupied ones
+    private int[] occupied = new int[1];
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    /**
+     * Replaces the shown students, keeping the current sort order.
+     *
+     * @param shown the students to show
+     */
+    public void setStudents(Collection<? extends Student> shown) {
+        students = shown.toArray(NO_STUDENTS);
+        slotCount = students.length;
+        rowCount = slotCount;
+        sortRows();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Appends students after the last row. They are not sorted in; the next sort
+     * or refresh puts them in order.
+     *
+     * @param added the students to append
+     */
+    public void addStudents(Collection<? extends Student> added) {
+        if (added.isEmpty()) {
+            return;
+        }
+        int firstRow = rowCount;
+        ensureCapacity(slotCount + added.size());
+        for (Student student : added) {
+            append(student);
+        }
+        fireTableRowsInserted(firstRow, rowCount - 1);
+    }
+
+    /**
+     * Appends a student after the last row, like {@link #addStudents}.
+     *
+     * @param student the student to append
+     */
+    public void addStudent(Student student) {
+        ensureCapacity(slotCount + 1);
+        append(student);
+        fireTableRowsInserted(rowCount - 1, rowCount - 1);
+    }
+
+    /**
+     * Removes the row of a student.
+     *
+     * @param student the student to remove
+     * @return true if the student was shown
+     */
+    public boolean removeStudent(Student student) {
+        Integer slot = slots.remove(student);
+        if (slot == null) {
+            return false;
+        }
+        int row = rowOfSlot(slot);
+        students[slot] = null;
+        addOccupied(slot, -1);
+        rowCount--;
+        if (slotCount - rowCount > slotCount / 2) {
+            compact();
+        }
+        fireTableRowsDeleted(row, row);
+        return true;
+    }
+
+    /**
+     * Shows another student in the row of a replaced one, e.g. the edited copy
+     * of a student. The row keeps its position until the next sort or refresh.
+     *
+     * @param oldStudent the student shown now
+     * @param newStudent the student to show instead
+     * @return true if the old student was shown
+     */
+    public boolean replaceStudent(Student oldStudent, Student newStudent) {
+        Integer slot = slots.remove(oldStudent);
+        if (slot == null) {
+            return false;
+        }
+        students[slot] = newStudent;
+        slots.put(newStudent, slot);
+        int row = rowOfSlot(slot);
+        fireTableRowsUpdated(row, row);
+        return true;
+    }
+
+    /**
+     * Checks whether a student is shown.
+     *
+     * @param student the student to look for
+     * @return true if the student has a row
+     */
+    public boolean contains(Student student) {
+        return slots.containsKey(student);
+    }
+
+    /**
+     * Returns the student shown in a row.
+     *
+     * @param row the row index
+     * @return the student in that row
+     * @throws IndexOutOfBoundsException if the row does not exist
+     */
+    public Student getStudentAt(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", Rows: " + rowCount);
+        }
+        return students[slotOfRow(row)];
+    }
+
+    /**
+     * Finds the row showing a student.
+     *
+     * @param student the student to look for
+     * @return the row index, or -1 if the student is not shown
+     */
+    public int indexOf(Student student) {
+        Integer slot = slots.get(student);
+        return slot != null ? rowOfSlot(slot) : -1;
+    }
+
+    /**
+     * Repaints the row of a student whose data changed in place, e.g. its grades.
+     * The row keeps its position until the next sort or refresh.
+     *
+     * @param student the changed student
+     */
+    public void fireStudentUpdated(Student student) {
+        int row = indexOf(student);
+        if (row >= 0) {
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    /**
+     * Sorts by a column. Sorting by the current column again reverses the order.
+     *
+     * @param column the column to sort by
+     */
+    public void sortBy(int column) {
+        if (column < 0 || column >= COLUMN_NAMES.length) {
+            return;
+        }
+        ascending = column != sortColumn || !ascending;
+        sortColumn = column;
+        sortRows();
+        fireTableDataChanged();
+    }
+
+    /**
+     * Returns the column the rows are sorted by.
+     *
+     * @return the sort column, or -1 if the rows keep the order they were given in
+     */
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    /**
+     * Checks the sort direction.
+     *
+     * @return true if the rows are sorted in ascending order
+     */
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    private void sortRows() {
+        compact();
+        if (sortColumn >= 0) {
+            Comparator<Student> order = comparator(sortColumn);
+            // TimSort is stable, so equal keys keep their previous order
+            Arrays.sort(students, 0, rowCount, ascending ? order : order.reversed());
+        }
+        reindex();
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (students.length < capacity) {
+            students = Arrays.copyOf(students, Math.max(capacity, students.length * 2));
+            rebuildOccupied();
+        }
+    }
+
+    private void append(Student student) {
+        students[slotCount] = student;
+        slots.put(student, slotCount);
+        addOccupied(slotCount, 1);
+        slotCount++;
+        rowCount++;
+    }
+
+    /**
+     * Moves the shown students to the first slots, keeping their order.
+     */
+    private void compact() {
+        if (slotCount == rowCount) {
+            return;
+        }
+        int row = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (students[slot] != null) {
+                students[row++] = students[slot];
+            }
+        }
+        Arrays.fill(students, row, slotCount, null);
+        slotCount = row;
+        reindex();
+    }
+
+    private void reindex() {
+        slots.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            slots.put(students[slot], slot);
+        }
+        rebuildOccupied();
+    }
+
+    // ---- Fenwick tree over the slots; while no slot is empty, rows and slots are equal ----
+
+    private void rebuildOccupied() {
+        int[] tree = new int[students.length + 1];
+        for (int i = 1; i <= students.length; i++) {
+            if (students[i - 1] != null) {
+                tree[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent <= students.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        occupied = tree;
+    }
+
+    private void addOccupied(int slot, int delta) {
+        for (int i = slot + 1; i < occupied.length; i += i & -i) {
+            occupied[i] += delta;
+        }
+    }
+
+    private int rowOfSlot(int slot) {
+        if (slotCount == rowCount) {
+            return slot;
+        }
+        // Occupied slots before this one
+        int row = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            row += occupied[i];
+        }
+        return row;
+    }
+
+    private int slotOfRow(int row) {
+        if (slotCount == rowCount) {
+            return row;
+        }
+        // Walk down the tree to the last position with at most row occupied slots before it
+        int position = 0;
+        int remaining = row;
+        for (int step = Integer.highestOneBit(occupied.length - 1); step > 0; step >>= 1) {
+            int next = position + step;
+            if (next < occupied.length && occupied[next] <= remaining) {
+                position = next;
+                remaining -= occupied[next];
+            }
+        }
+        return position;
+    }
+
+    private static Comparator<Student> comparator(int column) {
+        switch (column) {
+            case ID_COLUMN:
+                // IDs are zero-padded, so numeric order equals the order of the displayed text
+                return Comparator.comparingLong(Student::getNumericId);
+            case INDEX_COLUMN:
+                return Comparator.comparing(Student::getIndexNumber);
+            case FIRST_NAME_COLUMN:
+                return Comparator.comparing(Student::getFirstName, String.CASE_INSENSITIVE_ORDER);
+            case LAST_NAME_COLUMN:
+                return Comparator.comparing(Student::getLastName, String.CASE_INSENSITIVE_ORDER);
+            case BIRTH_DATE_COLUMN:
+                return Comparator.comparing(Student::getBirthDate);
+            case GENDER_COLUMN:
+                return Comparator.comparing(Student::getGender);
+            case AVERAGE_COLUMN:
+                // Students without grades come before any average
+                return Comparator.comparingDouble(student -> student.averageOr(-1));
+            default:
+                throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column != sortColumn) {
+            return COLUMN_NAMES[column];
+        }
+        return COLUMN_NAMES[column] + (ascending ? " \u25B2" : " \u25BC");
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Student student = getStudentAt(row);
+        switch (column) {
+            case ID_COLUMN:
+                return student.getId();
+            case INDEX_COLUMN:
+                return student.getIndexNumber();
+            case FIRST_NAME_COLUMN:
+                return student.getFirstName();
+            case LAST_NAME_COLUMN:
+                return student.getLastName();
+            case BIRTH_DATE_COLUMN:
+                return student.getBirthDateString();
+            case GENDER_COLUMN:
+                return student.getGender();
+            case AVERAGE_COLUMN:
+                return student.hasGrades() ? String.format("%.2f", student.averageOr(0)) : "N/A";
+            default:
+                throw new IllegalArgumentException("Unknown column: " + column);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.lab5;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks BirthDateCodec against LocalDate and DateTimeFormatter, which it must match exactly.
+ */
+class BirthDateCodecTest {
+    private static final int FIRST_FAST_DAY = Math.toIntExact(LocalDate.of(1, 1, 1).toEpochDay());
+    private static final int LAST_FAST_DAY = Math.toIntExact(LocalDate.of(9999, 12, 31).toEpochDay());
+
+    private static long packed(LocalDate date) {
+        return date.getYear() * 10_000L + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
+    /**
+     * Parses with the codec and with the formatter; both must give the same day or
+     * fail with the same message.
+     */
+    private static void assertParsesLikeFormatter(String text) {
+        Integer expected;
+        String expectedError = null;
+        try {
+            expected = Math.toIntExact(LocalDate.parse(text, BirthDateCodec.DATE_FORMATTER).toEpochDay());
+        } catch (DateTimeParseException e) {
+            expected = null;
+            expectedError = e.getMessage();
+        }
+        if (expected != null) {
+            assertEquals(expected.intValue(), BirthDateCodec.parse(text), text);
+        } else {
+            DateTimeParseException actual = assertThrows(DateTimeParseException.class,
+                () -> BirthDateCodec.parse(text), text);
+            assertEquals(expectedError, actual.getMessage(), text);
+        }
+    }
+
+    @Test
+    void everyDayOfTheFastRangeRoundTrips() {
+        char[] buffer = new char[BirthDateCodec.MAX_LENGTH + 3];
+        for (int day = FIRST_FAST_DAY; day <= LAST_FAST_DAY; day++) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            String expected = date.format(BirthDateCodec.DATE_FORMATTER);
+
+            int end = BirthDateCodec.format(day, buffer, 3);
+            assertEquals(expected, new String(buffer, 3, end - 3));
+            assertEquals(day, BirthDateCodec.parse(expected));
+            if (BirthDateCodec.yearMonthDay(day) != packed(date)) {
+                fail("yearMonthDay of " + date + ": " + BirthDateCodec.yearMonthDay(day));
+            }
+        }
+    }
+
+    @Test
+    void datesOutsideTheFastRangeUseTheFormatter() {
+        int[] days = {FIRST_FAST_DAY - 1, FIRST_FAST_DAY - 366, LAST_FAST_DAY + 1, LAST_FAST_DAY + 400,
+                      Math.toIntExact(LocalDate.of(-5, 6, 15).toEpochDay()),
+                      Math.toIntExact(LocalDate.of(123_456, 2, 29).toEpochDay())};
+        for (int day : days) {
+            LocalDate date = LocalDate.ofEpochDay(day);
+            String expected = date.format(BirthDateCodec.DATE_FORMATTER);
+            String formatted = BirthDateCodec.format(day);
+            assertEquals(expected, formatted);
+            assertTrue(formatted.length() <= BirthDateCodec.MAX_LENGTH, formatted);
+            assertEquals(packed(date), BirthDateCodec.yearMonthDay(day), date.toString());
+            assertParsesLikeFormatter(formatted);
+        }
+    }
+
+    @Test
+    void daysPastTheEndOfTheMonthAreClampedLikeTheFormatter() {
+        String[] texts = {"31.02.2003", "30.02.2003", "29.02.2003", "30.02.2000", "29.02.2000", "29.02.1900",
+                          "31.04.2003", "31.06.2003", "31.09.2003", "31.11.2003", "31.12.2003", "31.02.9999"};
+        for (String text : texts) {
+            assertParsesLikeFormatter(text);
+        }
+        assertEquals(LocalDate.of(2003, 2, 28).toEpochDay(), BirthDateCodec.parse("31.02.2003"));
+    }
+
+    @Test
+    void invalidTextFailsLikeTheFormatter() {
+        String[] texts = {"", "1.1.2003", "01-01-2003", "01.01.03", "01.01.20031", "32.01.2003", "00.01.2003",
+                          "01.13.2003", "01.00.2003", "01.01.0000", "aa.01.2003", "01.01.2O03", " 01.01.2003",
+                          "01.01.2003 ", "+1.01.2003", "-1.01.2003", "01.01.-003", "99.99.9999", "..........",
+                          "15-03.2003", "15.03-2003"};
+        for (String text : texts) {
+            assertParsesLikeFormatter(text);
+        }
+    }
+
+    @Test
+    void randomTextParsesLikeTheFormatter() {
+        Random random = new Random(18);
+        String alphabet = "0123456789.-+ x";
+        char[] text = new char[10];
+        for (int i = 0; i < 100_000; i++) {
+            for (int j = 0; j < text.length; j++) {
+                text[j] = alphabet.charAt(random.nextInt(alphabet.length()));
+            }
+            // Most of them with the dots in place, so that the fast path sees them
+            if (random.nextInt(4) != 0) {
+                text[2] = '.';
+                text[5] = '.';
+            }
+            assertParsesLikeFormatter(new String(text));
+        }
+    }
+
+    @Test
+    void rangeOfLargerTextIsParsedAlone() {
+        String line = "S1;31.02.2003;15.03.2003;x";
+        assertEquals(LocalDate.of(2003, 2, 28).toEpochDay(), BirthDateCodec.parse(line, 3, 13));
+        assertEquals(LocalDate.of(2003, 3, 15).toEpochDay(), BirthDateCodec.parse(line, 14, 24));
+        DateTimeParseException expected = assertThrows(DateTimeParseException.class,
+            () -> LocalDate.parse("2003;x", BirthDateCodec.DATE_FORMATTER));
+        DateTimeParseException actual = assertThrows(DateTimeParseException.class,
+            () -> BirthDateCodec.parse(line, 20, line.length()));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that bulk sampling only drops DEBUG/INFO events of the running operation.
+ */
+class BulkLoggingTest {
+    private static final Logger log = LogManager.getLogger(BulkLoggingTest.class);
+    private static final Logger quiet = LogManager.getLogger("BulkLoggingTest.summary");
+
+    @BeforeAll
+    static void enableDebug() {
+        Configurator.setLevel(log.getName(), Level.DEBUG);
+        Configurator.setLevel(quiet.getName(), Level.OFF);
+    }
+
+    @AfterAll
+    static void restoreLevels() {
+        Configurator.reconfigure();
+    }
+
+    private static int logged(BulkLogging.Sampler sampler, Level level, int events) {
+        int logged = 0;
+        for (int i = 0; i < events; i++) {
+            if (sampler.shouldLog(log, level)) {
+                logged++;
+            }
+        }
+        return logged;
+    }
+
+    @Test
+    void nothingIsSampledOutsideOperations() {
+        assertFalse(BulkLogging.isActive());
+        assertEquals(1_000, logged(new BulkLogging.Sampler(), Level.DEBUG, 1_000));
+    }
+
+    @Test
+    void debugIsSampledButWarningsAreKept() {
+        BulkLogging.Sampler sampler = new BulkLogging.Sampler();
+        try (BulkLogging.Operation operation = BulkLogging.begin(quiet, "test")) {
+            assertTrue(BulkLogging.isActive());
+            int debug = logged(sampler, Level.DEBUG, 1_000);
+            assertTrue(debug < 1_000, "debug events should be sampled");
+            assertEquals(1_000 - debug, operation.getSampledOut());
+
+            assertEquals(1_000, logged(sampler, Level.WARN, 1_000));
+            assertEquals(1_000, logged(sampler, Level.ERROR, 1_000));
+            assertEquals(1_000 - debug, operation.getSampledOut());
+        }
+        assertFalse(BulkLogging.isActive());
+        assertEquals(1_000, logged(sampler, Level.DEBUG, 1_000));
+    }
+
+    @Test
+    void otherThreadsAreNotSampled() throws Exception {
+        BulkLogging.Sampler sampler = new BulkLogging.Sampler();
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        try (BulkLogging.Operation operation = BulkLogging.begin(quiet, "test")) {
+            assertTrue(logged(sampler, Level.DEBUG, 1_000) < 1_000);
+            assertEquals(1_000, other.submit(() -> logged(sampler, Level.INFO, 1_000)).get());
+
+            // A worker joining the operation is sampled with it
+            long before = operation.getSampledOut();
+            int worker = other.submit(() -> operation.call(() -> logged(sampler, Level.INFO, 1_000))).get();
+            assertEquals(1_000 - worker, operation.getSampledOut() - before);
+            assertEquals(1_000, other.submit(() -> logged(sampler, Level.INFO, 1_000)).get());
+        } finally {
+            other.shutdownNow();
+        }
+    }
+
+    @Test
+    void nestedOperationsRestoreTheOuterOne() {
+        BulkLogging.Sampler sampler = new BulkLogging.Sampler();
+        try (BulkLogging.Operation outer = BulkLogging.begin(quiet, "outer")) {
+            try (BulkLogging.Operation inner = BulkLogging.begin(quiet, "inner")) {
+                logged(sampler, Level.DEBUG, 1_000);
+                assertTrue(inner.getSampledOut() > 0);
+            }
+            assertEquals(0, outer.getSampledOut());
+            logged(sampler, Level.DEBUG, 1_000);
+            assertTrue(outer.getSampledOut() > 0);
+        }
+        assertFalse(BulkLogging.isActive());
+    }
+}
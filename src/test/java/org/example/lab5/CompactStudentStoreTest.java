@@ -0,0 +1,123 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that a compact snapshot of a repository holds the same students, as detached copies.
+ */
+class CompactStudentStoreTest {
+
+    @BeforeAll
+    static void quietLogging() {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static StudentRepository repository(int count) {
+        StudentRepository repo = new StudentRepository();
+        double[] grades = {2.0, 3.0, 3.5, 4.0, 4.5, 5.0};
+        for (int i = 0; i < count; i++) {
+            Student student = new Student("F" + i % 37, "Łukasiewicz-" + i % 101, "14.03.2002",
+                Gender.values()[i % 3], "S" + i);
+            for (int j = 0; j < i % 5; j++) {
+                student.addGrade(grades[(i + j) % grades.length]);
+            }
+            repo.add(student);
+        }
+        return repo;
+    }
+
+    @Test
+    void snapshotHoldsEveryStudent() {
+        StudentRepository repo = repository(5_000);
+        CompactStudentStore store = repo.compactSnapshot();
+        assertEquals(repo.size(), store.size());
+
+        Set<String> seen = new HashSet<>();
+        for (int row = 0; row < store.size(); row++) {
+            Student original = repo.getById(store.getNumericId(row));
+            assertNotNull(original, store.getId(row));
+            assertTrue(seen.add(original.getId()));
+            assertEquals(row, store.findRow(original.getIndexNumber()));
+
+            Student copy = store.get(row);
+            assertNotSame(original, copy);
+            assertEquals(original.getId(), copy.getId());
+            assertEquals(original.toString(), copy.toString());
+            assertEquals(original.getGrades(), copy.getGrades());
+            assertEquals(original.getBirthDate(), copy.getBirthDate());
+            assertEquals(original.averageOr(-1), store.getAverageOr(row, -1));
+            assertEquals(original.gradeCount(), store.getGradeCount(row));
+        }
+        assertEquals(37 + 101, store.getDistinctNames());
+    }
+
+    @Test
+    void copiesAreDetached() {
+        StudentRepository repo = repository(10);
+        CompactStudentStore store = repo.compactSnapshot();
+
+        Student copy = store.getByIndexNumber("S4");
+        copy.addGrade(5.0);
+        assertEquals(4, repo.getByIndexNumber("S4").gradeCount());
+        assertEquals(4, store.getGradeCount(store.findRow("S4")));
+
+        repo.getByIndexNumber("S3").clearGrades();
+        repo.remove(repo.getByIndexNumber("S2").getId());
+        assertEquals(3, store.getGradeCount(store.findRow("S3")));
+        assertNotNull(store.getByIndexNumber("S2"));
+        assertEquals(10, store.size());
+    }
+
+    @Test
+    void missingRowsAndIndexNumbers() {
+        CompactStudentStore store = repository(3).compactSnapshot();
+        assertEquals(-1, store.findRow("nope"));
+        assertEquals(-1, store.findRow(null));
+        assertNull(store.getByIndexNumber("nope"));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> store.getFirstName(-1));
+
+        CompactStudentStore empty = new StudentRepository().compactSnapshot();
+        assertEquals(0, empty.size());
+        assertNull(empty.getByIndexNumber("S0"));
+    }
+
+    @Test
+    void builderRejectsDuplicatesAndGrowsPastItsEstimate() {
+        CompactStudentStore.Builder builder = CompactStudentStore.builder(0);
+        LocalDate birthDate = LocalDate.of(2001, 5, 6);
+        for (int i = 0; i < 50_000; i++) {
+            String indexNumber = "index-" + i + "-" + "x".repeat(i % 20);
+            assertTrue(builder.add(1_000 + i, "A", "B", birthDate, Gender.MALE, indexNumber, 4.5, 3.0));
+        }
+        assertFalse(builder.add(1, "A", "B", birthDate, Gender.MALE, "index-7-xxxxxxx"));
+        assertThrows(IllegalArgumentException.class,
+            () -> builder.add(2, "A", "B", birthDate, Gender.MALE, "other", 4.2));
+
+        CompactStudentStore store = builder.build();
+        assertThrows(IllegalStateException.class, () -> builder.add(3, "A", "B", birthDate, Gender.MALE, "late"));
+        assertEquals(50_000, store.size());
+        int row = store.findRow("index-49999-" + "x".repeat(49_999 % 20));
+        assertEquals(49_999, row);
+        assertEquals(List.of(4.5, 3.0), store.get(row).getGrades());
+        assertEquals(birthDate, store.getBirthDate(row));
+        assertEquals(3.75, store.getAverageOr(row, 0));
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.lab5;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks CsvFieldTokenizer against the String.split based parsing it replaced.
+ */
+class CsvFieldTokenizerTest {
+
+    // ---- the old parsing, kept here as the reference ----
+
+    private static List<String> splitFields(String line, String delimiter) {
+        return Arrays.asList(line.split(Pattern.quote(delimiter), -1));
+    }
+
+    private static List<String> splitListItems(String field) {
+        if (!field.startsWith("[") || !field.endsWith("]")) {
+            return null;
+        }
+        String content = field.substring(1, field.length() - 1);
+        return content.isEmpty() ? List.of() : Arrays.asList(content.split(","));
+    }
+
+    // ---- the tokenizer, collected into lists for comparison ----
+
+    private static List<String> fields(CsvFieldTokenizer tokenizer) {
+        List<String> fields = new ArrayList<>();
+        for (int i = 0; i < tokenizer.fieldCount(); i++) {
+            fields.add(tokenizer.field(i));
+        }
+        return fields;
+    }
+
+    private static List<String> listItems(CsvFieldTokenizer tokenizer, int index) {
+        List<String> items = new ArrayList<>();
+        boolean bracketed = tokenizer.forEachListItem(index, (start, end) -> items.add(tokenizer.text(start, end)));
+        return bracketed ? items : null;
+    }
+
+    private static List<String> lines(String file) throws IOException {
+        Path path = Paths.get(file);
+        assertTrue(Files.exists(path), "test data missing: " + path.toAbsolutePath());
+        return Files.readAllLines(path, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void studentsCsvMatchesSplit() throws IOException {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        for (String line : lines("students.csv")) {
+            tokenizer.reset(line);
+            assertEquals(splitFields(line, ";"), fields(tokenizer), line);
+            assertEquals(line.trim().isEmpty(), tokenizer.isBlank(), line);
+            if (tokenizer.fieldCount() < 7) {
+                continue;
+            }
+
+            List<String> expectedGrades = splitListItems(tokenizer.field(6));
+            List<String> grades = listItems(tokenizer, 6);
+            assertEquals(expectedGrades, grades, line);
+
+            List<Double> expectedValues = new ArrayList<>();
+            for (String grade : expectedGrades) {
+                expectedValues.add(Double.parseDouble(grade.trim()));
+            }
+            List<Double> values = new ArrayList<>();
+            tokenizer.forEachListItem(6, (start, end) -> values.add(tokenizer.parseDouble(start, end)));
+            assertEquals(expectedValues, values, line);
+        }
+    }
+
+    @Test
+    void groupsCsvMatchesSplit() throws IOException {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        for (String line : lines("groups.csv")) {
+            tokenizer.reset(line);
+            assertEquals(splitFields(line, ";"), fields(tokenizer), line);
+            if (tokenizer.fieldCount() >= 3) {
+                assertEquals(splitListItems(tokenizer.field(2)), listItems(tokenizer, 2), line);
+            }
+        }
+    }
+
+    @Test
+    void pipeDelimiterIsLiteral() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer("|");
+        String line = "0000001|S1|Anna|Kowalska|15.03.2003|FEMALE|[5.0,4.5]";
+        assertEquals(7, tokenizer.reset(line));
+        assertEquals(splitFields(line, "|"), fields(tokenizer));
+        assertEquals(List.of("5.0", "4.5"), listItems(tokenizer, 6));
+    }
+
+    @Test
+    void multiCharacterDelimiter() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer("::");
+        String line = "a::b:c::::d:";
+        tokenizer.reset(line);
+        assertEquals(splitFields(line, "::"), fields(tokenizer));
+        assertEquals(List.of("a", "b:c", "", "d:"), fields(tokenizer));
+    }
+
+    @Test
+    void emptyTrailingFieldsAreKept() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        for (String line : new String[] {"a;b;;", ";", "", "x;;y;"}) {
+            tokenizer.reset(line);
+            assertEquals(splitFields(line, ";"), fields(tokenizer), line);
+        }
+    }
+
+    @Test
+    void rangeOfLargerSourceIsTokenizedAlone() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        StringBuilder source = new StringBuilder("x;y\nS1;Anna;[4.0]\nz");
+        assertEquals(3, tokenizer.reset(source, 4, 17));
+        assertEquals(List.of("S1", "Anna", "[4.0]"), fields(tokenizer));
+        assertEquals("S1;Anna;[4.0]", tokenizer.line());
+    }
+
+    @Test
+    void malformedGradeListsMatchSplit() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        String[] lists = {"[]", "[4.0,]", "[4.0,,]", "[,]", "[5.0,,4.0]", "[ 4.5 , 3.0 ]", "[abc,4.0]",
+                          "5.0,4.0", "[5.0", "5.0]", "[", ""};
+        for (String list : lists) {
+            tokenizer.reset("S1;" + list);
+            assertEquals(splitListItems(list), listItems(tokenizer, 1), list);
+        }
+    }
+
+    @Test
+    void malformedGradeFailsLikeParseDouble() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        for (String grade : new String[] {"abc", "", " ", "4..0", "-", "4.0x"}) {
+            tokenizer.reset(grade);
+            assertThrows(NumberFormatException.class, () -> Double.parseDouble(grade.trim()), grade);
+            assertThrows(NumberFormatException.class,
+                () -> tokenizer.parseDouble(tokenizer.fieldStart(0), tokenizer.fieldEnd(0)), grade);
+        }
+    }
+
+    @Test
+    void gradesParseLikeParseDouble() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        for (String grade : new String[] {"4.5", " 3.0 ", "5", "2.", ".5", "-4.5", "1e1", "0.1",
+                                          "12345678901234567890", "3.14159265358979"}) {
+            tokenizer.reset(grade);
+            assertEquals(Double.parseDouble(grade.trim()),
+                tokenizer.parseDouble(tokenizer.fieldStart(0), tokenizer.fieldEnd(0)), grade);
+        }
+    }
+
+    @Test
+    void genderResolvesLikeValueOf() {
+        CsvFieldTokenizer tokenizer = new CsvFieldTokenizer(";");
+        tokenizer.reset("FEMALE;UNKNOWN");
+        assertEquals(Gender.FEMALE, tokenizer.enumField(0, Gender.class, Gender.values()));
+        IllegalArgumentException expected = assertThrows(IllegalArgumentException.class, () -> Gender.valueOf("UNKNOWN"));
+        IllegalArgumentException actual = assertThrows(IllegalArgumentException.class,
+            () -> tokenizer.enumField(1, Gender.class, Gender.values()));
+        assertEquals(expected.getMessage(), actual.getMessage());
+    }
+
+    @Test
+    void emptyDelimiterIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CsvFieldTokenizer(""));
+        assertThrows(IllegalArgumentException.class, () -> new CsvFieldTokenizer(null));
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that groups skipped during a CSV import leave no registry assignments,
+ * so the registry count still gives the number of unassigned students.
+ */
+class CsvGroupHandlerTest {
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static int countUnassigned(StudentRepository studentRepo, GroupRegistry registry) {
+        int unassigned = 0;
+        for (Student student : studentRepo.getAll()) {
+            if (registry.getGroupName(student.getId()) == null) {
+                unassigned++;
+            }
+        }
+        return unassigned;
+    }
+
+    @Test
+    void skippedDuplicateGroupUnassignsItsMembers() throws IOException {
+        StudentRepository studentRepo = new StudentRepository();
+        GroupRepository groupRepo = new GroupRepository();
+        GroupRegistry registry = groupRepo.getRegistry();
+        Student kept = new Student("Kept", "Member", "01.02.2003", Gender.FEMALE, "CG1");
+        Student other = new Student("Other", "Student", "01.02.2003", Gender.MALE, "CG2");
+        Student listed = new Student("Listed", "Member", "01.02.2003", Gender.MALE, "CG3");
+        studentRepo.add(kept);
+        studentRepo.add(other);
+        studentRepo.add(listed);
+        Group stored = new Group("A", "Stored", registry);
+        groupRepo.add(stored);
+        stored.addStudent(kept);
+
+        Path file = dir.resolve("groups.csv");
+        Files.writeString(file, "A;Duplicate;[" + kept.getId() + "," + other.getId() + "]\n"
+            + "B;New;[" + listed.getId() + "]\n");
+        CsvGroupHandler.forEachGroup(file, ";", studentRepo, registry, group -> {
+            if (!groupRepo.addIfAbsent(group)) {
+                CsvGroupHandler.discard(group);
+            }
+        });
+
+        assertSame(stored, groupRepo.getByName("A"));
+        assertEquals("A", registry.getGroupName(kept.getId()));
+        assertNull(registry.getGroupName(other.getId()));
+        assertEquals("B", registry.getGroupName(listed.getId()));
+        assertEquals(2, registry.size());
+        assertEquals(countUnassigned(studentRepo, registry), studentRepo.size() - registry.size());
+    }
+}
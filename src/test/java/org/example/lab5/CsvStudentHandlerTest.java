@@ -0,0 +1,65 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the sequential and the parallel student readers report the same progress.
+ */
+class CsvStudentHandlerTest {
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static long[] read(Path file, int parallelism) throws IOException {
+        long[] last = new long[3];
+        last[2] = CsvStudentHandler.forEachStudent(file, ";", parallelism, student -> { }, (lines, bytes) -> {
+            last[0] = lines;
+            last[1] = bytes;
+        });
+        return last;
+    }
+
+    @Test
+    void sequentialAndParallelCountLinesAlike() throws IOException {
+        Path file = dir.resolve("students.csv");
+        Files.writeString(file, "\n"
+            + "0000000;CS1;Anna;Kowalska;28.02.1998;FEMALE;[4.5]\r\n"
+            + "\r\n"
+            + "not a student\n"
+            + "\n"
+            + "0000001;CS2;Jan;Nowak;13.04.1993;MALE;[4.0,5.0]\n"
+            + "\n");
+
+        long[] sequential = read(file, 1);
+        long[] parallel = read(file, 2);
+
+        assertEquals(2, sequential[2]);
+        assertEquals(2, parallel[2]);
+        // Blank lines are not counted, the malformed line is
+        assertEquals(3, sequential[0]);
+        assertEquals(sequential[0], parallel[0]);
+        assertEquals(Files.size(file), sequential[1]);
+        assertEquals(Files.size(file), parallel[1]);
+    }
+}
@@ -0,0 +1,109 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Several threads add, move and remove the same students concurrently. Afterwards
+ * every student must be a member of at most one group, and the registry must agree
+ * with the member sets.
+ */
+class GroupRegistryStressTest {
+    private static final int THREADS = 8;
+    private static final int GROUPS = 16;
+    private static final int STUDENTS = 1_000;
+    private static final int OPERATIONS_PER_THREAD = 50_000;
+
+    @BeforeAll
+    static void quietLogging() {
+        // Most random operations are rejected on purpose; their warnings would flood the output
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    @Test
+    void everyStudentIsInAtMostOneGroup() throws InterruptedException {
+        GroupRepository groupRepo = new GroupRepository();
+        List<Group> groups = new ArrayList<>();
+        for (int i = 0; i < GROUPS; i++) {
+            Group group = new Group("G" + i, "Stress group " + i, groupRepo.getRegistry());
+            groupRepo.add(group);
+            groups.add(group);
+        }
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            students.add(new Student("First" + i, "Last" + i, "01.01.2001", Gender.OTHER, "S" + i));
+        }
+
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int op = 0; op < OPERATIONS_PER_THREAD; op++) {
+                    Student student = students.get(random.nextInt(STUDENTS));
+                    Group group = groups.get(random.nextInt(GROUPS));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            group.addStudent(student);
+                            break;
+                        case 1:
+                            group.transferStudent(student, groups.get(random.nextInt(GROUPS)));
+                            break;
+                        default:
+                            group.removeStudent(student);
+                    }
+                }
+            }, "stress-" + t);
+            thread.setUncaughtExceptionHandler((failed, e) -> {
+                synchronized (failures) {
+                    failures.add(e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), failures);
+
+        Map<Student, Group> owner = new HashMap<>();
+        for (Group group : groups) {
+            for (Student member : group.getMembers()) {
+                Group previous = owner.put(member, group);
+                assertNull(previous, () -> "Student " + member.getIndexNumber() + " is in "
+                    + previous.getName() + " and " + group.getName());
+            }
+        }
+        GroupRegistry registry = groupRepo.getRegistry();
+        for (Student student : students) {
+            Group group = owner.get(student);
+            String expected = group != null ? group.getName() : null;
+            assertEquals(expected, registry.getGroupName(student.getId()),
+                () -> "Registry mismatch for " + student.getIndexNumber());
+        }
+        assertEquals(owner.size(), registry.size());
+    }
+
+    @Test
+    void groupsMustShareARegistry() {
+        assertThrows(NullPointerException.class, () -> new Group("G1", "No registry", null));
+    }
+}
@@ -0,0 +1,181 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that IdAllocator never hands out an ID twice: after adoption, release and
+ * reopening with a persisted high-water mark.
+ */
+class IdAllocatorTest {
+    private static final long LARGE_ID = 1L << 40;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        // Taken IDs are reported as warnings on purpose
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static long readMark(Path file) throws IOException {
+        return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim());
+    }
+
+    @Test
+    void adoptingATakenIdGivesAFreshOne() {
+        IdAllocator ids = new IdAllocator();
+        long handedOut = ids.next();
+        long replacement = ids.adopt(handedOut);
+        assertNotEquals(handedOut, replacement);
+
+        assertEquals(5_000, ids.adopt(5_000));
+        long second = ids.adopt(5_000);
+        assertNotEquals(5_000, second);
+        assertNotEquals(replacement, second);
+
+        assertEquals(LARGE_ID, ids.adopt(LARGE_ID));
+        assertNotEquals(LARGE_ID, ids.adopt(LARGE_ID));
+
+        assertTrue(ids.adopt(0) > 0);
+        assertTrue(ids.adopt(-7) > 0);
+    }
+
+    @Test
+    void adoptedIdsAreNeverHandedOut() {
+        IdAllocator ids = new IdAllocator();
+        long first = ids.next();
+        // IDs inside the block this thread already holds
+        Set<Long> adopted = new HashSet<>();
+        for (long id = first + 1; id < first + 100; id += 3) {
+            assertEquals(id, ids.adopt(id));
+            adopted.add(id);
+        }
+        Set<Long> seen = new HashSet<>(adopted);
+        seen.add(first);
+        for (int i = 0; i < 5_000; i++) {
+            assertTrue(seen.add(ids.next()), "handed out twice");
+        }
+        assertEquals(100_000, ids.adopt(100_000));
+        assertTrue(ids.getHighWater() > 100_000);
+    }
+
+    @Test
+    void nextIsUniqueAcrossThreads() throws Exception {
+        IdAllocator ids = new IdAllocator();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Set<Long> seen = new HashSet<>();
+            for (int task = 0; task < 8; task++) {
+                for (long id : pool.submit(() -> {
+                    long[] taken = new long[3_000];
+                    for (int i = 0; i < taken.length; i++) {
+                        taken[i] = i % 10 == 0 ? ids.adopt(i * 7L + 1) : ids.next();
+                    }
+                    return taken;
+                }).get()) {
+                    assertTrue(seen.add(id), "handed out twice: " + id);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void releasedIdCanBeAdoptedAgain() {
+        IdAllocator ids = new IdAllocator();
+        assertEquals(77, ids.adopt(77));
+        assertNotEquals(77, ids.adopt(77));
+        ids.release(77);
+        assertEquals(77, ids.adopt(77));
+
+        long handedOut = ids.next();
+        ids.release(handedOut);
+        assertEquals(handedOut, ids.adopt(handedOut));
+
+        assertEquals(LARGE_ID, ids.adopt(LARGE_ID));
+        ids.release(LARGE_ID);
+        assertEquals(LARGE_ID, ids.adopt(LARGE_ID));
+
+        // Releasing IDs that were never taken has no effect
+        ids.release(123_456);
+        ids.release(0);
+        ids.release(-1);
+        assertEquals(123_456, ids.adopt(123_456));
+    }
+
+    @Test
+    void reopeningStartsAbovePersistedMark() throws IOException {
+        Path file = dir.resolve("ids");
+        IdAllocator before = new IdAllocator();
+        before.open(file);
+        long highest = 0;
+        for (int i = 0; i < 3_000; i++) {
+            highest = Math.max(highest, before.next());
+        }
+        highest = Math.max(highest, before.adopt(2_000_000));
+        long persisted = readMark(file);
+        assertTrue(persisted > highest, "mark " + persisted + " not above " + highest);
+        assertTrue(persisted >= before.getHighWater());
+
+        // A new run, without anything handed over but the file, e.g. after a crash
+        IdAllocator after = new IdAllocator();
+        after.open(file);
+        assertTrue(after.getHighWater() >= persisted);
+        assertTrue(after.next() >= persisted);
+        assertTrue(readMark(file) > persisted);
+    }
+
+    @Test
+    void unreadableMarkFileStartsFromCurrentMark() throws IOException {
+        Path file = dir.resolve("ids");
+        Files.write(file, "not a number".getBytes(StandardCharsets.US_ASCII));
+        IdAllocator ids = new IdAllocator();
+        ids.adopt(500);
+        ids.open(file);
+        assertTrue(ids.next() > 500);
+        assertTrue(readMark(file) > 500);
+    }
+
+    @Test
+    void openingInvalidatesBlocksTakenBefore() throws Exception {
+        Path file = dir.resolve("ids");
+        Files.write(file, "50000".getBytes(StandardCharsets.US_ASCII));
+        IdAllocator ids = new IdAllocator();
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            // Both threads hold blocks near 1, which the previous run may have used
+            assertTrue(ids.next() < 50_000);
+            assertTrue(worker.submit(ids::next).get() < 50_000);
+
+            ids.open(file);
+            assertTrue(ids.next() >= 50_000);
+            assertTrue(worker.submit(ids::next).get() >= 50_000);
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.lab5;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that IDs parse back only from the form {@link Person#formatId(long)} writes.
+ */
+class PersonTest {
+    @Test
+    void parseIdReadsFormattedIds() {
+        for (long value : new long[] {0, 1, 35, 36, 1_234_567_890L, Long.MAX_VALUE}) {
+            assertEquals(value, Person.parseId(Person.formatId(value)));
+        }
+        assertEquals("0000000", Person.formatId(0));
+        assertEquals(36 * 36 - 1, Person.parseId("00000ZZ"));
+    }
+
+    @Test
+    void parseIdRejectsOtherDigits() {
+        assertEquals(-1, Person.parseId("00000zz"));
+        // Arabic-Indic and full-width digits are digits to Character.digit, but not IDs
+        assertEquals(-1, Person.parseId("000١٢٣٤"));
+        assertEquals(-1, Person.parseId("000１２３４"));
+        assertEquals(-1, Person.parseId("000-001"));
+        assertEquals(-1, Person.parseId(""));
+        assertEquals(-1, Person.parseId(null));
+    }
+}
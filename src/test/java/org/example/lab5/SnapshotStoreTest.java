@@ -0,0 +1,125 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that loading a snapshot keeps student IDs and only claims them once the
+ * snapshot has been accepted.
+ */
+class SnapshotStoreTest {
+    // Offsets in the version 3 header
+    private static final int CHECKSUM_OFFSET = 24;
+    private static final int HEADER_SIZE = 56;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void quietLogging() {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static void fill(StudentRepository studentRepo, GroupRepository groupRepo, String prefix) {
+        Group group = new Group(prefix + "G", "Snapshot group", groupRepo.getRegistry());
+        groupRepo.add(group);
+        for (int i = 0; i < 20; i++) {
+            Student student = new Student("F" + i, "L" + i, "01.02.2003", Gender.FEMALE, prefix + i);
+            student.addGrade(4.5);
+            studentRepo.add(student);
+            if (i % 2 == 0) {
+                group.addStudent(student);
+            }
+        }
+    }
+
+    private static List<String> ids(StudentRepository studentRepo) {
+        List<String> ids = new ArrayList<>();
+        for (Student student : studentRepo.getAll()) {
+            ids.add(student.getIndexNumber() + "=" + student.getId());
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    @Test
+    void reloadingKeepsIds() throws IOException {
+        StudentRepository studentRepo = new StudentRepository();
+        GroupRepository groupRepo = new GroupRepository();
+        fill(studentRepo, groupRepo, "reload-");
+        List<String> before = ids(studentRepo);
+        Path file = dir.resolve("repository.snapshot");
+        SnapshotStore.save(file, studentRepo, groupRepo);
+
+        // The same students are still in memory while the snapshot replaces them
+        SnapshotStore.load(file, studentRepo, groupRepo);
+        assertEquals(before, ids(studentRepo));
+        assertEquals(10, groupRepo.getByName("reload-G").size());
+
+        SnapshotStore.load(file, studentRepo, groupRepo);
+        assertEquals(before, ids(studentRepo));
+    }
+
+    @Test
+    void rejectedSnapshotClaimsNoIds() throws IOException {
+        StudentRepository studentRepo = new StudentRepository();
+        GroupRepository groupRepo = new GroupRepository();
+        fill(studentRepo, groupRepo, "rejected-");
+        List<Long> stored = new ArrayList<>();
+        for (Student student : studentRepo.getAll()) {
+            stored.add(student.getNumericId());
+        }
+        Path file = dir.resolve("repository.snapshot");
+        SnapshotStore.save(file, studentRepo, groupRepo);
+
+        // Point the last member at a student that does not exist, with a matching checksum
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer position = ByteBuffer.allocate(4).putInt(9_999);
+            position.flip();
+            channel.write(position, channel.size() - 4);
+            ByteBuffer payload = ByteBuffer.allocate((int) channel.size() - HEADER_SIZE);
+            channel.read(payload, HEADER_SIZE);
+            payload.flip();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer checksum = ByteBuffer.allocate(8).putLong(crc.getValue());
+            checksum.flip();
+            channel.write(checksum, CHECKSUM_OFFSET);
+        }
+
+        // As after a restart: nothing in memory and the IDs free again
+        studentRepo.clear();
+        groupRepo.clear();
+        for (long id : stored) {
+            IdAllocator.global().release(id);
+        }
+
+        IOException error = assertThrows(IOException.class, () -> SnapshotStore.load(file, studentRepo, groupRepo));
+        assertTrue(error.getMessage().contains("corrupt"), error.getMessage());
+        assertEquals(0, studentRepo.size());
+        for (long id : stored) {
+            assertEquals(id, IdAllocator.global().adopt(id), "ID claimed by a rejected snapshot");
+        }
+    }
+}
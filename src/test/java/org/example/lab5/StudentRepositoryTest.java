@@ -0,0 +1,77 @@
+package org.example.lab5;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the ID and index number indexes of the repository stay in step.
+ */
+class StudentRepositoryTest {
+    @BeforeAll
+    static void quietLogging() {
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private static Student copy(Student student, String indexNumber) {
+        return Student.fromCodes(student.getNumericId(), "Copy", student.getLastName(),
+            BirthDateCodec.parse("01.02.2003"), student.getGender(), indexNumber, new byte[0], 0, 0);
+    }
+
+    @Test
+    void addRejectsIndexNumberOfAnotherStudent() {
+        StudentRepository repo = new StudentRepository();
+        Student first = new Student("First", "Student", "01.02.2003", Gender.FEMALE, "SR1");
+        Student second = new Student("Second", "Student", "01.02.2003", Gender.MALE, "SR1");
+
+        assertTrue(repo.add(first));
+        assertFalse(repo.add(second));
+
+        assertEquals(1, repo.size());
+        assertSame(first, repo.getByIndexNumber("SR1"));
+        assertNull(repo.getById(second.getId()));
+    }
+
+    @Test
+    void addReplacesStudentWithSameId() {
+        StudentRepository repo = new StudentRepository();
+        Student original = new Student("Original", "Student", "01.02.2003", Gender.FEMALE, "SR2");
+        Student renamed = copy(original, "SR3");
+
+        assertTrue(repo.add(original));
+        assertTrue(repo.add(renamed));
+
+        assertEquals(1, repo.size());
+        assertSame(renamed, repo.getById(original.getId()));
+        assertSame(renamed, repo.getByIndexNumber("SR3"));
+        assertNull(repo.getByIndexNumber("SR2"));
+    }
+
+    @Test
+    void updateKeepsStudentUnderItsOwnId() {
+        StudentRepository repo = new StudentRepository();
+        Student original = new Student("Original", "Student", "01.02.2003", Gender.FEMALE, "SR4");
+        Student other = new Student("Other", "Student", "01.02.2003", Gender.MALE, "SR5");
+        repo.add(original);
+        repo.add(other);
+
+        assertThrows(IllegalArgumentException.class, () -> repo.update(original.getId(), other));
+        assertFalse(repo.update(original.getId(), copy(original, "SR5")));
+        assertTrue(repo.update(original.getId(), copy(original, "SR6")));
+
+        assertEquals(2, repo.size());
+        assertEquals("SR6", repo.getById(original.getId()).getIndexNumber());
+        assertSame(other, repo.getByIndexNumber("SR5"));
+        assertNull(repo.getByIndexNumber("SR4"));
+    }
+}
@@ -0,0 +1,210 @@
+package org.example.lab7;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.example.lab5.Gender;
+import org.example.lab5.Student;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.TableModelEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the slot bookkeeping of StudentTableModel (Fenwick row/slot mapping and
+ * compaction) against a plain list holding the expected rows.
+ */
+class StudentTableModelTest {
+    private static final int OPERATIONS = 200_000;
+
+    private int nextStudent;
+
+    @BeforeAll
+    static void quietLogging() {
+        // Hundreds of thousands of students are created; their INFO lines would flood the output
+        Configurator.setAllLevels(LogManager.ROOT_LOGGER_NAME, Level.ERROR);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    private Student newStudent() {
+        int i = nextStudent++;
+        return new Student("F" + (i * 7919 % 1000), "L" + i, "01.01.2000", Gender.MALE, "I" + i);
+    }
+
+    private List<Student> newStudents(int count) {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            students.add(newStudent());
+        }
+        return students;
+    }
+
+    /**
+     * Keeps a copy of the rows that is updated only from the events the model fires,
+     * the way a JTable sees them.
+     */
+    private static List<Student> mirror(StudentTableModel model) {
+        List<Student> view = new ArrayList<>();
+        model.addTableModelListener(e -> {
+            if (e.getType() == TableModelEvent.INSERT) {
+                for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+                    view.add(row, model.getStudentAt(row));
+                }
+            } else if (e.getType() == TableModelEvent.DELETE) {
+                for (int row = e.getLastRow(); row >= e.getFirstRow(); row--) {
+                    view.remove(row);
+                }
+            } else if (e.getFirstRow() == TableModelEvent.HEADER_ROW || e.getLastRow() == Integer.MAX_VALUE) {
+                view.clear();
+                for (int row = 0; row < model.getRowCount(); row++) {
+                    view.add(model.getStudentAt(row));
+                }
+            } else {
+                for (int row = e.getFirstRow(); row <= e.getLastRow(); row++) {
+                    view.set(row, model.getStudentAt(row));
+                }
+            }
+        });
+        return view;
+    }
+
+    private static void assertRows(List<Student> expected, StudentTableModel model) {
+        assertEquals(expected.size(), model.getRowCount());
+        for (int row = 0; row < expected.size(); row++) {
+            assertSame(expected.get(row), model.getStudentAt(row), "row " + row);
+            assertEquals(row, model.indexOf(expected.get(row)), "index of row " + row);
+        }
+    }
+
+    @Test
+    void randomOperationsMatchReferenceList() {
+        Random random = new Random(1);
+        StudentTableModel model = new StudentTableModel();
+        List<Student> view = mirror(model);
+        List<Student> expected = newStudents(200);
+        model.setStudents(expected);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int op = random.nextInt(100);
+            if (op < 35) {
+                Student student = newStudent();
+                model.addStudent(student);
+                expected.add(student);
+            } else if (op < 70 && !expected.isEmpty()) {
+                Student student = expected.remove(random.nextInt(expected.size()));
+                assertTrue(model.removeStudent(student));
+                assertFalse(model.contains(student));
+                assertEquals(-1, model.indexOf(student));
+            } else if (op < 85 && !expected.isEmpty()) {
+                int row = random.nextInt(expected.size());
+                Student replacement = newStudent();
+                assertTrue(model.replaceStudent(expected.get(row), replacement));
+                expected.set(row, replacement);
+            } else if (op < 87) {
+                List<Student> batch = newStudents(random.nextInt(5));
+                model.addStudents(batch);
+                expected.addAll(batch);
+            } else if (op < 88) {
+                model.sortBy(random.nextInt(model.getColumnCount()));
+                expected.clear();
+                for (int row = 0; row < model.getRowCount(); row++) {
+                    expected.add(model.getStudentAt(row));
+                }
+            } else if (!expected.isEmpty()) {
+                int row = random.nextInt(expected.size());
+                assertEquals(row, model.indexOf(expected.get(row)));
+            }
+            if (i % 997 == 0) {
+                assertRows(expected, model);
+            }
+        }
+
+        assertRows(expected, model);
+        assertEquals(expected, view);
+    }
+
+    @Test
+    void firstAndLastRowsAfterRemovals() {
+        StudentTableModel model = new StudentTableModel();
+        List<Student> expected = newStudents(16);
+        model.setStudents(expected);
+
+        // Empty slots at both ends and in the middle, without reaching the compaction threshold
+        for (int index : new int[] {0, 14, 7, 0}) {
+            assertTrue(model.removeStudent(expected.remove(index)));
+            assertRows(expected, model);
+        }
+        assertSame(expected.get(0), model.getStudentAt(0));
+        assertSame(expected.get(expected.size() - 1), model.getStudentAt(model.getRowCount() - 1));
+
+        // Appending after empty slots puts the student in the last row
+        Student added = newStudent();
+        model.addStudent(added);
+        expected.add(added);
+        assertRows(expected, model);
+    }
+
+    @Test
+    void compactionKeepsOrder() {
+        StudentTableModel model = new StudentTableModel();
+        List<Student> view = mirror(model);
+        List<Student> expected = newStudents(100);
+        model.setStudents(expected);
+
+        // Every other student, then more, so that more than half of the slots become empty
+        for (int i = expected.size() - 1; i >= 0; i -= 2) {
+            assertTrue(model.removeStudent(expected.remove(i)));
+            assertRows(expected, model);
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(model.removeStudent(expected.remove(expected.size() / 2)));
+            assertRows(expected, model);
+        }
+        assertEquals(expected, view);
+    }
+
+    @Test
+    void removingEveryRowAndStartingOver() {
+        StudentTableModel model = new StudentTableModel();
+        List<Student> view = mirror(model);
+        List<Student> expected = newStudents(33);
+        model.setStudents(expected);
+
+        while (!expected.isEmpty()) {
+            assertTrue(model.removeStudent(expected.remove(expected.size() / 3)));
+            assertRows(expected, model);
+        }
+        assertEquals(0, model.getRowCount());
+
+        List<Student> batch = newStudents(5);
+        model.addStudents(batch);
+        assertRows(batch, model);
+        assertEquals(batch, view);
+    }
+
+    @Test
+    void unknownStudentsAndRowsAreRejected() {
+        StudentTableModel model = new StudentTableModel();
+        List<Student> expected = newStudents(4);
+        model.setStudents(expected);
+        Student stranger = newStudent();
+
+        assertFalse(model.removeStudent(stranger));
+        assertFalse(model.replaceStudent(stranger, newStudent()));
+        assertEquals(-1, model.indexOf(stranger));
+
+        assertTrue(model.removeStudent(expected.remove(1)));
+        assertThrows(IndexOutOfBoundsException.class, () -> model.getStudentAt(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> model.getStudentAt(expected.size()));
+    }
+}